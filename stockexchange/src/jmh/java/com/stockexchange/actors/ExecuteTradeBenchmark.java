@@ -0,0 +1,64 @@
+package com.stockexchange.actors;
+
+import akka.actor.typed.ActorSystem;
+import akka.actor.typed.javadsl.AskPattern;
+import com.stockexchange.messages.LookupBusImpl;
+import com.stockexchange.messages.Message;
+import com.stockexchange.model.Order;
+import com.stockexchange.model.Stock;
+import com.stockexchange.model.TickSize;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+// Round trip of one order from outside the actor system to its Message.Ack: router, book,
+// matching and reply. Buys and sells alternate at one price, so the book stays near empty.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ExecuteTradeBenchmark {
+    private static final String SYMBOL = "BENCH";
+    private static final Duration TIMEOUT = Duration.ofSeconds(5);
+
+    private ActorSystem<Message.Command> system;
+    private boolean buy;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        system = ActorSystem.create(StockExchangeActor.create(new LookupBusImpl()), "ExecuteTradeBenchmark");
+        system.tell(new StockExchangeActor.RegisterStock(new Stock(SYMBOL, "Benchmark", TickSize.CENT, 10_000)));
+        system.tell(new StockExchangeActor.RegisterMarketMaker(SYMBOL, 10_000));
+        // The book is spawned asynchronously; wait until it acknowledges orders
+        roundTrip();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        system.terminate();
+    }
+
+    @Benchmark
+    public Message.Command roundTrip() throws Exception {
+        buy = !buy;
+        Order order = new Order(SYMBOL, 100, 10_000, buy ? Order.OrderType.BUY : Order.OrderType.SELL);
+        return AskPattern.<Message.Command, Message.Command>ask(system,
+                        replyTo -> new StockExchangeActor.ExecuteTrade(order, replyTo), TIMEOUT, system.scheduler())
+                .toCompletableFuture()
+                .get();
+    }
+}
@@ -0,0 +1,68 @@
+package com.stockexchange.messages;
+
+import akka.actor.typed.ActorRef;
+import akka.actor.typed.ActorSystem;
+import akka.actor.typed.Props;
+import akka.actor.typed.javadsl.Behaviors;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+// Cost on the publishing thread of fanning one event out to every subscriber of a topic
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LookupBusBenchmark {
+    @Param({"1", "10", "100", "1000"})
+    int subscribers;
+
+    // TELL: plain subscribe, one mailbox enqueue per subscriber.
+    // CONFLATE: policy subscribers that never ack, so every event after the first is conflated.
+    @Param({"TELL", "CONFLATE"})
+    String mode;
+
+    private ActorSystem<Void> system;
+    private LookupBusImpl bus;
+    private MsgEnvelope event;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        system = ActorSystem.create(Behaviors.empty(), "LookupBusBenchmark");
+        bus = new LookupBusImpl();
+        for (int i = 0; i < subscribers; i++) {
+            ActorRef<Object> subscriber = system.systemActorOf(Behaviors.ignore(), "subscriber-" + i, Props.empty());
+            if (mode.equals("CONFLATE")) {
+                bus.subscribe(subscriber, EventTopic.MARKETDATA.getValue(), SubscriberPolicy.CONFLATE, 16);
+            } else {
+                bus.subscribe(subscriber, EventTopic.MARKETDATA.getValue());
+            }
+        }
+        event = new MsgEnvelope(EventTopic.MARKETDATA.getValue(), "BENCH",
+                new Message.TopOfBook("BENCH", 1, 9_999, 100, 10_001, 100, 10_000));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        system.terminate();
+    }
+
+    @Benchmark
+    public void publish() {
+        bus.publish(event);
+    }
+}
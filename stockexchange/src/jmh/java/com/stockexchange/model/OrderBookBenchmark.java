@@ -0,0 +1,113 @@
+package com.stockexchange.model;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// Add, match and cancel against a book holding `depth` levels per side around a mid of 10000 ticks.
+// Each operation leaves the book as it found it, so the depth stays fixed for the whole run.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OrderBookBenchmark {
+    private static final long MID = 10_000;
+    private static final int ORDERS_PER_LEVEL = 4;
+    private static final int QUANTITY = 100;
+    private static final int SAMPLES = 1 << 14;
+
+    // Price levels per side
+    @Param({"10", "100", "1000"})
+    int depth;
+
+    // Where new orders land: UNIFORM across the whole side, TOP_HEAVY mostly within a few ticks of the touch
+    @Param({"UNIFORM", "TOP_HEAVY"})
+    String distribution;
+
+    private OrderBook book;
+    private FillSink sink;
+    // Ticks behind the touch for each sample, drawn from the distribution
+    private final int[] offsets = new int[SAMPLES];
+    private final boolean[] buys = new boolean[SAMPLES];
+    // One resting order id per sample, replaced as orders are cancelled and re-added
+    private final long[] restingIds = new long[SAMPLES];
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp(Blackhole blackhole) {
+        book = new OrderBook("BENCH", TickSize.CENT);
+        sink = (takerId, makerId, takerSide, priceTicks, quantity) -> blackhole.consume(makerId);
+        for (int level = 0; level < depth; level++) {
+            for (int i = 0; i < ORDERS_PER_LEVEL; i++) {
+                book.addOrder(Order.OrderType.BUY, MID - 1 - level, QUANTITY, 0, sink);
+                book.addOrder(Order.OrderType.SELL, MID + 1 + level, QUANTITY, 0, sink);
+            }
+        }
+
+        Random random = new Random(42);
+        for (int i = 0; i < SAMPLES; i++) {
+            offsets[i] = distribution.equals("TOP_HEAVY")
+                    ? Math.min(depth - 1, (int) (-Math.log(1 - random.nextDouble()) * 2))
+                    : random.nextInt(depth);
+            buys[i] = random.nextBoolean();
+            restingIds[i] = book.addOrder(side(i), price(i), QUANTITY, 0, sink);
+        }
+    }
+
+    // Rests a passive order inside the book, then cancels it
+    @Benchmark
+    public boolean addAndCancel() {
+        int i = nextSample();
+        long orderId = book.addOrder(side(i), price(i), QUANTITY, 0, sink);
+        return book.cancelOrder(orderId);
+    }
+
+    // Takes one order's worth from the touch, then puts the same quantity back at the touch
+    @Benchmark
+    public long matchAndReplenish() {
+        boolean buy = buys[nextSample()];
+        PriceLevel touch = buy ? book.getBestAsk() : book.getBestBid();
+        long priceTicks = touch.getPriceTicks();
+        long orderId = book.addOrder(buy ? Order.OrderType.BUY : Order.OrderType.SELL, priceTicks, QUANTITY, 0, sink);
+        book.addOrder(buy ? Order.OrderType.SELL : Order.OrderType.BUY, priceTicks, QUANTITY, 0, sink);
+        return orderId;
+    }
+
+    // Cancels a resting order found through the id index, then re-adds it at the back of its level
+    @Benchmark
+    public long cancelAndReplace() {
+        int i = nextSample();
+        book.cancelOrder(restingIds[i]);
+        restingIds[i] = book.addOrder(side(i), price(i), QUANTITY, 0, sink);
+        return restingIds[i];
+    }
+
+    private int nextSample() {
+        int i = next;
+        next = (i + 1) & (SAMPLES - 1);
+        return i;
+    }
+
+    private Order.OrderType side(int i) {
+        return buys[i] ? Order.OrderType.BUY : Order.OrderType.SELL;
+    }
+
+    private long price(int i) {
+        return buys[i] ? MID - 1 - offsets[i] : MID + 1 + offsets[i];
+    }
+}
@@ -1,9 +1,21 @@
 package com.stockexchange;
 
 import akka.actor.typed.ActorSystem;
+import akka.actor.typed.MailboxSelector;
 import com.stockexchange.actors.StockExchangeActor;
+import com.stockexchange.backtest.Backtest;
+import com.stockexchange.gateway.OrderGateway;
+import com.stockexchange.ingest.OrderIngest;
+import com.stockexchange.ingest.OrderRing;
+import com.stockexchange.journal.JournalStore;
+import com.stockexchange.loadgen.LoadGenerator;
+import com.stockexchange.metrics.ExchangeMetrics;
 import com.stockexchange.model.Stock;
+import com.stockexchange.model.SymbolTable;
 import com.stockexchange.model.Order;
+import com.stockexchange.model.TickSize;
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
 
 import com.stockexchange.messages.LookupBusImpl;
 
@@ -31,13 +43,43 @@ public class StockExchangeApp {
         }
     }
 
+    // Per-symbol tick size from stockexchange.tick-sizes, falling back to default-tick-size
+    static TickSize tickSizeFor(Config config, String symbol) {
+        String path = "tick-sizes." + symbol;
+        return new TickSize(new BigDecimal(config.hasPath(path)
+                ? config.getString(path)
+                : config.getString("default-tick-size")));
+    }
+
     public static void main(String[] args) {
+        final Config config = ConfigFactory.load().getConfig("stockexchange");
+        // A backtest replays its file on this thread and exits without starting the actor system
+        final Backtest backtest = Backtest.fromConfig(config, symbol -> tickSizeFor(config, symbol));
+        if (backtest != null) {
+            backtest.run(System.out);
+            return;
+        }
         final LookupBusImpl lookupBus = new LookupBusImpl();
 
+        // Clustered, a symbol's book may live on another node, so orders always take the mailbox
+        final boolean clustered = config.getBoolean("cluster.enabled");
+        // "ring" ingest bypasses the exchange mailbox; "mailbox" sends ExecuteTrade as before
+        final OrderIngest ingest = !clustered && config.getString("ingest.mode").equals("ring")
+                ? new OrderIngest(config.getInt("ingest.ring-size"), config.getInt("ingest.drain-batch"))
+                : null;
+        final JournalStore journals = JournalStore.fromConfig(config.getConfig("journal"));
+        // When enabled, replaces the scheduled random trades with a timed load run
+        final LoadGenerator loadGenerator = LoadGenerator.fromConfig(config.getConfig("loadgen"));
+        // Filled in by the exchange as symbols register; producers stamp orders with the ids
+        final SymbolTable symbolTable = new SymbolTable();
+
         final Random random = new Random();
 
         // Create the actor system
-        ActorSystem<Command> stockExchange = ActorSystem.create(StockExchangeActor.create(lookupBus), "StockExchange");
+        ActorSystem<Command> stockExchange = ActorSystem.create(StockExchangeActor.create(lookupBus, ingest, journals, symbolTable), "StockExchange",
+                ConfigFactory.load(), MailboxSelector.fromConfig(ExchangeMetrics.MAILBOX));
+        // TCP order entry for clients outside this JVM
+        final OrderGateway gateway = OrderGateway.fromConfig(config.getConfig("gateway"), stockExchange, ingest, symbolTable);
 /*
         stockExchange.tell(new StockExchangeActor.RegisterStock(
                 new Stock("AAPL", "Apple Inc.", BigDecimal.valueOf(150.50))
@@ -61,33 +103,49 @@ public class StockExchangeApp {
                 "IBM", BigDecimal.valueOf(90.77)
         ));
 */
-        List<String> symbols = Arrays.asList("IBM","GOOGL","AAPL","MSFT", "SPY");
+        List<String> symbols = loadGenerator != null ? loadGenerator.symbols() : Arrays.asList("IBM","GOOGL","AAPL","MSFT", "SPY");
+        long[] midTicks = new long[symbols.size()];
         for(String symbol: symbols) {
-            BigDecimal d = BigDecimal.valueOf(100*random.nextDouble()).setScale(2, RoundingMode.HALF_UP);
+            TickSize tickSize = tickSizeFor(config, symbol);
+            long d = tickSize.toTicks(BigDecimal.valueOf(100*random.nextDouble()).setScale(2, RoundingMode.HALF_UP));
+            midTicks[symbols.indexOf(symbol)] = d;
 
             stockExchange.tell(new StockExchangeActor.RegisterStock(
-                    new Stock(symbol, "Apple Inc.", d)
+                    new Stock(symbol, "Apple Inc.", tickSize, d)
             ));
 
             // Register stocks with market making
             stockExchange.tell(new StockExchangeActor.RegisterMarketMaker(symbol, d));
 
+            if (loadGenerator != null) {
+                continue;
+            }
             stockExchange.scheduler().scheduleWithFixedDelay(
                     Duration.ofSeconds(6),
                     Duration.ofSeconds(2),
-                    (Runnable) () ->{stockExchange.tell(new StockExchangeActor.ExecuteTrade(
-                            new Order(symbol,
-                                    100,
-                                    BigDecimal.valueOf(100*random.nextDouble()).setScale(2, RoundingMode.HALF_UP),
-                                    Order.OrderType.BUY)
-                    ));},
+                    (Runnable) () ->{
+                        long price = tickSize.toTicks(BigDecimal.valueOf(100*random.nextDouble()).setScale(2, RoundingMode.HALF_UP));
+                        OrderRing ring = ingest != null ? ingest.ring(symbol) : null;
+                        if (ring == null || !ring.offer(Order.OrderType.BUY, price, 100, Order.DEFAULT_ACCOUNT, null)) {
+                            stockExchange.tell(new StockExchangeActor.ExecuteTrade(
+                                    new Order(symbolTable.idOf(symbol), symbol, 100, price, Order.OrderType.BUY)
+                            ));
+                        }
+                    },
                     stockExchange.executionContext()
             );
         }
 
-        waitForKey();
+        if (loadGenerator != null) {
+            loadGenerator.run(stockExchange, ingest, symbolTable, gateway, midTicks, System.out);
+        } else {
+            waitForKey();
+        }
 
         // Shutdown
+        if (gateway != null) {
+            gateway.close();
+        }
         stockExchange.terminate();
     }
 }
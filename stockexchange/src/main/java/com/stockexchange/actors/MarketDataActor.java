@@ -0,0 +1,88 @@
+package com.stockexchange.actors;
+
+import akka.actor.typed.ActorRef;
+import akka.actor.typed.Behavior;
+import akka.actor.typed.javadsl.AbstractBehavior;
+import akka.actor.typed.javadsl.ActorContext;
+import akka.actor.typed.javadsl.Behaviors;
+import akka.actor.typed.javadsl.Receive;
+import com.stockexchange.messages.EventTopic;
+import com.stockexchange.messages.LookupBusImpl;
+import com.stockexchange.messages.Message;
+import com.stockexchange.messages.MsgEnvelope;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+// Fans top-of-book updates out to MARKETDATA subscribers and depth deltas out to DEPTH
+// subscribers, so a book pays for one message per change however many strategies are listening
+public class MarketDataActor extends AbstractBehavior<MarketDataActor.Command> {
+    // Commands
+    public interface Command {}
+
+    // One per book. Holds the latest update the book produced that has not been fanned out yet;
+    // the book tells the slot itself to this actor only when it was empty, so the mailbox holds at
+    // most one message per symbol and intermediate updates are conflated at the source.
+    public static final class TopOfBookSlot implements Command {
+        private final AtomicReference<Message.TopOfBook> pending = new AtomicReference<>();
+        private final ActorRef<Command> publisher;
+
+        public TopOfBookSlot(ActorRef<Command> publisher) {
+            this.publisher = publisher;
+        }
+
+        public void offer(Message.TopOfBook topOfBook) {
+            if (pending.getAndSet(topOfBook) == null) {
+                publisher.tell(this);
+            }
+        }
+
+        Message.TopOfBook take() {
+            return pending.getAndSet(null);
+        }
+    }
+
+    // Every level a book changed while processing one message, in sequence order. Unlike top of
+    // book these are never conflated: a client applying deltas needs all of them.
+    public static class PublishDepth implements Command {
+        public final List<Message.DepthDelta> deltas;
+        public PublishDepth(List<Message.DepthDelta> deltas) {
+            this.deltas = deltas;
+        }
+    }
+
+    // Internal state
+    private final LookupBusImpl lookupBus;
+
+    public static Behavior<Command> create(LookupBusImpl lookupBus) {
+        return Behaviors.setup(context -> new MarketDataActor(context, lookupBus));
+    }
+
+    private MarketDataActor(ActorContext<Command> context, LookupBusImpl lookupBus) {
+        super(context);
+        this.lookupBus = lookupBus;
+    }
+
+    @Override
+    public Receive<Command> createReceive() {
+        return newReceiveBuilder()
+                .onMessage(TopOfBookSlot.class, this::onTopOfBook)
+                .onMessage(PublishDepth.class, this::onPublishDepth)
+                .build();
+    }
+
+    private Behavior<Command> onTopOfBook(TopOfBookSlot slot) {
+        Message.TopOfBook topOfBook = slot.take();
+        if (topOfBook != null) {
+            lookupBus.publish(new MsgEnvelope(EventTopic.MARKETDATA.getValue(), topOfBook.symbol(), topOfBook));
+        }
+        return this;
+    }
+
+    private Behavior<Command> onPublishDepth(PublishDepth command) {
+        for (Message.DepthDelta delta : command.deltas) {
+            lookupBus.publish(new MsgEnvelope(EventTopic.DEPTH.getValue(), delta));
+        }
+        return this;
+    }
+}
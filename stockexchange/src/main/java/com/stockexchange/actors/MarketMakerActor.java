@@ -1,5 +1,6 @@
 package com.stockexchange.actors;
 
+import akka.actor.typed.ActorRef;
 import akka.actor.typed.Behavior;
 import akka.actor.typed.PostStop;
 import akka.actor.typed.PreRestart;
@@ -10,42 +11,68 @@ import akka.actor.typed.javadsl.Receive;
 import akka.actor.typed.javadsl.Behaviors;
 import com.stockexchange.messages.EventTopic;
 import com.stockexchange.messages.LookupBusImpl;
+import com.stockexchange.messages.Message;
 import com.stockexchange.messages.MsgEnvelope;
-import com.stockexchange.model.OrderBook;
-import com.stockexchange.model.Order;
+import com.stockexchange.model.MarketMaker;
+import com.stockexchange.model.TickSize;
+import com.typesafe.config.Config;
 
-import java.math.BigDecimal;
-import java.math.RoundingMode;
 import java.util.Random;
 
+// Keeps a two-sided quote resting in its symbol's book. It re-quotes only when the reference
+// price has moved past requote-threshold-bps since the last quote, or when a quote trades, so
+// quoting traffic follows price movement rather than trade count. The rules are in MarketMaker.
 public class MarketMakerActor extends AbstractBehavior<MarketMakerActor.Command> {
     // Commands
     public interface Command {}
 
+    // Re-quotes around the current price regardless of the threshold
     public static class PlaceMarketMakingOrders implements Command {}
 
     public static class UpdateMarketConditions implements Command {
-        public final BigDecimal currentPrice;
-        public UpdateMarketConditions(BigDecimal currentPrice) {
-            this.currentPrice = currentPrice;
+        public final long currentPriceTicks;
+        public UpdateMarketConditions(long currentPriceTicks) {
+            this.currentPriceTicks = currentPriceTicks;
+        }
+    }
+
+    // Sent by the symbol's book once it has started, and again after it restarts
+    public static class AttachBook implements Command {
+        public final ActorRef<OrderBookActor.Command> orderBook;
+        public AttachBook(ActorRef<OrderBookActor.Command> orderBook) {
+            this.orderBook = orderBook;
+        }
+    }
+
+    // Fills of our quotes, delivered through a message adapter
+    private static class QuoteEvent implements Command {
+        final Message.Command event;
+        QuoteEvent(Message.Command event) {
+            this.event = event;
         }
     }
 
     // Internal state
     private final String stockSymbol;
-    private BigDecimal currentPrice;
-    private final Random random = new Random();
+    private final TickSize tickSize;
+    private final MarketMaker maker;
     private final LookupBusImpl lookupBus;
+    private final ActorRef<Message.Command> quoteEvents;
+    private ActorRef<OrderBookActor.Command> orderBook;
 
-    public static Behavior<Command> create(String stockSymbol, BigDecimal initialPrice, LookupBusImpl lookupBus) {
-        return Behaviors.setup(context -> new MarketMakerActor(context, stockSymbol, initialPrice, lookupBus));
+    public static Behavior<Command> create(String stockSymbol, TickSize tickSize, long initialPriceTicks, LookupBusImpl lookupBus) {
+        return Behaviors.setup(context -> new MarketMakerActor(context, stockSymbol, tickSize, initialPriceTicks, lookupBus));
     }
 
-    private MarketMakerActor(ActorContext<Command> context, String stockSymbol, BigDecimal initialPrice, LookupBusImpl lookupBus) {
+    private MarketMakerActor(ActorContext<Command> context, String stockSymbol, TickSize tickSize, long initialPriceTicks, LookupBusImpl lookupBus) {
         super(context);
         this.stockSymbol = stockSymbol;
-        this.currentPrice = initialPrice;
+        this.tickSize = tickSize;
         this.lookupBus = lookupBus;
+        Config config = context.getSystem().settings().config().getConfig("stockexchange.market-maker");
+        this.maker = new MarketMaker(initialPriceTicks, config.getLong("spread-bps"), config.getLong("requote-threshold-bps"),
+                new Random());
+        this.quoteEvents = context.messageAdapter(Message.Command.class, QuoteEvent::new);
         this.lookupBus.publish(new MsgEnvelope(EventTopic.PSA.getValue(), new String("blah")));
         this.lookupBus.publish(new MsgEnvelope(EventTopic.FILLS.getValue(),  new String("FILLS")));
     }
@@ -55,56 +82,62 @@ public class MarketMakerActor extends AbstractBehavior<MarketMakerActor.Command>
         return newReceiveBuilder()
                 .onMessage(UpdateMarketConditions.class, this::onUpdateMarketConditions)
                 .onMessage(PlaceMarketMakingOrders.class, this::onPlaceMarketMakingOrders)
+                .onMessage(AttachBook.class, this::onAttachBook)
+                .onMessage(QuoteEvent.class, this::onQuoteEvent)
                 .build();
     }
 
     private Behavior<Command> onUpdateMarketConditions(UpdateMarketConditions command) {
-        this.currentPrice = command.currentPrice;
-
-        getContext().getLog().info(
+        getContext().getLog().debug(
                 "onUpdateMarketConditions {}",
-                this.currentPrice
+                tickSize.format(command.currentPriceTicks)
         );
 
+        if (maker.onPrice(command.currentPriceTicks)) {
+            placeQuotes();
+        }
         return this;
     }
 
     private Behavior<Command> onPlaceMarketMakingOrders(PlaceMarketMakingOrders command) {
-        // Create bid and ask orders around the current price
-        BigDecimal spreadPercent = BigDecimal.valueOf(0.01); // 1% spread
-
-        // Buy order slightly below current price
-        BigDecimal bidPrice = currentPrice.multiply(BigDecimal.ONE.subtract(spreadPercent))
-                .setScale(2, RoundingMode.HALF_UP);
-
-        // Sell order slightly above current price
-        BigDecimal askPrice = currentPrice.multiply(BigDecimal.ONE.add(spreadPercent))
-                .setScale(2, RoundingMode.HALF_UP);
-
-        // Randomize order quantities
-        int bidQuantity = random.nextInt(50) + 10; // 10-60 shares
-        int askQuantity = random.nextInt(50) + 10; // 10-60 shares
-
-        Order buyOrder = new Order(
-                this.stockSymbol,
-                bidQuantity,
-                bidPrice,
-                Order.OrderType.BUY
-        );
+        placeQuotes();
+        return this;
+    }
 
-        Order sellOrder = new Order(
-                this.stockSymbol,
-                askQuantity,
-                askPrice,
-                Order.OrderType.SELL
-        );
+    private Behavior<Command> onAttachBook(AttachBook command) {
+        this.orderBook = command.orderBook;
+        placeQuotes();
+        return this;
+    }
 
-        getContext().getLog().info(
+    // A fill leaves the quote smaller or gone; put it back at full size
+    private Behavior<Command> onQuoteEvent(QuoteEvent command) {
+        if (command.event instanceof Message.Fill fill) {
+            getContext().getLog().debug("Quote filled: {} {} @ {}",
+                    stockSymbol, fill.quantity(), tickSize.format(fill.price()));
+            placeQuotes();
+        }
+        return this;
+    }
+
+    private void placeQuotes() {
+        if (orderBook == null) {
+            return;
+        }
+        // Bid and ask around the current price
+        maker.quote();
+
+        // Replaces the previous quote in place rather than adding to it
+        orderBook.tell(new OrderBookActor.Quote(maker.getBidPriceTicks(), maker.getBidQuantity(),
+                maker.getAskPriceTicks(), maker.getAskQuantity(), quoteEvents));
+
+        getContext().getLog().debug(
                 "Market Maker Orders: Buy {} @ ${}, Sell {} @ ${}:  ${}",
-                bidQuantity, bidPrice, askQuantity, askPrice, currentPrice
+                maker.getBidQuantity(), tickSize.format(maker.getBidPriceTicks()),
+                maker.getAskQuantity(), tickSize.format(maker.getAskPriceTicks()),
+                tickSize.format(maker.getCurrentPriceTicks())
         );
 
-        return this;
     }
 
 
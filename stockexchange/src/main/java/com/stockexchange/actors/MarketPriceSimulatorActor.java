@@ -6,8 +6,10 @@ import akka.actor.typed.javadsl.ActorContext;
 import akka.actor.typed.javadsl.Receive;
 import akka.actor.typed.javadsl.Behaviors;
 
+import com.stockexchange.model.PriceModel;
+import com.stockexchange.model.TickSize;
+
 import java.math.BigDecimal;
-import java.math.RoundingMode;
 import java.time.Duration;
 import java.util.Random;
 
@@ -24,19 +26,24 @@ public class MarketPriceSimulatorActor extends AbstractBehavior<MarketPriceSimul
         }
     }
 
+    // Uniform move of up to +/- 5% every tick
+    private static final double VOLATILITY = 0.05;
+
     // Internal state
-    private BigDecimal currentPrice;
+    private long currentPriceTicks;
     private final String stockSymbol;
+    private final TickSize tickSize;
     private final Random random = new Random();
 
-    public static Behavior<Command> create(String stockSymbol, BigDecimal initialPrice) {
-        return Behaviors.setup(context -> new MarketPriceSimulatorActor(context, stockSymbol, initialPrice));
+    public static Behavior<Command> create(String stockSymbol, TickSize tickSize, long initialPriceTicks) {
+        return Behaviors.setup(context -> new MarketPriceSimulatorActor(context, stockSymbol, tickSize, initialPriceTicks));
     }
 
-    private MarketPriceSimulatorActor(ActorContext<Command> context, String stockSymbol, BigDecimal initialPrice) {
+    private MarketPriceSimulatorActor(ActorContext<Command> context, String stockSymbol, TickSize tickSize, long initialPriceTicks) {
         super(context);
         this.stockSymbol = stockSymbol;
-        this.currentPrice = initialPrice;
+        this.tickSize = tickSize;
+        this.currentPriceTicks = initialPriceTicks;
 
         context.getSystem().scheduler().scheduleWithFixedDelay(
                 Duration.ofSeconds(2),
@@ -56,18 +63,14 @@ public class MarketPriceSimulatorActor extends AbstractBehavior<MarketPriceSimul
 
     private Behavior<Command> onSimulatePriceChange(SimulatePriceChange command) {
         // Simulate price volatility
-        double changePercent = (random.nextDouble() - 0.5) * 0.1; // +/- 5% volatility
-        BigDecimal priceChange = currentPrice.multiply(BigDecimal.valueOf(changePercent))
-                .setScale(2, RoundingMode.HALF_UP);
-
-        currentPrice = currentPrice.add(priceChange);
+        currentPriceTicks = PriceModel.RANDOM_WALK.next(currentPriceTicks, currentPriceTicks, VOLATILITY, 0, random);
 
-        getContext().getLog().info("Price update for {}: ${}", stockSymbol, currentPrice);
+        getContext().getLog().info("Price update for {}: ${}", stockSymbol, tickSize.format(currentPriceTicks));
         return this;
     }
 
     private Behavior<Command> onGetCurrentPrice(GetCurrentPrice command) {
-        command.replyTo.tell(currentPrice);
+        command.replyTo.tell(tickSize.toPrice(currentPriceTicks));
         return this;
     }
 
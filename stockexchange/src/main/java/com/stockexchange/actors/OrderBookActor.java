@@ -0,0 +1,746 @@
+package com.stockexchange.actors;
+
+import akka.actor.Cancellable;
+import akka.actor.typed.ActorRef;
+import akka.actor.typed.Behavior;
+import akka.actor.typed.DispatcherSelector;
+import akka.actor.typed.PostStop;
+import akka.actor.typed.javadsl.AbstractBehavior;
+import akka.actor.typed.javadsl.ActorContext;
+import akka.actor.typed.javadsl.Behaviors;
+import akka.actor.typed.javadsl.Receive;
+import com.stockexchange.ingest.OrderIngest;
+import com.stockexchange.ingest.OrderRing;
+import com.stockexchange.ingest.OrderSlot;
+import com.stockexchange.journal.Journal;
+import com.stockexchange.journal.JournalHandler;
+import com.stockexchange.journal.JournalStore;
+import com.stockexchange.messages.Message;
+import com.stockexchange.marketdata.PriceBoard;
+import com.stockexchange.marketdata.PriceSnapshot;
+import com.stockexchange.metrics.BookMetrics;
+import com.stockexchange.metrics.ExchangeMetrics;
+import com.stockexchange.model.BarSeries;
+import com.stockexchange.model.BookSnapshot;
+import com.stockexchange.model.DepthSink;
+import com.stockexchange.model.FillSink;
+import com.stockexchange.model.Order;
+import com.stockexchange.model.OrderBook;
+import com.stockexchange.model.PriceLevel;
+import com.stockexchange.model.RestingOrder;
+import com.stockexchange.model.TickSize;
+import com.stockexchange.model.TradeTape;
+import com.stockexchange.risk.BookRisk;
+import com.stockexchange.risk.PreTradeRisk;
+import com.typesafe.config.Config;
+
+import java.io.Serializable;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+// Owns and matches the book of a single symbol, so symbols match in parallel
+public class OrderBookActor extends AbstractBehavior<OrderBookActor.Command> {
+    // Commands; serializable since a clustered exchange sends them between nodes
+    public interface Command extends Serializable {}
+
+    // With an owner, only an order placed with that replyTo is cancelled; null cancels any order
+    public static class CancelOrder implements Command {
+        public final long orderId;
+        public final ActorRef<Message.Command> owner;
+        public CancelOrder(long orderId) {
+            this(orderId, null);
+        }
+        public CancelOrder(long orderId, ActorRef<Message.Command> owner) {
+            this.orderId = orderId;
+            this.owner = owner;
+        }
+    }
+
+    // Owner as for CancelOrder
+    public static class AmendOrder implements Command {
+        public final long orderId;
+        public final int quantity;
+        public final ActorRef<Message.Command> owner;
+        public AmendOrder(long orderId, int quantity) {
+            this(orderId, quantity, null);
+        }
+        public AmendOrder(long orderId, int quantity, ActorRef<Message.Command> owner) {
+            this.orderId = orderId;
+            this.quantity = quantity;
+            this.owner = owner;
+        }
+    }
+
+    // The market maker's two-sided quote. Both sides are moved in this one message with in-place
+    // cancel/replace, so the book never shows a half-updated quote. Fills of either side go to replyTo.
+    public static class Quote implements Command {
+        public final long bidPriceTicks;
+        public final int bidQuantity;
+        public final long askPriceTicks;
+        public final int askQuantity;
+        public final ActorRef<Message.Command> replyTo;
+        public Quote(long bidPriceTicks, int bidQuantity, long askPriceTicks, int askQuantity, ActorRef<Message.Command> replyTo) {
+            this.bidPriceTicks = bidPriceTicks;
+            this.bidQuantity = bidQuantity;
+            this.askPriceTicks = askPriceTicks;
+            this.askQuantity = askQuantity;
+            this.replyTo = replyTo;
+        }
+    }
+
+    // Sent by the ring's producers when it goes from idle to non-empty
+    public enum DrainRing implements Command { INSTANCE }
+
+    // Forces journaled records to disk when no further commands arrive to trigger a commit
+    public enum FlushJournal implements Command { INSTANCE }
+
+    // Copies the book and writes it to disk in the background
+    public enum TakeSnapshot implements Command { INSTANCE }
+
+    // Completion of a background snapshot write; failure is null on success
+    private static class SnapshotWritten implements Command {
+        final Throwable failure;
+        SnapshotWritten(Throwable failure) {
+            this.failure = failure;
+        }
+    }
+
+    // Internal state
+    private final OrderBook orderBook;
+    private final ActorRef<MarketMakerActor.Command> marketMaker;
+    private final FillTally fills = new FillTally();
+    private final OrderRing ring;
+    private final int drainBatch;
+    private final Consumer<OrderSlot> slotHandler = this::onSlot;
+    private final Journal journal;
+    private final Cancellable flushTimer;
+    private final JournalStore journals;
+    private final Cancellable snapshotTimer;
+    // Single copy buffer; a snapshot is skipped while the previous one is still being written
+    private final BookSnapshot snapshot = new BookSnapshot();
+    private boolean snapshotInFlight;
+    // Last top of book handed to market data, to publish only on change
+    private final MarketDataActor.TopOfBookSlot topOfBook;
+    private long topOfBookSequence;
+    private long bidPriceTicks;
+    private long bidQuantity;
+    private long askPriceTicks;
+    private long askQuantity;
+    private long lastPriceTicks;
+    private long publishedVolume;
+    // Shares traded since the book was loaded
+    private long volume;
+    // The same top of book for readers that cannot wait for a message
+    private final PriceBoard.Cell prices;
+    // Depth deltas are numbered per symbol; Message.Depth replies carry the latest number
+    private final ActorRef<MarketDataActor.Command> marketData;
+    private final DepthCollector depthChanges = new DepthCollector();
+    private long depthSequence;
+    private final BookMetrics metrics;
+    // Fills since startup with their bars; null when stockexchange.tape is off
+    private final TradeTape tape;
+    // Adds to nanoTime to give epoch nanoseconds that never go backwards
+    private final long epochOffsetNanos = System.currentTimeMillis() * 1_000_000L - System.nanoTime();
+    // Off while the journal replays; those fills happened before and their times are lost
+    private boolean recording;
+    // Pre-trade checks run inline before an order is journaled; null when stockexchange.risk is off
+    private final BookRisk risk;
+
+    // Reused for every sweep so matching does not allocate per fill. Each fill is reported to the
+    // incoming order's replyTo and to the replyTo the resting order was placed with, under the
+    // same execution id.
+    private final class FillTally implements FillSink {
+        int count;
+        long quantity;
+        long lastPriceTicks;
+        int executionId;
+        // The order being matched; its Ack must reach replyTo before its first Fill
+        ActorRef<Message.Command> taker;
+        boolean takerAcked;
+        // Risk account of the order being matched, or RestingOrder.NO_ACCOUNT
+        int takerAccount = RestingOrder.NO_ACCOUNT;
+
+        void reset() {
+            count = 0;
+            quantity = 0;
+        }
+
+        void begin(ActorRef<Message.Command> replyTo) {
+            begin(replyTo, RestingOrder.NO_ACCOUNT);
+        }
+
+        void begin(ActorRef<Message.Command> replyTo, int account) {
+            taker = replyTo;
+            takerAcked = false;
+            takerAccount = account;
+        }
+
+        // Quotes get fills but no Ack; the market maker never needs their ids
+        void beginQuote(ActorRef<Message.Command> replyTo) {
+            taker = replyTo;
+            takerAcked = true;
+            takerAccount = RestingOrder.NO_ACCOUNT;
+        }
+
+        void ack(long orderId) {
+            if (taker != null && !takerAcked) {
+                takerAcked = true;
+                taker.tell(new Message.Ack(orderId, orderBook.getStockSymbol()));
+            }
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public void onFill(long takerId, long makerId, Order.OrderType takerSide, long priceTicks, int quantity) {
+            this.count++;
+            this.quantity += quantity;
+            this.lastPriceTicks = priceTicks;
+            volume += quantity;
+            if (tape != null && recording) {
+                tape.append(System.nanoTime() + epochOffsetNanos, priceTicks, quantity, takerSide);
+            }
+
+            // Called before the book reduces the maker, so it is still resting here
+            RestingOrder maker = orderBook.getOrder(makerId);
+            // Replayed orders are charged once the book is rebuilt, from what is left resting
+            if (risk != null && recording) {
+                if (takerAccount != RestingOrder.NO_ACCOUNT) {
+                    risk.onFill(takerAccount, takerSide, quantity);
+                }
+                if (maker != null && maker.getAccount() != RestingOrder.NO_ACCOUNT) {
+                    risk.onFill(maker.getAccount(), maker.getSide(), quantity);
+                    risk.release(maker.getAccount(), maker.getPriceTicks(), quantity);
+                }
+            }
+            if (taker == null && (maker == null || maker.getOwner() == null)) {
+                return;
+            }
+            int execution = ++executionId;
+            if (maker != null && maker.getOwner() != null) {
+                ((ActorRef<Message.Command>) maker.getOwner()).tell(new Message.Fill(execution, makerId, orderBook.getStockSymbol(), priceTicks, quantity));
+            }
+            if (taker != null) {
+                ack(takerId);
+                taker.tell(new Message.Fill(execution, takerId, orderBook.getStockSymbol(), priceTicks, quantity));
+            }
+        }
+    }
+
+    // Turns the book's changed levels into numbered deltas for one PublishDepth message
+    private final class DepthCollector implements DepthSink {
+        List<Message.DepthDelta> deltas;
+
+        @Override
+        public void onLevel(Order.OrderType side, long priceTicks, long totalQuantity) {
+            if (deltas == null) {
+                deltas = new ArrayList<>();
+            }
+            deltas.add(new Message.DepthDelta(orderBook.getStockSymbol(), ++depthSequence,
+                    side == Order.OrderType.BUY ? Message.TradeType.BUY : Message.TradeType.SELL,
+                    priceTicks, totalQuantity));
+        }
+    }
+
+    public static Behavior<Command> create(String stockSymbol, TickSize tickSize, ActorRef<MarketMakerActor.Command> marketMaker,
+                                          ActorRef<MarketDataActor.Command> marketData, OrderIngest ingest, JournalStore journals) {
+        return Behaviors.setup(context -> new OrderBookActor(context, stockSymbol, tickSize, marketMaker, marketData, ingest, journals));
+    }
+
+    private OrderBookActor(ActorContext<Command> context, String stockSymbol, TickSize tickSize, ActorRef<MarketMakerActor.Command> marketMaker,
+                           ActorRef<MarketDataActor.Command> marketData, OrderIngest ingest, JournalStore journals) {
+        super(context);
+        this.orderBook = new OrderBook(stockSymbol, tickSize);
+        this.marketMaker = marketMaker;
+        this.journals = journals;
+        this.topOfBook = new MarketDataActor.TopOfBookSlot(marketData);
+        this.marketData = marketData;
+        this.metrics = ExchangeMetrics.get(context.getSystem()).book(stockSymbol);
+        this.prices = PriceBoard.get(context.getSystem()).cell(stockSymbol);
+        this.tape = createTape(context.getSystem().settings().config().getConfig("stockexchange.tape"));
+        this.risk = PreTradeRisk.get(context.getSystem()).forBook(tickSize);
+
+        // Rebuild the book before accepting anything new: load the latest snapshot, then replay the
+        // journal from where it left off. Order ids come out identical because the book assigns
+        // them in command order.
+        if (journals != null) {
+            this.journal = journals.open(stockSymbol);
+            long started = System.nanoTime();
+            long fromPosition = 0;
+            if (journals.loadSnapshot(stockSymbol, snapshot)) {
+                orderBook.restore(snapshot);
+                fromPosition = snapshot.getJournalPosition();
+            }
+            long records = journal.replay(new JournalHandler() {
+                @Override
+                public void onOrder(Order.OrderType side, long priceTicks, int quantity, long timestamp, int account) {
+                    orderBook.addOrder(side, priceTicks, quantity, timestamp, account, null, fills);
+                }
+
+                @Override
+                public void onCancel(long orderId) {
+                    orderBook.cancelOrder(orderId);
+                }
+
+                @Override
+                public void onAmend(long orderId, int quantity) {
+                    orderBook.amendOrder(orderId, quantity);
+                }
+
+                @Override
+                public void onQuote(long bidPriceTicks, int bidQuantity, long askPriceTicks, int askQuantity, long timestamp) {
+                    applyQuote(bidPriceTicks, bidQuantity, askPriceTicks, askQuantity, timestamp, null);
+                }
+            }, fromPosition);
+            context.getLog().info("Restored {} from journal position {} with {} records in {} ms, {} orders resting",
+                    stockSymbol, fromPosition, records, (System.nanoTime() - started) / 1_000_000,
+                    orderBook.getRestingOrderCount());
+            if (risk != null) {
+                chargeRestingOrders();
+            }
+            if (orderBook.getLastTradePriceTicks() > 0) {
+                marketMaker.tell(new MarketMakerActor.UpdateMarketConditions(orderBook.getLastTradePriceTicks()));
+            }
+            publishMarketData();
+
+            if (journals.getFsyncEvery() > 0) {
+                Duration interval = Duration.ofNanos(Math.max(journals.getFsyncIntervalNanos(), 1_000_000));
+                this.flushTimer = context.getSystem().scheduler().scheduleWithFixedDelay(
+                        interval,
+                        interval,
+                        (Runnable) () -> {context.getSelf().tell(FlushJournal.INSTANCE);},
+                        context.getExecutionContext()
+                );
+            } else {
+                this.flushTimer = null;
+            }
+
+            if (journals.getSnapshotIntervalNanos() > 0) {
+                Duration interval = Duration.ofNanos(journals.getSnapshotIntervalNanos());
+                this.snapshotTimer = context.getSystem().scheduler().scheduleWithFixedDelay(
+                        interval,
+                        interval,
+                        (Runnable) () -> {context.getSelf().tell(TakeSnapshot.INSTANCE);},
+                        context.getExecutionContext()
+                );
+            } else {
+                this.snapshotTimer = null;
+            }
+        } else {
+            this.journal = null;
+            this.flushTimer = null;
+            this.snapshotTimer = null;
+        }
+        // Recovered state is covered by GetDepth; deltas start from here
+        orderBook.trackDepthChanges();
+        this.recording = true;
+
+        // Ring ingest is optional; without it orders arrive only as ExecuteTrade messages
+        if (ingest != null) {
+            this.ring = new OrderRing(ingest.getRingSize());
+            this.drainBatch = ingest.getDrainBatch();
+            ActorRef<Command> self = context.getSelf();
+            this.ring.setWakeup(() -> self.tell(DrainRing.INSTANCE));
+            ingest.register(stockSymbol, this.ring);
+            metrics.setRing(this.ring);
+        } else {
+            this.ring = null;
+            this.drainBatch = 0;
+        }
+
+        // The market maker starts quoting once it knows where to send its quotes
+        marketMaker.tell(new MarketMakerActor.AttachBook(context.getSelf()));
+    }
+
+    @Override
+    public Receive<Command> createReceive() {
+        return newReceiveBuilder()
+                .onMessage(StockExchangeActor.ExecuteTrade.class, this::onExecuteTrade)
+                .onMessage(StockExchangeActor.ExecuteTrades.class, this::onExecuteTrades)
+                .onMessage(CancelOrder.class, this::onCancelOrder)
+                .onMessage(StockExchangeActor.GetDepth.class, this::onGetDepth)
+                .onMessage(StockExchangeActor.GetTrades.class, this::onGetTrades)
+                .onMessage(StockExchangeActor.GetBars.class, this::onGetBars)
+                .onMessage(AmendOrder.class, this::onAmendOrder)
+                .onMessage(Quote.class, this::onQuote)
+                .onMessage(DrainRing.class, this::onDrainRing)
+                .onMessage(FlushJournal.class, this::onFlushJournal)
+                .onMessage(TakeSnapshot.class, this::onTakeSnapshot)
+                .onMessage(SnapshotWritten.class, this::onSnapshotWritten)
+                .onSignal(PostStop.class, this::onPostStop)
+                .build();
+    }
+
+    private Behavior<Command> onExecuteTrade(StockExchangeActor.ExecuteTrade command) {
+        getContext().getLog().debug("Trade executed: {} {} at {}",
+                command.trade.getType(),
+                command.trade.getStockSymbol(),
+                orderBook.getTickSize().format(command.trade.getPriceTicks()));
+
+        fills.reset();
+        long orderId = submit(command.trade.getType(), command.trade.getPriceTicks(), command.trade.getQuantity(),
+                command.trade.getTimestamp(), command.trade.getAccountId(), command.replyTo);
+        if (journal != null) {
+            journal.commit();
+        }
+        if (orderId == Message.REJECTED) {
+            // Nothing reached the book
+            return this;
+        }
+
+        // Only a trade moves the maker's reference. An unfilled limit price would let a small
+        // passive order drag the maker's quotes to wherever it was priced.
+        if (fills.count > 0) {
+            getContext().getLog().debug("Matched {} fills for {} shares of {}, last at {}",
+                    fills.count, fills.quantity, orderBook.getStockSymbol(),
+                    orderBook.getTickSize().format(fills.lastPriceTicks));
+            marketMaker.tell(new MarketMakerActor.UpdateMarketConditions(fills.lastPriceTicks));
+        }
+        publishMarketData();
+        return this;
+    }
+
+    private Behavior<Command> onExecuteTrades(StockExchangeActor.ExecuteTrades command) {
+        fills.reset();
+        for (Order trade : command.trades) {
+            submit(trade.getType(), trade.getPriceTicks(), trade.getQuantity(), trade.getTimestamp(), trade.getAccountId(),
+                    command.replyTo);
+        }
+        if (journal != null) {
+            journal.commit();
+        }
+        getContext().getLog().debug("Matched batch of {} orders for {} with {} fills",
+                command.trades.size(), orderBook.getStockSymbol(), fills.count);
+
+        // One market update per batch rather than per order, and only if the batch traded
+        if (fills.count > 0) {
+            marketMaker.tell(new MarketMakerActor.UpdateMarketConditions(fills.lastPriceTicks));
+        }
+        publishMarketData();
+        return this;
+    }
+
+    private Behavior<Command> onDrainRing(DrainRing command) {
+        fills.reset();
+        int drained = ring.drain(slotHandler, drainBatch);
+        if (journal != null) {
+            journal.commit();
+        }
+        if (drained > 0) {
+            getContext().getLog().debug("Drained {} orders for {} with {} fills",
+                    drained, orderBook.getStockSymbol(), fills.count);
+
+            // One market update per batch rather than per order, and only if the batch traded
+            if (fills.count > 0) {
+                marketMaker.tell(new MarketMakerActor.UpdateMarketConditions(fills.lastPriceTicks));
+            }
+            publishMarketData();
+        }
+        if (ring.hasPending()) {
+            ring.signal();
+        }
+        return this;
+    }
+
+    private void onSlot(OrderSlot slot) {
+        submit(slot.side, slot.priceTicks, slot.quantity, slot.timestamp, slot.account, slot.replyTo);
+    }
+
+    // Checks, journals and matches one order. replyTo, if any, gets the Ack and then a Fill per
+    // execution, including later ones against whatever part of the order rests. An order that
+    // fails a risk check is acked as Message.REJECTED and never reaches the journal or the book.
+    private long submit(Order.OrderType side, long priceTicks, int quantity, long timestamp, int account,
+                        ActorRef<Message.Command> replyTo) {
+        if (risk != null) {
+            // The order's timestamp comes from its producer's clock, which may be another JVM's
+            BookRisk.Result result = risk.check(account, side, priceTicks, quantity, BookRisk.referencePriceTicks(orderBook),
+                    System.nanoTime());
+            if (result != BookRisk.Result.PASSED) {
+                metrics.onRiskReject();
+                getContext().getLog().debug("Order rejected by risk check {}: account {} {} {} at {}",
+                        result, account, side, orderBook.getStockSymbol(), priceTicks);
+                if (replyTo != null) {
+                    replyTo.tell(new Message.Ack(Message.REJECTED, orderBook.getStockSymbol()));
+                }
+                return Message.REJECTED;
+            }
+        } else {
+            account = RestingOrder.NO_ACCOUNT;
+        }
+        if (journal != null) {
+            journal.appendOrder(side, priceTicks, quantity, timestamp, account);
+        }
+        long started = System.nanoTime();
+        int fillsBefore = fills.count;
+        fills.begin(replyTo, account);
+        long orderId = orderBook.addOrder(side, priceTicks, quantity, timestamp, account, replyTo, fills);
+        fills.ack(orderId);
+        fills.begin(null);
+        if (risk != null) {
+            // The filled part is no longer open
+            RestingOrder resting = orderBook.getOrder(orderId);
+            risk.release(account, priceTicks, resting != null ? quantity - resting.getQuantity() : quantity);
+        }
+        metrics.onOrder(System.nanoTime() - started, fills.count - fillsBefore);
+        return orderId;
+    }
+
+    private Behavior<Command> onCancelOrder(CancelOrder command) {
+        RestingOrder order = orderBook.getOrder(command.orderId);
+        if (!owns(command.owner, order)) {
+            getContext().getLog().info("Cancel rejected: Order placed by another client - {} {}",
+                    orderBook.getStockSymbol(), command.orderId);
+            return this;
+        }
+        if (journal != null) {
+            journal.appendCancel(command.orderId);
+            journal.commit();
+        }
+        if (risk != null && order != null && order.getAccount() != RestingOrder.NO_ACCOUNT) {
+            risk.release(order.getAccount(), order.getPriceTicks(), order.getQuantity());
+        }
+        if (orderBook.cancelOrder(command.orderId)) {
+            metrics.onCancel();
+        } else {
+            getContext().getLog().debug("Cancel failed: Order not resting - {} {}",
+                    orderBook.getStockSymbol(), command.orderId);
+        }
+        publishMarketData();
+        return this;
+    }
+
+    private Behavior<Command> onAmendOrder(AmendOrder command) {
+        RestingOrder order = orderBook.getOrder(command.orderId);
+        if (!owns(command.owner, order)) {
+            getContext().getLog().info("Amend rejected: Order placed by another client - {} {}",
+                    orderBook.getStockSymbol(), command.orderId);
+            return this;
+        }
+        if (risk != null && order != null && order.getAccount() != RestingOrder.NO_ACCOUNT) {
+            int added = Math.max(command.quantity, 0) - order.getQuantity();
+            if (added > 0 && !risk.reserve(order.getAccount(), order.getPriceTicks(), added)) {
+                metrics.onRiskReject();
+                getContext().getLog().info("Amend rejected by risk check {}: {} {} to {}", BookRisk.Result.OPEN_NOTIONAL,
+                        orderBook.getStockSymbol(), command.orderId, command.quantity);
+                return this;
+            }
+            risk.release(order.getAccount(), order.getPriceTicks(), -added);
+        }
+        if (journal != null) {
+            journal.appendAmend(command.orderId, command.quantity);
+            journal.commit();
+        }
+        if (!orderBook.amendOrder(command.orderId, command.quantity)) {
+            getContext().getLog().info("Amend failed: Order not resting - {} {}",
+                    orderBook.getStockSymbol(), command.orderId);
+        }
+        publishMarketData();
+        return this;
+    }
+
+    private Behavior<Command> onQuote(Quote command) {
+        long timestamp = System.nanoTime();
+        if (journal != null) {
+            journal.appendQuote(command.bidPriceTicks, command.bidQuantity, command.askPriceTicks, command.askQuantity, timestamp);
+            journal.commit();
+        }
+        fills.reset();
+        applyQuote(command.bidPriceTicks, command.bidQuantity, command.askPriceTicks, command.askQuantity, timestamp,
+                command.replyTo);
+        publishMarketData();
+        return this;
+    }
+
+    // Recovered orders passed their checks before the restart; their open quantity counts against
+    // the account again, so a later fill or cancel releases notional that was reserved
+    private void chargeRestingOrders() {
+        orderBook.snapshotTo(snapshot);
+        for (int i = 0; i < snapshot.getCount(); i++) {
+            if (snapshot.getAccount(i) != RestingOrder.NO_ACCOUNT) {
+                risk.restore(snapshot.getAccount(i), snapshot.getPriceTicks(i), snapshot.getQuantity(i));
+            }
+        }
+    }
+
+    // A missing order is let through, to fail as not resting
+    private static boolean owns(ActorRef<Message.Command> owner, RestingOrder order) {
+        return owner == null || order == null || owner.equals(order.getOwner());
+    }
+
+    // Fat-finger reference: the last trade, else the mid when both sides are quoted, else 0
+    private void applyQuote(long bidPriceTicks, int bidQuantity, long askPriceTicks, int askQuantity, long timestamp,
+                            ActorRef<Message.Command> replyTo) {
+        fills.beginQuote(replyTo);
+        orderBook.quote(bidPriceTicks, bidQuantity, askPriceTicks, askQuantity, timestamp, replyTo, fills);
+        fills.begin(null);
+    }
+
+    private Behavior<Command> onGetDepth(StockExchangeActor.GetDepth command) {
+        int bidLevels = Math.min(command.levels, orderBook.getBidLevelCount());
+        int askLevels = Math.min(command.levels, orderBook.getAskLevelCount());
+        long[] bidPrices = new long[bidLevels];
+        long[] bidQuantities = new long[bidLevels];
+        long[] askPrices = new long[askLevels];
+        long[] askQuantities = new long[askLevels];
+        for (int i = 0; i < bidLevels; i++) {
+            PriceLevel level = orderBook.getBidLevel(i);
+            bidPrices[i] = level.getPriceTicks();
+            bidQuantities[i] = level.getTotalQuantity();
+        }
+        for (int i = 0; i < askLevels; i++) {
+            PriceLevel level = orderBook.getAskLevel(i);
+            askPrices[i] = level.getPriceTicks();
+            askQuantities[i] = level.getTotalQuantity();
+        }
+        command.replyTo.tell(new Message.Depth(orderBook.getStockSymbol(), depthSequence,
+                bidPrices, bidQuantities, askPrices, askQuantities));
+        return this;
+    }
+
+    private Behavior<Command> onGetTrades(StockExchangeActor.GetTrades command) {
+        long from = tape != null ? tape.indexOf(command.fromNanos) : 0;
+        long to = tape != null ? Math.max(tape.indexOf(command.toNanos), from) : 0;
+        // The reply is built on the book's thread, so its size is the caller's to bound
+        to = Math.min(to, from + Math.max(command.maxCount, 0));
+        int count = (int) (to - from);
+        long[] timestamps = new long[count];
+        long[] prices = new long[count];
+        int[] quantities = new int[count];
+        Order.OrderType[] sides = new Order.OrderType[count];
+        Message.TradeType[] aggressors = new Message.TradeType[count];
+        if (count > 0) {
+            tape.copy(from, to, timestamps, prices, quantities, sides);
+            for (int i = 0; i < count; i++) {
+                aggressors[i] = sides[i] == Order.OrderType.BUY ? Message.TradeType.BUY : Message.TradeType.SELL;
+            }
+        }
+        command.replyTo.tell(new Message.Trades(orderBook.getStockSymbol(), timestamps, prices, quantities, aggressors));
+        return this;
+    }
+
+    private Behavior<Command> onGetBars(StockExchangeActor.GetBars command) {
+        long intervalNanos = command.interval.toNanos();
+        BarSeries bars = tape != null ? tape.bars(intervalNanos) : null;
+        int from = bars != null ? bars.indexOf(command.fromNanos) : 0;
+        int count = bars != null ? Math.max(bars.indexOf(command.toNanos) - from, 0) : 0;
+        long[] starts = new long[count];
+        long[] opens = new long[count];
+        long[] highs = new long[count];
+        long[] lows = new long[count];
+        long[] closes = new long[count];
+        long[] volumes = new long[count];
+        double[] vwaps = new double[count];
+        for (int i = 0; i < count; i++) {
+            int bar = from + i;
+            starts[i] = bars.getStart(bar);
+            opens[i] = bars.getOpen(bar);
+            highs[i] = bars.getHigh(bar);
+            lows[i] = bars.getLow(bar);
+            closes[i] = bars.getClose(bar);
+            volumes[i] = bars.getVolume(bar);
+            vwaps[i] = bars.getVwap(bar);
+        }
+        if (bars == null) {
+            getContext().getLog().debug("No {} bars kept for {}", command.interval, orderBook.getStockSymbol());
+        }
+        command.replyTo.tell(new Message.Bars(orderBook.getStockSymbol(), intervalNanos,
+                starts, opens, highs, lows, closes, volumes, vwaps));
+        return this;
+    }
+
+    private static TradeTape createTape(Config config) {
+        if (!config.getBoolean("enabled")) {
+            return null;
+        }
+        List<Duration> intervals = config.getDurationList("bar-intervals");
+        BarSeries[] bars = new BarSeries[intervals.size()];
+        for (int i = 0; i < bars.length; i++) {
+            bars[i] = new BarSeries(intervals.get(i).toNanos(), config.getInt("max-bars"));
+        }
+        return new TradeTape(config.getInt("chunk-size"), config.getLong("max-trades"), bars);
+    }
+
+    // Called once per processed message, so a batch produces at most one top-of-book update and
+    // one delta per changed level
+    private void publishMarketData() {
+        metrics.onDepth(orderBook.getRestingOrderCount(), orderBook.getBidLevelCount(), orderBook.getAskLevelCount());
+        if (orderBook.flushDepthChanges(depthChanges) > 0) {
+            marketData.tell(new MarketDataActor.PublishDepth(depthChanges.deltas));
+            depthChanges.deltas = null;
+        }
+
+        PriceLevel bid = orderBook.getBestBid();
+        PriceLevel ask = orderBook.getBestAsk();
+        long bidPrice = bid != null ? bid.getPriceTicks() : 0;
+        long bidSize = bid != null ? bid.getTotalQuantity() : 0;
+        long askPrice = ask != null ? ask.getPriceTicks() : 0;
+        long askSize = ask != null ? ask.getTotalQuantity() : 0;
+        long lastPrice = orderBook.getLastTradePriceTicks();
+        if (bidPrice == bidPriceTicks && bidSize == bidQuantity && askPrice == askPriceTicks
+                && askSize == askQuantity && lastPrice == lastPriceTicks && volume == publishedVolume) {
+            return;
+        }
+        bidPriceTicks = bidPrice;
+        bidQuantity = bidSize;
+        askPriceTicks = askPrice;
+        askQuantity = askSize;
+        lastPriceTicks = lastPrice;
+        publishedVolume = volume;
+        topOfBookSequence++;
+        prices.publish(new PriceSnapshot(orderBook.getStockSymbol(), topOfBookSequence, lastPrice,
+                bidPrice, bidSize, askPrice, askSize, volume, System.nanoTime()));
+        topOfBook.offer(new Message.TopOfBook(orderBook.getStockSymbol(), topOfBookSequence,
+                bidPrice, bidSize, askPrice, askSize, lastPrice));
+    }
+
+    private Behavior<Command> onFlushJournal(FlushJournal command) {
+        journal.sync();
+        return this;
+    }
+
+    // Only the copy runs on the book's thread; encoding and file IO go to the blocking dispatcher
+    private Behavior<Command> onTakeSnapshot(TakeSnapshot command) {
+        if (snapshotInFlight) {
+            return this;
+        }
+        // Everything the snapshot covers must be durable in the journal, or a crash could leave
+        // a gap between the journal's end and the snapshot's position
+        journal.sync();
+        orderBook.snapshotTo(snapshot);
+        snapshot.setJournalPosition(journal.position());
+        snapshotInFlight = true;
+
+        String stockSymbol = orderBook.getStockSymbol();
+        getContext().pipeToSelf(
+                CompletableFuture.runAsync(() -> journals.saveSnapshot(stockSymbol, snapshot),
+                        getContext().getSystem().dispatchers().lookup(DispatcherSelector.blocking())),
+                (ignored, failure) -> new SnapshotWritten(failure));
+        return this;
+    }
+
+    private Behavior<Command> onSnapshotWritten(SnapshotWritten command) {
+        snapshotInFlight = false;
+        if (command.failure != null) {
+            getContext().getLog().warn("Snapshot failed for {}", orderBook.getStockSymbol(), command.failure);
+        } else {
+            getContext().getLog().debug("Snapshot written for {}: {} orders up to journal position {}",
+                    orderBook.getStockSymbol(), snapshot.getCount(), snapshot.getJournalPosition());
+        }
+        return this;
+    }
+
+    private Behavior<Command> onPostStop(PostStop postStop) {
+        if (flushTimer != null) {
+            flushTimer.cancel();
+        }
+        if (snapshotTimer != null) {
+            snapshotTimer.cancel();
+        }
+        if (journal != null) {
+            journal.close();
+        }
+        return this;
+    }
+}
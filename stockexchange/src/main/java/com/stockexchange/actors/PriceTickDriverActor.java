@@ -0,0 +1,135 @@
+package com.stockexchange.actors;
+
+import akka.actor.Cancellable;
+import akka.actor.typed.Behavior;
+import akka.actor.typed.PostStop;
+import akka.actor.typed.javadsl.AbstractBehavior;
+import akka.actor.typed.javadsl.ActorContext;
+import akka.actor.typed.javadsl.Behaviors;
+import akka.actor.typed.javadsl.Receive;
+import com.stockexchange.messages.EventTopic;
+import com.stockexchange.messages.LookupBusImpl;
+import com.stockexchange.messages.Message;
+import com.stockexchange.messages.MsgEnvelope;
+import com.stockexchange.model.PriceModel;
+import com.typesafe.config.Config;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+// Shared price simulation: one timer and one pass over primitive arrays per tick for every symbol,
+// instead of a MarketPriceSimulatorActor with its own timer per symbol. Each tick publishes a
+// single Message.SimulatedPrices on the PRICES topic holding only the symbols that moved.
+public class PriceTickDriverActor extends AbstractBehavior<PriceTickDriverActor.Command> {
+    // Commands
+    public interface Command {}
+
+    public static class AddSymbol implements Command {
+        public final String stockSymbol;
+        public final long initialPriceTicks;
+        public AddSymbol(String stockSymbol, long initialPriceTicks) {
+            this.stockSymbol = stockSymbol;
+            this.initialPriceTicks = initialPriceTicks;
+        }
+    }
+
+    public enum Tick implements Command { INSTANCE }
+
+    // Internal state
+    private final LookupBusImpl lookupBus;
+    private final PriceModel model;
+    private final double volatility;
+    private final double reversion;
+    private final SplittableRandom random = new SplittableRandom();
+    private final Cancellable tickTimer;
+    private final Map<String, Integer> indexBySymbol = new HashMap<>();
+    // Column per field, row per symbol in registration order
+    private String[] symbols = new String[1024];
+    private long[] priceTicks = new long[1024];
+    private long[] anchorTicks = new long[1024];
+    private int count;
+    // Rows that moved on the current tick
+    private int[] changed = new int[1024];
+    private long tick;
+
+    public static Behavior<Command> create(LookupBusImpl lookupBus, Config config) {
+        return Behaviors.setup(context -> new PriceTickDriverActor(context, lookupBus, config));
+    }
+
+    private PriceTickDriverActor(ActorContext<Command> context, LookupBusImpl lookupBus, Config config) {
+        super(context);
+        this.lookupBus = lookupBus;
+        this.model = PriceModel.fromName(config.getString("model"));
+        this.volatility = config.getDouble("volatility");
+        this.reversion = config.getDouble("mean-reversion");
+
+        Duration interval = Duration.ofNanos(config.getDuration("tick-interval", TimeUnit.NANOSECONDS));
+        this.tickTimer = context.getSystem().scheduler().scheduleAtFixedRate(
+                interval,
+                interval,
+                (Runnable) () -> {context.getSelf().tell(Tick.INSTANCE);},
+                context.getExecutionContext()
+        );
+    }
+
+    @Override
+    public Receive<Command> createReceive() {
+        return newReceiveBuilder()
+                .onMessage(AddSymbol.class, this::onAddSymbol)
+                .onMessage(Tick.class, this::onTick)
+                .onSignal(PostStop.class, this::onPostStop)
+                .build();
+    }
+
+    private Behavior<Command> onAddSymbol(AddSymbol command) {
+        if (indexBySymbol.containsKey(command.stockSymbol)) {
+            return this;
+        }
+        if (count == symbols.length) {
+            int capacity = count * 2;
+            symbols = Arrays.copyOf(symbols, capacity);
+            priceTicks = Arrays.copyOf(priceTicks, capacity);
+            anchorTicks = Arrays.copyOf(anchorTicks, capacity);
+            changed = Arrays.copyOf(changed, capacity);
+        }
+        symbols[count] = command.stockSymbol;
+        priceTicks[count] = Math.max(command.initialPriceTicks, 1);
+        anchorTicks[count] = priceTicks[count];
+        indexBySymbol.put(command.stockSymbol, count);
+        count++;
+        return this;
+    }
+
+    private Behavior<Command> onTick(Tick command) {
+        tick++;
+        int moved = 0;
+        for (int i = 0; i < count; i++) {
+            long next = Math.max(model.next(priceTicks[i], anchorTicks[i], volatility, reversion, random), 1);
+            if (next != priceTicks[i]) {
+                priceTicks[i] = next;
+                changed[moved++] = i;
+            }
+        }
+        if (moved > 0) {
+            String[] movedSymbols = new String[moved];
+            long[] movedPrices = new long[moved];
+            for (int j = 0; j < moved; j++) {
+                movedSymbols[j] = symbols[changed[j]];
+                movedPrices[j] = priceTicks[changed[j]];
+            }
+            lookupBus.publish(new MsgEnvelope(EventTopic.PRICES.getValue(),
+                    new Message.SimulatedPrices(tick, movedSymbols, movedPrices)));
+        }
+        getContext().getLog().debug("Price tick {}: {} of {} symbols moved", tick, moved, count);
+        return this;
+    }
+
+    private Behavior<Command> onPostStop(PostStop postStop) {
+        tickTimer.cancel();
+        return this;
+    }
+}
@@ -1,6 +1,7 @@
 package com.stockexchange.actors;
 
 import akka.actor.typed.Behavior;
+import akka.actor.typed.MailboxSelector;
 import akka.actor.typed.PostStop;
 import akka.actor.typed.PreRestart;
 import akka.actor.typed.Terminated;
@@ -8,34 +9,47 @@ import akka.actor.typed.javadsl.AbstractBehavior;
 import akka.actor.typed.javadsl.ActorContext;
 import akka.actor.typed.javadsl.Receive;
 import akka.actor.typed.javadsl.Behaviors;
+import akka.cluster.sharding.typed.ShardingEnvelope;
+import akka.cluster.typed.Cluster;
+import com.stockexchange.ingest.OrderIngest;
+import com.stockexchange.journal.Journal;
+import com.stockexchange.journal.JournalHandler;
+import com.stockexchange.journal.JournalStore;
 import com.stockexchange.messages.EventTopic;
 import com.stockexchange.messages.LookupBusImpl;
+import com.stockexchange.messages.Message;
 import com.stockexchange.messages.Message.Command;
 import com.stockexchange.messages.MsgEnvelope;
-import com.stockexchange.model.OrderBook;
+import com.stockexchange.marketdata.PriceBoard;
+import com.stockexchange.marketdata.PriceSnapshot;
+import com.stockexchange.metrics.ExchangeMetrics;
 import akka.actor.typed.ActorRef;
 import com.stockexchange.model.Stock;
 import com.stockexchange.model.Order;
+import com.stockexchange.model.SymbolTable;
+import com.stockexchange.model.TickSize;
+import com.typesafe.config.Config;
 
 import java.math.BigDecimal;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 public class StockExchangeActor extends AbstractBehavior<Command> {
 
     //public interface Command {}
     // Add new commands
-    public static class RegisterMarketMaker implements Command {
+    public static class RegisterMarketMaker implements Command, OrderBookActor.Command {
         public final String stockSymbol;
-        public final BigDecimal initialPrice;
-        public RegisterMarketMaker(String stockSymbol, BigDecimal initialPrice) {
+        public final long initialPriceTicks;
+        public RegisterMarketMaker(String stockSymbol, long initialPriceTicks) {
             this.stockSymbol = stockSymbol;
-            this.initialPrice = initialPrice;
+            this.initialPriceTicks = initialPriceTicks;
         }
     }
 
-    public static class GetStockPrice implements Command {
+    public static class GetStockPrice implements Command, OrderBookActor.Command {
         public final String stockSymbol;
         public final ActorRef<BigDecimal> replyTo;
         public GetStockPrice(String stockSymbol, ActorRef<BigDecimal> replyTo) {
@@ -44,62 +58,294 @@ public class StockExchangeActor extends AbstractBehavior<Command> {
         }
     }
 
-    public static class RegisterStock implements Command {
+    // Answered by the symbol's book with a Message.Depth of up to levels price levels per side
+    public static class GetDepth implements Command, OrderBookActor.Command {
+        public final String stockSymbol;
+        public final int levels;
+        public final ActorRef<Message.Depth> replyTo;
+        public GetDepth(String stockSymbol, int levels, ActorRef<Message.Depth> replyTo) {
+            this.stockSymbol = stockSymbol;
+            this.levels = levels;
+            this.replyTo = replyTo;
+        }
+    }
+
+    // Answered by the symbol's book from its trade tape with the earliest maxCount trades in
+    // [fromNanos, toNanos), both epoch nanoseconds; ask again from after the last one for more
+    public static class GetTrades implements Command, OrderBookActor.Command {
+        public final String stockSymbol;
+        public final long fromNanos;
+        public final long toNanos;
+        public final int maxCount;
+        public final ActorRef<Message.Trades> replyTo;
+        public GetTrades(String stockSymbol, long fromNanos, long toNanos, int maxCount,
+                         ActorRef<Message.Trades> replyTo) {
+            this.stockSymbol = stockSymbol;
+            this.fromNanos = fromNanos;
+            this.toNanos = toNanos;
+            this.maxCount = maxCount;
+            this.replyTo = replyTo;
+        }
+    }
+
+    // Answered with the bars of one of the configured stockexchange.tape.bar-intervals starting in
+    // [fromNanos, toNanos); empty for an interval that is not kept
+    public static class GetBars implements Command, OrderBookActor.Command {
+        public final String stockSymbol;
+        public final Duration interval;
+        public final long fromNanos;
+        public final long toNanos;
+        public final ActorRef<Message.Bars> replyTo;
+        public GetBars(String stockSymbol, Duration interval, long fromNanos, long toNanos, ActorRef<Message.Bars> replyTo) {
+            this.stockSymbol = stockSymbol;
+            this.interval = interval;
+            this.fromNanos = fromNanos;
+            this.toNanos = toNanos;
+            this.replyTo = replyTo;
+        }
+    }
+
+    public static class RegisterStock implements Command, OrderBookActor.Command {
         public final Stock stock;
         public RegisterStock(Stock stock) {
             this.stock = stock;
         }
     }
 
-    public static class ExecuteTrade implements Command {
+    public static class ExecuteTrade implements Command, OrderBookActor.Command {
         public final Order trade;
+        // Optional; receives a Message.Ack carrying the exchange-assigned order id, then a Message.Fill per execution
+        public final ActorRef<Command> replyTo;
         public ExecuteTrade(Order trade) {
+            this(trade, null);
+        }
+        public ExecuteTrade(Order trade, ActorRef<Command> replyTo) {
             this.trade = trade;
+            this.replyTo = replyTo;
+        }
+    }
+
+    // A cancel on behalf of the client that placed orders with replyTo: the book only cancels the
+    // order if it rests with that same replyTo. A bare Message.Cancel may cancel any order.
+    public static class CancelTrade implements Command {
+        public final Message.Cancel cancel;
+        public final ActorRef<Command> replyTo;
+        public CancelTrade(Message.Cancel cancel, ActorRef<Command> replyTo) {
+            this.cancel = cancel;
+            this.replyTo = replyTo;
+        }
+    }
+
+    // Amend counterpart of CancelTrade
+    public static class AmendTrade implements Command {
+        public final Message.Amend amend;
+        public final ActorRef<Command> replyTo;
+        public AmendTrade(Message.Amend amend, ActorRef<Command> replyTo) {
+            this.amend = amend;
+            this.replyTo = replyTo;
         }
     }
 
-    private StockExchangeActor(ActorContext<Command> context, LookupBusImpl lookupBus) {
+    // Many orders in one message, possibly for several symbols
+    public static class ExecuteTrades implements Command, OrderBookActor.Command {
+        public final List<Order> trades;
+        // Optional; receives one Message.Ack per accepted order and a Message.Fill per execution
+        public final ActorRef<Command> replyTo;
+        public ExecuteTrades(List<Order> trades) {
+            this(trades, null);
+        }
+        public ExecuteTrades(List<Order> trades, ActorRef<Command> replyTo) {
+            this.trades = trades;
+            this.replyTo = replyTo;
+        }
+    }
+
+    private StockExchangeActor(ActorContext<Command> context, LookupBusImpl lookupBus, OrderIngest ingest,
+                               JournalStore journals, SymbolTable symbols) {
         super(context);
         this.lookupBus = lookupBus;
+        this.symbols = symbols;
+        this.ingest = ingest;
+        this.journals = journals;
         this.lookupBus.subscribe(this.getContext().getSelf(), EventTopic.PSA.getValue());
+        this.marketData = context.spawn(MarketDataActor.create(lookupBus), "MarketData", METERED);
+
+        // Clustered, the symbols live in SymbolEntity wherever sharding puts them, and this actor
+        // only routes; each entity journals its own registration
+        if (context.getSystem().settings().config().getBoolean("stockexchange.cluster.enabled")) {
+            this.region = SymbolEntity.init(context.getSystem(), lookupBus, marketData, journals);
+            this.priceDriver = null;
+            this.journal = null;
+            context.getLog().info("Sharding symbols across the cluster from {}",
+                    Cluster.get(context.getSystem()).selfMember().address());
+            return;
+        }
+        this.region = null;
+
+        // "shared" moves every symbol's simulated price from one driver instead of an actor per symbol
+        Config simulator = context.getSystem().settings().config().getConfig("stockexchange.simulator");
+        this.priceDriver = simulator.getString("mode").equals("shared")
+                ? context.spawn(PriceTickDriverActor.create(lookupBus, simulator), "PriceTickDriver", METERED)
+                : null;
+
+        // Rebuild registrations first; each book then replays its own journal when it starts
+        if (journals != null) {
+            this.journal = journals.open(JournalStore.EXCHANGE);
+            long records = this.journal.replay(new JournalHandler() {
+                @Override
+                public void onRegisterStock(String stockSymbol, String companyName, String tickSize, long priceTicks) {
+                    registerStock(new Stock(stockSymbol, companyName, new TickSize(new BigDecimal(tickSize)), priceTicks));
+                }
+
+                @Override
+                public void onRegisterMarketMaker(String stockSymbol, long initialPriceTicks) {
+                    registerMarketMaker(stockSymbol, initialPriceTicks);
+                }
+            });
+            context.getLog().info("Replayed {} registrations from {}", records, journals.getDirectory());
+        } else {
+            this.journal = null;
+        }
     }
 
-    // Update internal state
-    private final Map<String, OrderBook> orderBooks = new ConcurrentHashMap<>();
-    private final Map<String, ActorRef<MarketPriceSimulatorActor.Command>> priceSimulators = new ConcurrentHashMap<>();
-    private final Map<String, ActorRef<MarketMakerActor.Command>> marketMakers = new ConcurrentHashMap<>();
+    // Children's mailbox depths are visible through ExchangeMetrics
+    private static final MailboxSelector METERED = MailboxSelector.fromConfig(ExchangeMetrics.MAILBOX);
+
+    // Update internal state, indexed by SymbolTable id; a null slot is not registered
+    private ActorRef<OrderBookActor.Command>[] orderBooks = newRefs(64);
+    private ActorRef<MarketPriceSimulatorActor.Command>[] priceSimulators = newRefs(64);
+    private ActorRef<MarketMakerActor.Command>[] marketMakers = newRefs(64);
+    private Stock[] registeredStocks = new Stock[64];
 
-    private final Map<String, Stock> registeredStocks = new HashMap<>();
+    private final SymbolTable symbols;
     private final LookupBusImpl lookupBus;
+    private final ActorRef<MarketDataActor.Command> marketData;
+    private final ActorRef<PriceTickDriverActor.Command> priceDriver;
+    private final OrderIngest ingest;
+    private final JournalStore journals;
+    private final Journal journal;
+    // Set in cluster mode, where every symbol command goes through it instead of the arrays above
+    private final ActorRef<ShardingEnvelope<OrderBookActor.Command>> region;
 
     // Modify create and other methods to support new functionality
     public static Behavior<Command> create(LookupBusImpl lookupBus) {
-        return Behaviors.setup(ctx -> new StockExchangeActor(ctx, lookupBus));
+        return create(lookupBus, null, null);
+    }
+
+    // With an OrderIngest every book also drains orders from its own ring; with a JournalStore
+    // every accepted command is journaled before it is applied and replayed on startup
+    public static Behavior<Command> create(LookupBusImpl lookupBus, OrderIngest ingest, JournalStore journals) {
+        return create(lookupBus, ingest, journals, new SymbolTable());
+    }
+
+    // Sharing the SymbolTable lets producers stamp orders with the symbol's id once it is registered
+    public static Behavior<Command> create(LookupBusImpl lookupBus, OrderIngest ingest, JournalStore journals,
+                                           SymbolTable symbols) {
+        return Behaviors.setup(ctx -> new StockExchangeActor(ctx, lookupBus, ingest, journals, symbols));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> ActorRef<T>[] newRefs(int length) {
+        return (ActorRef<T>[]) new ActorRef[length];
+    }
+
+    // Interns on registration and grows every per-symbol array to hold the id
+    private int slot(String stockSymbol) {
+        int id = symbols.intern(stockSymbol);
+        if (id >= registeredStocks.length) {
+            int capacity = Math.max(registeredStocks.length * 2, id + 1);
+            orderBooks = Arrays.copyOf(orderBooks, capacity);
+            priceSimulators = Arrays.copyOf(priceSimulators, capacity);
+            marketMakers = Arrays.copyOf(marketMakers, capacity);
+            registeredStocks = Arrays.copyOf(registeredStocks, capacity);
+        }
+        return id;
+    }
+
+    // Null until the symbol has a market maker
+    private ActorRef<OrderBookActor.Command> book(int id) {
+        return id >= 0 && id < orderBooks.length ? orderBooks[id] : null;
+    }
+
+    // Orders are only accepted once the stock itself is registered too
+    private ActorRef<OrderBookActor.Command> tradingBook(int id) {
+        return id >= 0 && id < orderBooks.length && registeredStocks[id] != null ? orderBooks[id] : null;
+    }
+
+    // Orders stamped by a producer skip the lookup; everything else resolves the symbol once here.
+    // Ids are process-local, so a stamp is only trusted if it names the order's own symbol. That is
+    // a reference compare: producers that stamp an id also copy the table's own String for the
+    // symbol, so any other String, even an equal one, just falls back to the lookup.
+    private int idOf(Order trade) {
+        int id = trade.getSymbolId();
+        if (id != SymbolTable.UNKNOWN && symbols.symbol(id) == trade.getStockSymbol()) {
+            return id;
+        }
+        return symbols.idOf(trade.getStockSymbol());
+    }
+
+    // Hands a symbol's command to the shard region; false when not clustered
+    private boolean routed(String stockSymbol, OrderBookActor.Command command) {
+        if (region == null) {
+            return false;
+        }
+        region.tell(new ShardingEnvelope<>(stockSymbol, command));
+        return true;
     }
 
     // Add methods to handle new commands
     private Behavior<Command> onRegisterMarketMaker(RegisterMarketMaker command) {
-        // Create OrderBook
-        OrderBook orderBook = new OrderBook(command.stockSymbol);
-        orderBooks.put(command.stockSymbol, orderBook);
+        if (routed(command.stockSymbol, command)) {
+            symbols.intern(command.stockSymbol);
+            return this;
+        }
+        if (book(symbols.idOf(command.stockSymbol)) != null) {
+            getContext().getLog().info("Market maker already registered - {}", command.stockSymbol);
+            return this;
+        }
+        if (journal != null) {
+            journal.appendRegisterMarketMaker(command.stockSymbol, command.initialPriceTicks);
+            journal.sync();
+        }
+        registerMarketMaker(command.stockSymbol, command.initialPriceTicks);
+        return this;
+    }
+
+    private void registerMarketMaker(String stockSymbol, long initialPriceTicks) {
+        int id = slot(stockSymbol);
+        Stock stock = registeredStocks[id];
+        TickSize tickSize = stock != null ? stock.getTickSize() : TickSize.CENT;
 
         // Create Price Simulator
-        ActorRef<MarketPriceSimulatorActor.Command> priceSimulator =
-                getContext().spawn(
-                        MarketPriceSimulatorActor.create(command.stockSymbol, command.initialPrice),
-                        "PriceSimulator-" + command.stockSymbol
-                );
-        priceSimulators.put(command.stockSymbol, priceSimulator);
+        if (priceDriver != null) {
+            priceDriver.tell(new PriceTickDriverActor.AddSymbol(stockSymbol, initialPriceTicks));
+        } else {
+            ActorRef<MarketPriceSimulatorActor.Command> priceSimulator =
+                    getContext().spawn(
+                            MarketPriceSimulatorActor.create(stockSymbol, tickSize, initialPriceTicks),
+                            "PriceSimulator-" + stockSymbol,
+                            METERED
+                    );
+            priceSimulators[id] = priceSimulator;
+        }
 
         // Create Market Maker
         ActorRef<MarketMakerActor.Command> marketMaker =
                 getContext().spawn(
-                        MarketMakerActor.create(command.stockSymbol, command.initialPrice, this.lookupBus),
-                        "MarketMaker-" + command.stockSymbol
+                        MarketMakerActor.create(stockSymbol, tickSize, initialPriceTicks, this.lookupBus),
+                        "MarketMaker-" + stockSymbol,
+                        METERED
                 );
-        marketMakers.put(command.stockSymbol, marketMaker);
+        marketMakers[id] = marketMaker;
 
-        return this;
+        // Create OrderBook, matched in its own actor so symbols do not share a mailbox
+        ActorRef<OrderBookActor.Command> orderBook =
+                getContext().spawn(
+                        OrderBookActor.create(stockSymbol, tickSize, marketMaker, this.marketData, this.ingest, this.journals),
+                        "OrderBook-" + stockSymbol,
+                        METERED
+                );
+        orderBooks[id] = orderBook;
     }
 
     // Modify createReceive to include new message handling
@@ -109,8 +355,17 @@ public class StockExchangeActor extends AbstractBehavior<Command> {
                 .onMessage(RegisterStock.class, this::onRegisterStock)
                 .onMessage(RegisterMarketMaker.class, this::onRegisterMarketMaker)
                 .onMessage(ExecuteTrade.class, this::onExecuteTrade)
+                .onMessage(ExecuteTrades.class, this::onExecuteTrades)
+                .onMessage(Message.Cancel.class, this::onCancel)
+                .onMessage(Message.Amend.class, this::onAmend)
+                .onMessage(CancelTrade.class, this::onCancelTrade)
+                .onMessage(AmendTrade.class, this::onAmendTrade)
                 .onMessage(GetStockPrice.class, this::onGetStockPrice)
+                .onMessage(GetDepth.class, this::onGetDepth)
+                .onMessage(GetTrades.class, this::onGetTrades)
+                .onMessage(GetBars.class, this::onGetBars)
                 .onMessage(MsgEnvelope.class, this::onMsgEnvelope)
+                .onSignal(PostStop.class, this::onPostStop)
                 .build();
     }
 
@@ -121,32 +376,36 @@ public class StockExchangeActor extends AbstractBehavior<Command> {
 
 
     private Behavior<Command> onRegisterStock(RegisterStock command) {
-        registeredStocks.put(command.stock.getSymbol(), command.stock);
+        if (routed(command.stock.getSymbol(), command)) {
+            symbols.intern(command.stock.getSymbol());
+            return this;
+        }
+        int id = symbols.idOf(command.stock.getSymbol());
+        if (id != SymbolTable.UNKNOWN && id < registeredStocks.length && registeredStocks[id] != null) {
+            getContext().getLog().info("Stock already registered - {}", command.stock.getSymbol());
+            return this;
+        }
+        if (journal != null) {
+            journal.appendRegisterStock(command.stock.getSymbol(), command.stock.getCompanyName(),
+                    command.stock.getTickSize().getTick().toPlainString(), command.stock.getPriceTicks());
+            journal.sync();
+        }
+        registerStock(command.stock);
         return this;
     }
 
+    private void registerStock(Stock stock) {
+        registeredStocks[slot(stock.getSymbol())] = stock;
+    }
+
     private Behavior<Command> onExecuteTrade(ExecuteTrade command) {
-        // Basic trade execution logic
-        Stock stock = registeredStocks.get(command.trade.getStockSymbol());
-        if (stock != null) {
-            // In a real system, this would involve more complex trade matching and validation
-            getContext().getLog().info("Trade executed: {} {} at {}",
-                    command.trade.getType(),
-                    command.trade.getStockSymbol(),
-                    command.trade.getPrice());
-
-            ActorRef<MarketMakerActor.Command> mm = marketMakers.get(command.trade.getStockSymbol());
-            mm.tell(new MarketMakerActor.UpdateMarketConditions(command.trade.getPrice()));
-            mm.tell(new MarketMakerActor.PlaceMarketMakingOrders());
-
-            OrderBook ob = orderBooks.get(command.trade.getStockSymbol());
-            ob.addOrder(new Order(
-                    command.trade.getStockSymbol(),
-                    command.trade.getQuantity(),
-                    command.trade.getPrice(),
-                    command.trade.getType() == Order.OrderType.BUY ? Order.OrderType.BUY : Order.OrderType.SELL
-            ));
-            ob.matchOrders();
+        if (routed(command.trade.getStockSymbol(), command)) {
+            return this;
+        }
+        // Route to the symbol's book; matching happens in OrderBookActor
+        ActorRef<OrderBookActor.Command> orderBook = tradingBook(idOf(command.trade));
+        if (orderBook != null) {
+            orderBook.tell(command);
         } else {
             getContext().getLog().info("Trade failed: Stock not registered - {}",
                     command.trade.getStockSymbol());
@@ -154,10 +413,143 @@ public class StockExchangeActor extends AbstractBehavior<Command> {
         return this;
     }
 
+    private Behavior<Command> onExecuteTrades(ExecuteTrades command) {
+        if (command.trades.isEmpty()) {
+            return this;
+        }
+        if (region != null) {
+            routeClustered(command);
+            return this;
+        }
+        // Single-symbol batches, the common case from a gateway, are forwarded without copying
+        int firstId = idOf(command.trades.get(0));
+        boolean singleSymbol = true;
+        for (Order trade : command.trades) {
+            if (idOf(trade) != firstId) {
+                singleSymbol = false;
+                break;
+            }
+        }
+        if (singleSymbol) {
+            routeBatch(firstId, command.trades.get(0).getStockSymbol(), command);
+            return this;
+        }
+
+        // A batch spans few symbols, so a linear scan of the ids seen so far beats hashing
+        int[] groupIds = new int[4];
+        List<List<Order>> groups = new ArrayList<>();
+        for (Order trade : command.trades) {
+            int id = idOf(trade);
+            int group = 0;
+            while (group < groups.size() && groupIds[group] != id) {
+                group++;
+            }
+            if (group == groups.size()) {
+                if (group == groupIds.length) {
+                    groupIds = Arrays.copyOf(groupIds, group * 2);
+                }
+                groupIds[group] = id;
+                groups.add(new ArrayList<>());
+            }
+            groups.get(group).add(trade);
+        }
+        for (int group = 0; group < groups.size(); group++) {
+            List<Order> trades = groups.get(group);
+            routeBatch(groupIds[group], trades.get(0).getStockSymbol(), new ExecuteTrades(trades, command.replyTo));
+        }
+        return this;
+    }
+
+    // A clustered node routes symbols registered through other nodes, which have no id here. The
+    // batch is grouped by the symbol itself rather than interned, so client input cannot grow
+    // the SymbolTable.
+    private void routeClustered(ExecuteTrades command) {
+        List<String> groupSymbols = new ArrayList<>();
+        List<List<Order>> groups = new ArrayList<>();
+        for (Order trade : command.trades) {
+            int group = groupSymbols.indexOf(trade.getStockSymbol());
+            if (group < 0) {
+                group = groups.size();
+                groupSymbols.add(trade.getStockSymbol());
+                groups.add(new ArrayList<>());
+            }
+            groups.get(group).add(trade);
+        }
+        if (groups.size() == 1) {
+            routed(groupSymbols.get(0), command);
+            return;
+        }
+        for (int group = 0; group < groups.size(); group++) {
+            routed(groupSymbols.get(group), new ExecuteTrades(groups.get(group), command.replyTo));
+        }
+    }
+
+    private void routeBatch(int id, String stockSymbol, ExecuteTrades batch) {
+        ActorRef<OrderBookActor.Command> orderBook = tradingBook(id);
+        if (orderBook != null) {
+            orderBook.tell(batch);
+        } else {
+            getContext().getLog().info("Trade batch failed: Stock not registered - {} ({} orders)",
+                    stockSymbol, batch.trades.size());
+        }
+    }
+
+    private Behavior<Command> onCancel(Message.Cancel command) {
+        cancel(command.symbol(), new OrderBookActor.CancelOrder(command.order_id()));
+        return this;
+    }
+
+    private Behavior<Command> onCancelTrade(CancelTrade command) {
+        cancel(command.cancel.symbol(), new OrderBookActor.CancelOrder(command.cancel.order_id(), command.replyTo));
+        return this;
+    }
+
+    private void cancel(String stockSymbol, OrderBookActor.CancelOrder cancel) {
+        if (routed(stockSymbol, cancel)) {
+            return;
+        }
+        ActorRef<OrderBookActor.Command> orderBook = book(symbols.idOf(stockSymbol));
+        if (orderBook != null) {
+            orderBook.tell(cancel);
+        } else {
+            getContext().getLog().info("Cancel failed: Stock not registered - {}", stockSymbol);
+        }
+    }
+
+    private Behavior<Command> onAmend(Message.Amend command) {
+        amend(command.symbol(), new OrderBookActor.AmendOrder(command.order_id(), command.quantity()));
+        return this;
+    }
+
+    private Behavior<Command> onAmendTrade(AmendTrade command) {
+        amend(command.amend.symbol(),
+                new OrderBookActor.AmendOrder(command.amend.order_id(), command.amend.quantity(), command.replyTo));
+        return this;
+    }
+
+    private void amend(String stockSymbol, OrderBookActor.AmendOrder amend) {
+        if (routed(stockSymbol, amend)) {
+            return;
+        }
+        ActorRef<OrderBookActor.Command> orderBook = book(symbols.idOf(stockSymbol));
+        if (orderBook != null) {
+            orderBook.tell(amend);
+        } else {
+            getContext().getLog().info("Amend failed: Stock not registered - {}", stockSymbol);
+        }
+    }
+
     private Behavior<Command> onGetStockPrice(GetStockPrice command) {
-        Stock stock = registeredStocks.get(command.stockSymbol);
+        if (routed(command.stockSymbol, command)) {
+            return this;
+        }
+        int id = symbols.idOf(command.stockSymbol);
+        Stock stock = id != SymbolTable.UNKNOWN && id < registeredStocks.length ? registeredStocks[id] : null;
         if (stock != null) {
-            command.replyTo.tell(stock.getPrice());
+            // Last trade once there is one; PriceBoard serves the same without the round trip
+            PriceSnapshot prices = PriceBoard.get(getContext().getSystem()).snapshot(command.stockSymbol);
+            long priceTicks = prices != null && prices.getLastPriceTicks() > 0 ? prices.getLastPriceTicks() : stock.getPriceTicks();
+            command.replyTo.tell(stock.getTickSize().toPrice(priceTicks));
         } else {
             getContext().getLog().info("Stock price query failed: Stock not found - {}",
                     command.stockSymbol);
@@ -165,6 +557,48 @@ public class StockExchangeActor extends AbstractBehavior<Command> {
         return this;
     }
 
+    private Behavior<Command> onGetDepth(GetDepth command) {
+        if (routed(command.stockSymbol, command)) {
+            return this;
+        }
+        ActorRef<OrderBookActor.Command> orderBook = book(symbols.idOf(command.stockSymbol));
+        if (orderBook != null) {
+            orderBook.tell(command);
+        } else {
+            getContext().getLog().info("Depth query failed: Stock not found - {}",
+                    command.stockSymbol);
+        }
+        return this;
+    }
+
+    private Behavior<Command> onGetTrades(GetTrades command) {
+        if (routed(command.stockSymbol, command)) {
+            return this;
+        }
+        ActorRef<OrderBookActor.Command> orderBook = book(symbols.idOf(command.stockSymbol));
+        if (orderBook != null) {
+            orderBook.tell(command);
+        } else {
+            getContext().getLog().info("Trades query failed: Stock not found - {}",
+                    command.stockSymbol);
+        }
+        return this;
+    }
+
+    private Behavior<Command> onGetBars(GetBars command) {
+        if (routed(command.stockSymbol, command)) {
+            return this;
+        }
+        ActorRef<OrderBookActor.Command> orderBook = book(symbols.idOf(command.stockSymbol));
+        if (orderBook != null) {
+            orderBook.tell(command);
+        } else {
+            getContext().getLog().info("Bars query failed: Stock not found - {}",
+                    command.stockSymbol);
+        }
+        return this;
+    }
+
     private StockExchangeActor onPreRestart(PreRestart preRestart) {
         System.out.println("Job is about to restart.");
         return this;
@@ -176,6 +610,9 @@ public class StockExchangeActor extends AbstractBehavior<Command> {
     }
 
     private StockExchangeActor onPostStop(PostStop postStop) {
+        if (journal != null) {
+            journal.close();
+        }
         System.out.println("Job is stopped.");
         return this;
     }
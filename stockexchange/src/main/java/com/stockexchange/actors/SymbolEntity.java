@@ -0,0 +1,183 @@
+package com.stockexchange.actors;
+
+import akka.actor.typed.ActorRef;
+import akka.actor.typed.ActorSystem;
+import akka.actor.typed.Behavior;
+import akka.actor.typed.MailboxSelector;
+import akka.actor.typed.PostStop;
+import akka.actor.typed.javadsl.AbstractBehavior;
+import akka.actor.typed.javadsl.ActorContext;
+import akka.actor.typed.javadsl.Behaviors;
+import akka.actor.typed.javadsl.Receive;
+import akka.cluster.sharding.typed.ShardingEnvelope;
+import akka.cluster.sharding.typed.javadsl.ClusterSharding;
+import akka.cluster.sharding.typed.javadsl.Entity;
+import akka.cluster.sharding.typed.javadsl.EntityTypeKey;
+import com.stockexchange.journal.Journal;
+import com.stockexchange.journal.JournalHandler;
+import com.stockexchange.journal.JournalStore;
+import com.stockexchange.marketdata.PriceBoard;
+import com.stockexchange.marketdata.PriceSnapshot;
+import com.stockexchange.messages.LookupBusImpl;
+import com.stockexchange.metrics.ExchangeMetrics;
+import com.stockexchange.model.Stock;
+import com.stockexchange.model.TickSize;
+
+import java.math.BigDecimal;
+
+// One symbol of a clustered exchange: its order book with the market maker and price simulator
+// that feed it, placed on a node by Cluster Sharding with the symbol as entity id. Registration
+// arrives as on a single node but is journaled per symbol, so when a shard moves the entity
+// starts on the new node from the journal directory the nodes share, and the book replays its
+// own journal there. Without journaling a moved symbol comes back empty and unregistered.
+public class SymbolEntity extends AbstractBehavior<OrderBookActor.Command> {
+    public static final EntityTypeKey<OrderBookActor.Command> TYPE_KEY =
+            EntityTypeKey.create(OrderBookActor.Command.class, "Symbol");
+
+    // Children's mailbox depths are visible through ExchangeMetrics
+    private static final MailboxSelector METERED = MailboxSelector.fromConfig(ExchangeMetrics.MAILBOX);
+
+    private final String stockSymbol;
+    private final LookupBusImpl lookupBus;
+    private final ActorRef<MarketDataActor.Command> marketData;
+    private final JournalStore journals;
+    private final Journal journal;
+    // Null until registered
+    private Stock stock;
+    private ActorRef<OrderBookActor.Command> orderBook;
+
+    // Hosts this node's share of the symbols. Every node routes through the returned region,
+    // which forwards to wherever the symbol lives.
+    public static ActorRef<ShardingEnvelope<OrderBookActor.Command>> init(ActorSystem<?> system, LookupBusImpl lookupBus,
+                                                                         ActorRef<MarketDataActor.Command> marketData,
+                                                                         JournalStore journals) {
+        return ClusterSharding.get(system).init(Entity.of(TYPE_KEY,
+                entity -> create(entity.getEntityId(), lookupBus, marketData, journals)));
+    }
+
+    static Behavior<OrderBookActor.Command> create(String stockSymbol, LookupBusImpl lookupBus,
+                                                   ActorRef<MarketDataActor.Command> marketData, JournalStore journals) {
+        return Behaviors.setup(context -> new SymbolEntity(context, stockSymbol, lookupBus, marketData, journals));
+    }
+
+    private SymbolEntity(ActorContext<OrderBookActor.Command> context, String stockSymbol, LookupBusImpl lookupBus,
+                         ActorRef<MarketDataActor.Command> marketData, JournalStore journals) {
+        super(context);
+        this.stockSymbol = stockSymbol;
+        this.lookupBus = lookupBus;
+        this.marketData = marketData;
+        this.journals = journals;
+
+        if (journals != null) {
+            this.journal = journals.open(JournalStore.EXCHANGE + "-" + stockSymbol);
+            journal.replay(new JournalHandler() {
+                @Override
+                public void onRegisterStock(String stockSymbol, String companyName, String tickSize, long priceTicks) {
+                    stock = new Stock(stockSymbol, companyName, new TickSize(new BigDecimal(tickSize)), priceTicks);
+                }
+
+                @Override
+                public void onRegisterMarketMaker(String stockSymbol, long initialPriceTicks) {
+                    startBook(initialPriceTicks);
+                }
+            });
+            if (orderBook != null) {
+                context.getLog().info("Started {} from its journal", stockSymbol);
+            }
+        } else {
+            this.journal = null;
+        }
+    }
+
+    @Override
+    public Receive<OrderBookActor.Command> createReceive() {
+        return newReceiveBuilder()
+                .onMessage(StockExchangeActor.RegisterStock.class, this::onRegisterStock)
+                .onMessage(StockExchangeActor.RegisterMarketMaker.class, this::onRegisterMarketMaker)
+                .onMessage(StockExchangeActor.GetStockPrice.class, this::onGetStockPrice)
+                .onMessage(StockExchangeActor.ExecuteTrade.class, this::onTrade)
+                .onMessage(StockExchangeActor.ExecuteTrades.class, this::onTrade)
+                .onMessage(OrderBookActor.Command.class, this::onBookCommand)
+                .onSignal(PostStop.class, this::onPostStop)
+                .build();
+    }
+
+    private Behavior<OrderBookActor.Command> onRegisterStock(StockExchangeActor.RegisterStock command) {
+        if (stock != null) {
+            getContext().getLog().info("Stock already registered - {}", stockSymbol);
+            return this;
+        }
+        if (journal != null) {
+            journal.appendRegisterStock(stockSymbol, command.stock.getCompanyName(),
+                    command.stock.getTickSize().getTick().toPlainString(), command.stock.getPriceTicks());
+            journal.sync();
+        }
+        stock = command.stock;
+        return this;
+    }
+
+    private Behavior<OrderBookActor.Command> onRegisterMarketMaker(StockExchangeActor.RegisterMarketMaker command) {
+        if (orderBook != null) {
+            getContext().getLog().info("Market maker already registered - {}", stockSymbol);
+            return this;
+        }
+        if (journal != null) {
+            journal.appendRegisterMarketMaker(stockSymbol, command.initialPriceTicks);
+            journal.sync();
+        }
+        startBook(command.initialPriceTicks);
+        return this;
+    }
+
+    // The simulator is always per symbol here; a shared driver would keep moving symbols that
+    // have since been handed to another node
+    private void startBook(long initialPriceTicks) {
+        TickSize tickSize = stock != null ? stock.getTickSize() : TickSize.CENT;
+        getContext().spawn(MarketPriceSimulatorActor.create(stockSymbol, tickSize, initialPriceTicks),
+                "PriceSimulator", METERED);
+        ActorRef<MarketMakerActor.Command> marketMaker = getContext().spawn(
+                MarketMakerActor.create(stockSymbol, tickSize, initialPriceTicks, lookupBus), "MarketMaker", METERED);
+        orderBook = getContext().spawn(
+                OrderBookActor.create(stockSymbol, tickSize, marketMaker, marketData, null, journals), "OrderBook", METERED);
+    }
+
+    private Behavior<OrderBookActor.Command> onGetStockPrice(StockExchangeActor.GetStockPrice command) {
+        if (stock != null) {
+            // The book publishes to this node's PriceBoard, as it runs here
+            PriceSnapshot prices = PriceBoard.get(getContext().getSystem()).snapshot(stockSymbol);
+            long priceTicks = prices != null && prices.getLastPriceTicks() > 0 ? prices.getLastPriceTicks() : stock.getPriceTicks();
+            command.replyTo.tell(stock.getTickSize().toPrice(priceTicks));
+        } else {
+            getContext().getLog().info("Stock price query failed: Stock not found - {}", stockSymbol);
+        }
+        return this;
+    }
+
+    // Orders are only accepted once the stock itself is registered too
+    private Behavior<OrderBookActor.Command> onTrade(OrderBookActor.Command command) {
+        if (stock != null && orderBook != null) {
+            orderBook.tell(command);
+        } else {
+            getContext().getLog().info("Trade failed: Stock not registered - {}", stockSymbol);
+        }
+        return this;
+    }
+
+    private Behavior<OrderBookActor.Command> onBookCommand(OrderBookActor.Command command) {
+        if (orderBook != null) {
+            orderBook.tell(command);
+        } else {
+            getContext().getLog().info("{} failed: Stock not found - {}", command.getClass().getSimpleName(), stockSymbol);
+        }
+        return this;
+    }
+
+    // Children, the book among them, have stopped and closed their journals by now, so the next
+    // node to host the symbol can open them
+    private Behavior<OrderBookActor.Command> onPostStop(PostStop postStop) {
+        if (journal != null) {
+            journal.close();
+        }
+        return this;
+    }
+}
@@ -0,0 +1,326 @@
+package com.stockexchange.backtest;
+
+import com.stockexchange.model.FillSink;
+import com.stockexchange.model.MarketMaker;
+import com.stockexchange.model.Order;
+import com.stockexchange.model.OrderBook;
+import com.stockexchange.model.PriceModel;
+import com.stockexchange.model.RestingOrder;
+import com.stockexchange.model.TickSize;
+import com.typesafe.config.Config;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+// Replays a recorded event file through the books and market makers on a virtual clock: one
+// thread, no actors and no timers, so a run takes only as long as the CPU needs and the same file
+// and seed give the same fills every time. One event per line, in time order:
+//
+//   <time-nanos>,<symbol>,BUY|SELL,<price>,<quantity>[,<ref>]
+//   <time-nanos>,<symbol>,CANCEL,<ref>
+//   <time-nanos>,<symbol>,AMEND,<ref>,<quantity>
+//
+// Orders to be cancelled or amended later carry a ref of the file's choosing, as the ids the
+// books assign depend on the market makers' quotes. Blank lines and lines starting with # are
+// skipped. A symbol starts at its first order, with its market maker quoting around that price
+// under the MarketMakerActor rules and renewing its quote after the event that made it stale.
+public class Backtest {
+    private final Path file;
+    private final long seed;
+    private final Function<String, TickSize> tickSizes;
+    private final long spreadBps;
+    private final long requoteThresholdBps;
+    // Simulated prices, when on, move the market makers' reference every tick of virtual time
+    private final boolean simulatePrices;
+    private final long tickIntervalNanos;
+    private final PriceModel model;
+    private final double volatility;
+    private final double reversion;
+    // Every fill as CSV; null for none
+    private final Path fillsFile;
+
+    public Backtest(Path file, long seed, Function<String, TickSize> tickSizes, long spreadBps, long requoteThresholdBps,
+                    boolean simulatePrices, long tickIntervalNanos, PriceModel model, double volatility, double reversion,
+                    Path fillsFile) {
+        if (simulatePrices && tickIntervalNanos <= 0) {
+            throw new IllegalArgumentException("Simulated prices need a positive tick-interval");
+        }
+        this.file = file;
+        this.seed = seed;
+        this.tickSizes = tickSizes;
+        this.spreadBps = spreadBps;
+        this.requoteThresholdBps = requoteThresholdBps;
+        this.simulatePrices = simulatePrices;
+        this.tickIntervalNanos = tickIntervalNanos;
+        this.model = model;
+        this.volatility = volatility;
+        this.reversion = reversion;
+        this.fillsFile = fillsFile;
+    }
+
+    // Null unless stockexchange.backtest is enabled. Takes the whole stockexchange block, as the
+    // market maker and simulator settings apply too.
+    public static Backtest fromConfig(Config config, Function<String, TickSize> tickSizes) {
+        Config backtest = config.getConfig("backtest");
+        if (!backtest.getBoolean("enabled")) {
+            return null;
+        }
+        Config simulator = config.getConfig("simulator");
+        String fills = backtest.getString("fills-file");
+        return new Backtest(
+                Paths.get(backtest.getString("file")),
+                backtest.getLong("seed"),
+                tickSizes,
+                config.getLong("market-maker.spread-bps"),
+                config.getLong("market-maker.requote-threshold-bps"),
+                backtest.getBoolean("simulate-prices"),
+                simulator.getDuration("tick-interval", TimeUnit.NANOSECONDS),
+                PriceModel.fromName(simulator.getString("model")),
+                simulator.getDouble("volatility"),
+                simulator.getDouble("mean-reversion"),
+                fills.isEmpty() ? null : Paths.get(fills));
+    }
+
+    // Everything about one symbol during a run
+    private final class Symbol implements FillSink {
+        final String name;
+        final TickSize tickSize;
+        final OrderBook book;
+        final MarketMaker maker;
+        // Book order id of each resting order that has a ref
+        final Map<Long, Long> orderIds = new HashMap<>();
+        long anchorTicks;
+        long simulatedTicks;
+        // Set while the market maker's own quote is matching
+        boolean quoting;
+        boolean quoteFilled;
+        long orders;
+        long fills;
+        long volume;
+        long quotes;
+        long makerFills;
+        long makerVolume;
+        // Net shares and cash, in ticks times shares, of the market maker
+        long makerPosition;
+        long makerCash;
+
+        Symbol(String name, long initialPriceTicks, SplittableRandom random) {
+            this.name = name;
+            this.tickSize = tickSizes.apply(name);
+            this.book = new OrderBook(name, tickSize);
+            this.maker = new MarketMaker(initialPriceTicks, spreadBps, requoteThresholdBps, random);
+            this.anchorTicks = initialPriceTicks;
+            this.simulatedTicks = initialPriceTicks;
+        }
+
+        @Override
+        public void onFill(long takerId, long makerId, Order.OrderType takerSide, long priceTicks, int quantity) {
+            fills++;
+            volume += quantity;
+            // Called before the book reduces the resting order, so it is still there
+            RestingOrder resting = book.getOrder(makerId);
+            if (quoting) {
+                onMakerFill(takerSide, priceTicks, quantity);
+            }
+            if (resting != null && resting.getOwner() == maker) {
+                onMakerFill(resting.getSide(), priceTicks, quantity);
+            } else if (resting != null && resting.getOwner() != null && resting.getQuantity() == quantity) {
+                orderIds.remove(resting.getOwner());
+            }
+            digest = mix(mix(mix(mix(digest, takerId), makerId), priceTicks), quantity);
+            if (fillsOut != null) {
+                writeFill(this, takerId, makerId, priceTicks, quantity);
+            }
+        }
+
+        private void onMakerFill(Order.OrderType side, long priceTicks, int quantity) {
+            quoteFilled = true;
+            makerFills++;
+            makerVolume += quantity;
+            makerPosition += side == Order.OrderType.BUY ? quantity : -quantity;
+            makerCash += side == Order.OrderType.BUY ? -priceTicks * quantity : priceTicks * quantity;
+        }
+
+        // Renews the quote if the reference moved past the threshold or a quote traded
+        void requote(long referencePriceTicks) {
+            if (!maker.onPrice(referencePriceTicks) && !quoteFilled) {
+                return;
+            }
+            quoteFilled = false;
+            maker.quote();
+            quoting = true;
+            book.quote(maker.getBidPriceTicks(), maker.getBidQuantity(), maker.getAskPriceTicks(), maker.getAskQuantity(),
+                    clock, maker, this);
+            quoting = false;
+            quotes++;
+        }
+    }
+
+    private final Map<String, Symbol> symbolsByName = new HashMap<>();
+    private final List<Symbol> symbols = new ArrayList<>();
+    private long clock;
+    private long digest;
+    private BufferedWriter fillsOut;
+
+    // Runs the whole file, then prints a report per symbol. A malformed line fails the run with
+    // its line number.
+    public void run(PrintStream out) {
+        SplittableRandom random = new SplittableRandom(seed);
+        // Split before any symbol so the symbols' streams do not depend on simulate-prices
+        SplittableRandom priceRandom = random.split();
+        long started = System.nanoTime();
+        long events = 0;
+        long firstTime = -1;
+        long nextTick = 0;
+        try (BufferedReader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            if (fillsFile != null) {
+                fillsOut = Files.newBufferedWriter(fillsFile, StandardCharsets.UTF_8);
+                fillsOut.write("time,symbol,taker,maker,price,quantity\n");
+            }
+            String line;
+            long lineNumber = 0;
+            while ((line = in.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank() || line.startsWith("#")) {
+                    continue;
+                }
+                String[] fields = line.split(",");
+                try {
+                    long time = Long.parseLong(fields[0].trim());
+                    if (time < clock) {
+                        throw new IllegalArgumentException("time goes backwards");
+                    }
+                    if (firstTime < 0) {
+                        firstTime = time;
+                        nextTick = time + tickIntervalNanos;
+                    }
+                    while (simulatePrices && nextTick <= time) {
+                        clock = nextTick;
+                        simulateTick(priceRandom);
+                        nextTick += tickIntervalNanos;
+                    }
+                    clock = time;
+                    apply(fields, random);
+                } catch (RuntimeException e) {
+                    throw new IllegalArgumentException(file + " line " + lineNumber + ": " + e.getMessage() + ": " + line, e);
+                }
+                events++;
+            }
+            if (fillsOut != null) {
+                fillsOut.close();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Backtest failed reading " + file, e);
+        }
+        report(out, events, firstTime < 0 ? 0 : clock - firstTime, System.nanoTime() - started);
+    }
+
+    private void apply(String[] fields, SplittableRandom random) {
+        String name = fields[1].trim();
+        String type = fields[2].trim();
+        Symbol symbol = symbolsByName.get(name);
+        switch (type) {
+            case "BUY", "SELL" -> {
+                Order.OrderType side = type.equals("BUY") ? Order.OrderType.BUY : Order.OrderType.SELL;
+                TickSize tickSize = symbol != null ? symbol.tickSize : tickSizes.apply(name);
+                long priceTicks = tickSize.toTicks(new BigDecimal(fields[3].trim()));
+                int quantity = Integer.parseInt(fields[4].trim());
+                Long ref = fields.length > 5 ? Long.valueOf(fields[5].trim()) : null;
+                if (priceTicks <= 0 || quantity <= 0) {
+                    throw new IllegalArgumentException("price and quantity must be positive");
+                }
+                if (symbol == null) {
+                    symbol = new Symbol(name, priceTicks, random.split());
+                    symbolsByName.put(name, symbol);
+                    symbols.add(symbol);
+                    symbol.requote(priceTicks);
+                }
+                long fillsBefore = symbol.fills;
+                long orderId = symbol.book.addOrder(side, priceTicks, quantity, clock, ref, symbol);
+                symbol.orders++;
+                if (ref != null && symbol.book.getOrder(orderId) != null) {
+                    symbol.orderIds.put(ref, orderId);
+                }
+                // The same reference the book hands MarketMakerActor: only a fill moves it
+                if (symbol.fills > fillsBefore) {
+                    symbol.requote(symbol.book.getLastTradePriceTicks());
+                }
+            }
+            case "CANCEL" -> {
+                Long orderId = symbol != null ? symbol.orderIds.remove(Long.valueOf(fields[3].trim())) : null;
+                if (orderId != null) {
+                    symbol.book.cancelOrder(orderId);
+                }
+            }
+            case "AMEND" -> {
+                Long ref = Long.valueOf(fields[3].trim());
+                int quantity = Integer.parseInt(fields[4].trim());
+                Long orderId = symbol != null ? symbol.orderIds.get(ref) : null;
+                if (orderId != null) {
+                    symbol.book.amendOrder(orderId, quantity);
+                    if (quantity <= 0) {
+                        symbol.orderIds.remove(ref);
+                    }
+                }
+            }
+            default -> throw new IllegalArgumentException("unknown event " + type);
+        }
+    }
+
+    // One tick of the simulator's model for every symbol, in the order they appeared
+    private void simulateTick(SplittableRandom random) {
+        for (Symbol symbol : symbols) {
+            symbol.simulatedTicks = Math.max(
+                    model.next(symbol.simulatedTicks, symbol.anchorTicks, volatility, reversion, random), 1);
+            symbol.requote(symbol.simulatedTicks);
+        }
+    }
+
+    private void writeFill(Symbol symbol, long takerId, long makerId, long priceTicks, int quantity) {
+        try {
+            fillsOut.write(clock + "," + symbol.name + "," + takerId + "," + makerId + ","
+                    + symbol.tickSize.format(priceTicks) + "," + quantity + "\n");
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot write " + fillsFile, e);
+        }
+    }
+
+    private void report(PrintStream out, long events, long virtualNanos, long wallNanos) {
+        long fills = 0;
+        for (Symbol symbol : symbols) {
+            fills += symbol.fills;
+        }
+        out.printf("Backtest of %s: %d events over %s of virtual time in %.1f s (%.0f events/s), %d fills, digest %016x%n",
+                file, events, Duration.ofNanos(virtualNanos), wallNanos / 1e9, events / Math.max(wallNanos / 1e9, 1e-9),
+                fills, digest);
+        for (Symbol symbol : symbols) {
+            long lastTicks = symbol.book.getLastTradePriceTicks() > 0 ? symbol.book.getLastTradePriceTicks() : symbol.anchorTicks;
+            // Marked to the last trade
+            long pnlTicks = symbol.makerCash + symbol.makerPosition * lastTicks;
+            out.printf("  %s orders=%d fills=%d volume=%d last=%s | maker quotes=%d fills=%d volume=%d position=%d pnl=%s%n",
+                    symbol.name, symbol.orders, symbol.fills, symbol.volume, symbol.tickSize.format(lastTicks),
+                    symbol.quotes, symbol.makerFills, symbol.makerVolume, symbol.makerPosition,
+                    symbol.tickSize.toPrice(pnlTicks).toPlainString());
+        }
+    }
+
+    private static long mix(long hash, long value) {
+        return (hash ^ value) * 0x100000001B3L;
+    }
+}
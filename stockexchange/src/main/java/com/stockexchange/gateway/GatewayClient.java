@@ -0,0 +1,115 @@
+package com.stockexchange.gateway;
+
+import com.stockexchange.messages.Message;
+import com.stockexchange.messages.MessageCodec;
+import com.stockexchange.model.Order;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousCloseException;
+import java.nio.channels.SocketChannel;
+import java.util.function.Consumer;
+
+// Blocking client for OrderGateway, for tests and the load generator over loopback. Orders and
+// cancels are encoded into a send buffer and go out on flush(); a reader thread decodes the
+// gateway's Acks and Fills and hands each to onReply. Sending is meant for a single thread.
+public class GatewayClient implements AutoCloseable {
+    private final SocketChannel channel;
+    private final ByteBuffer out;
+    private final Thread reader;
+    private final Consumer<Message.Command> onReply;
+    private final MessageCodec.OrderFlyweight order = new MessageCodec.OrderFlyweight();
+    private final MessageCodec.CancelFlyweight cancel = new MessageCodec.CancelFlyweight();
+
+    public GatewayClient(InetSocketAddress address, int bufferSize, Consumer<Message.Command> onReply) {
+        this.onReply = onReply;
+        this.out = ByteBuffer.allocateDirect(bufferSize).order(MessageCodec.BYTE_ORDER);
+        try {
+            this.channel = SocketChannel.open(address);
+            channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot connect to " + address, e);
+        }
+        ByteBuffer in = ByteBuffer.allocateDirect(bufferSize).order(MessageCodec.BYTE_ORDER);
+        this.reader = new Thread(() -> read(in), "gateway-client-" + address.getPort());
+        this.reader.setDaemon(true);
+        this.reader.start();
+    }
+
+    public void order(int id, Message.TradeType action, long priceTicks, int quantity, String symbol) {
+        order(id, action, priceTicks, quantity, symbol, Order.DEFAULT_ACCOUNT);
+    }
+
+    public void order(int id, Message.TradeType action, long priceTicks, int quantity, String symbol, int account) {
+        reserve(MessageCodec.HEADER_LENGTH + MessageCodec.OrderFlyweight.BLOCK_LENGTH);
+        int at = out.position();
+        order.wrapForEncode(out, at).id(id).action(action).price(priceTicks).quantity(quantity).symbol(symbol)
+                .account(account);
+        out.position(at + MessageCodec.HEADER_LENGTH + MessageCodec.OrderFlyweight.BLOCK_LENGTH);
+    }
+
+    public void cancel(int id, long orderId, String symbol) {
+        reserve(MessageCodec.HEADER_LENGTH + MessageCodec.CancelFlyweight.BLOCK_LENGTH);
+        int at = out.position();
+        cancel.wrapForEncode(out, at).id(id).orderId(orderId).symbol(symbol);
+        out.position(at + MessageCodec.HEADER_LENGTH + MessageCodec.CancelFlyweight.BLOCK_LENGTH);
+    }
+
+    // Writes everything encoded since the last flush
+    public void flush() {
+        out.flip();
+        try {
+            while (out.hasRemaining()) {
+                channel.write(out);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Gateway write failed", e);
+        } finally {
+            out.clear();
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            channel.close();
+            reader.join(1000);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void reserve(int length) {
+        if (out.remaining() < length) {
+            flush();
+        }
+    }
+
+    private void read(ByteBuffer in) {
+        try {
+            while (channel.read(in) >= 0) {
+                in.flip();
+                int at = 0;
+                while (in.limit() - at >= MessageCodec.HEADER_LENGTH) {
+                    int length = MessageCodec.HEADER_LENGTH + MessageCodec.blockLength(in, at);
+                    if (in.limit() - at < length) {
+                        break;
+                    }
+                    onReply.accept((Message.Command) MessageCodec.decode(in, at));
+                    at += length;
+                }
+                in.position(at);
+                in.compact();
+            }
+        } catch (AsynchronousCloseException e) {
+            // close() was called
+        } catch (IOException e) {
+            throw new UncheckedIOException("Gateway read failed", e);
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.stockexchange.gateway;
+
+import akka.actor.typed.ActorRef;
+import akka.actor.typed.Behavior;
+import akka.actor.typed.javadsl.Behaviors;
+import com.stockexchange.messages.Message;
+import com.stockexchange.messages.MessageCodec;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// One client connection. Buffers and the channel belong to the gateway's selector thread; replies
+// arrive from the books on any thread and wait in a queue until the selector writes them out.
+final class GatewaySession {
+    // Stops the session's reply actor once the connection is gone
+    enum Disconnect implements Message.Command { INSTANCE }
+
+    final int id;
+    final SocketChannel channel;
+    final ByteBuffer in;
+    // Kept in fill mode: encoded replies sit between 0 and position
+    final ByteBuffer out;
+    SelectionKey key;
+    // Not read while an order in `in` waits for room in its ring
+    boolean stalled;
+    // The replyTo of every order from this connection
+    ActorRef<Message.Command> replyTo;
+    private final OrderGateway gateway;
+    private final Queue<Message.Command> replies = new ConcurrentLinkedQueue<>();
+    // Set while the session is queued with the gateway, so a burst of replies costs one wakeup
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+    private volatile boolean closed;
+
+    GatewaySession(OrderGateway gateway, int id, SocketChannel channel, int bufferSize) {
+        this.gateway = gateway;
+        this.id = id;
+        this.channel = channel;
+        this.in = ByteBuffer.allocateDirect(bufferSize).order(MessageCodec.BYTE_ORDER);
+        this.out = ByteBuffer.allocateDirect(bufferSize).order(MessageCodec.BYTE_ORDER);
+    }
+
+    static Behavior<Message.Command> replies(GatewaySession session) {
+        return Behaviors.receiveMessage(message -> {
+            if (message == Disconnect.INSTANCE) {
+                return Behaviors.stopped();
+            }
+            session.reply(message);
+            return Behaviors.same();
+        });
+    }
+
+    // Any thread
+    void reply(Message.Command message) {
+        if (closed) {
+            return;
+        }
+        replies.offer(message);
+        if (!scheduled.get() && scheduled.compareAndSet(false, true)) {
+            gateway.schedule(this);
+        }
+    }
+
+    // Selector thread, before draining, so a reply queued during the drain schedules again
+    void unschedule() {
+        scheduled.set(false);
+    }
+
+    Message.Command nextReply() {
+        return replies.poll();
+    }
+
+    boolean hasReplies() {
+        return !replies.isEmpty();
+    }
+
+    void markClosed() {
+        closed = true;
+        replies.clear();
+    }
+}
@@ -0,0 +1,469 @@
+package com.stockexchange.gateway;
+
+import akka.actor.typed.ActorSystem;
+import akka.actor.typed.Props;
+import com.stockexchange.actors.StockExchangeActor;
+import com.stockexchange.ingest.OrderIngest;
+import com.stockexchange.ingest.OrderRing;
+import com.stockexchange.ingest.OrderSlot;
+import com.stockexchange.messages.Message;
+import com.stockexchange.messages.MessageCodec;
+import com.stockexchange.model.Order;
+import com.stockexchange.model.SymbolTable;
+import com.typesafe.config.Config;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.ProtocolException;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+// TCP order entry for clients outside the JVM, served by one selector thread for every connection.
+// Frames are the MessageCodec encoding, whose header carries the block length: clients send Order,
+// Cancel and Amend, and get back the exchange's Ack and Fill for each order, an Ack for
+// Message.REJECTED if the order was not accepted. A connection can only cancel or amend the orders
+// it placed. Orders are read in place from the connection's direct buffer into the symbol's
+// ingest ring, or sent as ExecuteTrade when there are no rings.
+// A connection whose order meets a full ring stops being read, its remaining frames kept, until
+// the ring has room; other connections carry on. Replies that queue up while the selector is busy
+// go out together in one write.
+public class OrderGateway implements Runnable, AutoCloseable {
+    // Largest reply the gateway writes; a session's output buffer is drained below this
+    private static final int MAX_REPLY_LENGTH = MessageCodec.HEADER_LENGTH
+            + Math.max(MessageCodec.AckFlyweight.BLOCK_LENGTH, MessageCodec.FillFlyweight.BLOCK_LENGTH);
+
+    // How often stalled sessions retry their ring while nothing else wakes the selector
+    private static final long STALL_RETRY_MILLIS = 1;
+
+    private static final Logger log = LoggerFactory.getLogger(OrderGateway.class);
+
+    // Where a symbol's orders go; cached by the symbol's wire bytes once its book is running
+    private static final class Route {
+        final String symbol;
+        final int symbolId;
+        final OrderRing ring;
+        Route(String symbol, int symbolId, OrderRing ring) {
+            this.symbol = symbol;
+            this.symbolId = symbolId;
+            this.ring = ring;
+        }
+    }
+
+    private final ActorSystem<Message.Command> exchange;
+    private final OrderIngest ingest;
+    private final SymbolTable symbols;
+    private final int bufferSize;
+    private final Selector selector;
+    private final ServerSocketChannel server;
+    private final Thread thread;
+    // Sessions with replies to write, handed over from the books' threads
+    private final Queue<GatewaySession> ready = new ConcurrentLinkedQueue<>();
+    // Sessions not being read because an order met a full ring. Selector thread only.
+    private final List<GatewaySession> stalled = new ArrayList<>();
+    // Open addressing on the 8 symbol bytes; a zero key is never a symbol. Selector thread only.
+    private long[] routeKeys = new long[64];
+    private Route[] routes = new Route[64];
+    private int routeCount;
+    // Reused for every frame on the selector thread
+    private final MessageCodec.OrderFlyweight order = new MessageCodec.OrderFlyweight();
+    private final MessageCodec.CancelFlyweight cancel = new MessageCodec.CancelFlyweight();
+    private final MessageCodec.AmendFlyweight amend = new MessageCodec.AmendFlyweight();
+    private final MessageCodec.AckFlyweight ack = new MessageCodec.AckFlyweight();
+    private final MessageCodec.FillFlyweight fill = new MessageCodec.FillFlyweight();
+    private int sessionCount;
+    private volatile boolean running = true;
+
+    public OrderGateway(ActorSystem<Message.Command> exchange, OrderIngest ingest, SymbolTable symbols,
+                        InetSocketAddress address, int bufferSize) {
+        this.exchange = exchange;
+        this.ingest = ingest;
+        this.symbols = symbols;
+        this.bufferSize = bufferSize;
+        try {
+            this.selector = Selector.open();
+            this.server = ServerSocketChannel.open();
+            server.configureBlocking(false);
+            server.bind(address);
+            server.register(selector, SelectionKey.OP_ACCEPT);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot listen on " + address, e);
+        }
+        this.thread = new Thread(this, "order-gateway");
+        this.thread.setDaemon(true);
+    }
+
+    // Null when the gateway is disabled; otherwise already accepting connections
+    public static OrderGateway fromConfig(Config config, ActorSystem<Message.Command> exchange, OrderIngest ingest,
+                                          SymbolTable symbols) {
+        if (!config.getBoolean("enabled")) {
+            return null;
+        }
+        OrderGateway gateway = new OrderGateway(exchange, ingest, symbols,
+                new InetSocketAddress(config.getString("host"), config.getInt("port")),
+                (int) config.getBytes("buffer-size").longValue());
+        gateway.start();
+        return gateway;
+    }
+
+    public void start() {
+        thread.start();
+        log.info("Order gateway listening on {}", getAddress());
+    }
+
+    public InetSocketAddress getAddress() {
+        try {
+            return (InetSocketAddress) server.getLocalAddress();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        selector.wakeup();
+        try {
+            thread.join(1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public void run() {
+        try {
+            while (running) {
+                if (stalled.isEmpty()) {
+                    selector.select();
+                } else {
+                    selector.select(STALL_RETRY_MILLIS);
+                }
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    if (key.isAcceptable()) {
+                        try {
+                            accept();
+                        } catch (IOException e) {
+                            log.warn("Could not accept a gateway connection", e);
+                        }
+                        continue;
+                    }
+                    GatewaySession session = (GatewaySession) key.attachment();
+                    try {
+                        if (key.isReadable() && !session.stalled) {
+                            read(session);
+                        }
+                        if (key.isValid() && key.isWritable()) {
+                            write(session);
+                        }
+                    } catch (IOException e) {
+                        closeSession(session, e);
+                    }
+                }
+                GatewaySession session;
+                while ((session = ready.poll()) != null) {
+                    try {
+                        write(session);
+                    } catch (IOException e) {
+                        closeSession(session, e);
+                    }
+                }
+                resumeStalled();
+            }
+        } catch (IOException e) {
+            log.error("Order gateway stopped", e);
+        } finally {
+            for (SelectionKey key : selector.keys()) {
+                if (key.attachment() instanceof GatewaySession session) {
+                    closeSession(session, null);
+                }
+            }
+            try {
+                server.close();
+                selector.close();
+            } catch (IOException e) {
+                log.warn("Could not close order gateway", e);
+            }
+        }
+    }
+
+    // Called by a session on whatever thread delivered its reply
+    void schedule(GatewaySession session) {
+        ready.offer(session);
+        selector.wakeup();
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel = server.accept();
+        if (channel == null) {
+            return;
+        }
+        channel.configureBlocking(false);
+        channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        GatewaySession session = new GatewaySession(this, ++sessionCount, channel, bufferSize);
+        session.key = channel.register(selector, SelectionKey.OP_READ, session);
+        session.replyTo = exchange.systemActorOf(GatewaySession.replies(session), "gateway-session-" + session.id, Props.empty());
+        log.info("Gateway session {} connected from {}", session.id, channel.getRemoteAddress());
+    }
+
+    private void closeSession(GatewaySession session, IOException cause) {
+        if (!session.key.isValid()) {
+            return;
+        }
+        if (session.stalled) {
+            stalled.remove(session);
+        }
+        session.markClosed();
+        session.key.cancel();
+        session.replyTo.tell(GatewaySession.Disconnect.INSTANCE);
+        try {
+            session.channel.close();
+        } catch (IOException e) {
+            log.debug("Error closing gateway session {}", session.id, e);
+        }
+        if (cause != null) {
+            log.info("Gateway session {} closed: {}", session.id, cause.getMessage());
+        } else {
+            log.info("Gateway session {} closed", session.id);
+        }
+    }
+
+    private void read(GatewaySession session) throws IOException {
+        if (session.channel.read(session.in) < 0) {
+            closeSession(session, null);
+            return;
+        }
+        if (!handleFrames(session)) {
+            session.stalled = true;
+            stalled.add(session);
+            updateInterest(session);
+        }
+    }
+
+    // Retries the buffered frames of sessions stalled on a full ring and reads them again once
+    // everything buffered has gone through
+    private void resumeStalled() {
+        for (int i = stalled.size() - 1; i >= 0; i--) {
+            GatewaySession session = stalled.get(i);
+            try {
+                if (handleFrames(session)) {
+                    stalled.remove(i);
+                    session.stalled = false;
+                    updateInterest(session);
+                }
+            } catch (IOException e) {
+                closeSession(session, e);
+            }
+        }
+    }
+
+    // Handles every complete frame in the buffer and keeps a trailing partial frame for the next
+    // read. Returns false if an order met a full ring; that frame and the ones after it are kept.
+    private boolean handleFrames(GatewaySession session) throws IOException {
+        ByteBuffer in = session.in;
+        in.flip();
+        int at = 0;
+        boolean handled = true;
+        while (in.limit() - at >= MessageCodec.HEADER_LENGTH) {
+            int length = MessageCodec.HEADER_LENGTH + MessageCodec.blockLength(in, at);
+            if (length <= MessageCodec.HEADER_LENGTH || length > in.capacity()) {
+                throw new ProtocolException("Bad frame length " + length);
+            }
+            if (in.limit() - at < length) {
+                break;
+            }
+            try {
+                handled = dispatch(session, in, at, length - MessageCodec.HEADER_LENGTH);
+            } catch (IndexOutOfBoundsException e) {
+                // An enum byte outside its range
+                throw new ProtocolException("Bad field in message template " + MessageCodec.templateId(in, at));
+            }
+            if (!handled) {
+                break;
+            }
+            at += length;
+        }
+        in.position(at);
+        in.compact();
+        return handled;
+    }
+
+    // False when the frame could not be handled yet and must be retried
+    private boolean dispatch(GatewaySession session, ByteBuffer in, int at, int blockLength) throws ProtocolException {
+        int templateId = MessageCodec.templateId(in, at);
+        switch (templateId) {
+            case MessageCodec.OrderFlyweight.TEMPLATE_ID -> {
+                expect(blockLength, MessageCodec.OrderFlyweight.BLOCK_LENGTH);
+                return onOrder(session, order.wrap(in, at));
+            }
+            case MessageCodec.CancelFlyweight.TEMPLATE_ID -> {
+                expect(blockLength, MessageCodec.CancelFlyweight.BLOCK_LENGTH);
+                cancel.wrap(in, at);
+                Route route = route(cancel.symbolKey());
+                exchange.tell(new StockExchangeActor.CancelTrade(
+                        new Message.Cancel(cancel.id(), cancel.orderId(), route != null ? route.symbol : cancel.symbol()),
+                        session.replyTo));
+            }
+            case MessageCodec.AmendFlyweight.TEMPLATE_ID -> {
+                expect(blockLength, MessageCodec.AmendFlyweight.BLOCK_LENGTH);
+                amend.wrap(in, at);
+                Route route = route(amend.symbolKey());
+                exchange.tell(new StockExchangeActor.AmendTrade(
+                        new Message.Amend(amend.id(), amend.orderId(), route != null ? route.symbol : amend.symbol(),
+                                amend.quantity()),
+                        session.replyTo));
+            }
+            default -> throw new ProtocolException("Unexpected message template " + templateId);
+        }
+        return true;
+    }
+
+    private static void expect(int blockLength, int expected) throws ProtocolException {
+        if (blockLength < expected) {
+            throw new ProtocolException("Block of " + blockLength + " bytes, expected " + expected);
+        }
+    }
+
+    private boolean onOrder(GatewaySession session, MessageCodec.OrderFlyweight order) {
+        Route route = route(order.symbolKey());
+        if (route == null) {
+            route = resolve(order.symbolKey(), order.symbol());
+        }
+        Order.OrderType side = sideOf(order);
+        long priceTicks = order.price();
+        int quantity = order.quantity();
+        int account = order.account();
+        if (route == null || side == null || priceTicks <= 0 || quantity <= 0) {
+            session.reply(new Message.Ack(Message.REJECTED, route != null ? route.symbol : order.symbol()));
+            return true;
+        }
+        if (route.ring == null) {
+            exchange.tell(new StockExchangeActor.ExecuteTrade(
+                    new Order(route.symbolId, route.symbol, account, quantity, priceTicks, side), session.replyTo));
+            return true;
+        }
+        // A full ring stalls this session rather than falling back to the mailbox, which would
+        // reorder the Acks; while it is not read, TCP pushes back on the client
+        long sequence = route.ring.tryClaim();
+        if (sequence < 0) {
+            return false;
+        }
+        OrderSlot slot = route.ring.slot(sequence);
+        slot.side = side;
+        slot.priceTicks = priceTicks;
+        slot.quantity = quantity;
+        slot.timestamp = System.nanoTime();
+        slot.account = account;
+        slot.replyTo = session.replyTo;
+        route.ring.publish(sequence);
+        return true;
+    }
+
+    private Route route(long key) {
+        int mask = routeKeys.length - 1;
+        for (int i = Long.hashCode(key * 0x9E3779B97F4A7C15L) & mask; routeKeys[i] != 0; i = (i + 1) & mask) {
+            if (routeKeys[i] == key) {
+                return routes[i];
+            }
+        }
+        return null;
+    }
+
+    // Null for a symbol that is not registered. A route is only kept once the symbol's book has
+    // started, so an order arriving earlier goes through the exchange mailbox instead.
+    private Route resolve(long key, String symbol) {
+        int symbolId = symbols.idOf(symbol);
+        if (symbolId == SymbolTable.UNKNOWN) {
+            return null;
+        }
+        OrderRing ring = ingest != null ? ingest.ring(symbol) : null;
+        // The table's own instance, which the exchange compares stamped ids against
+        Route route = new Route(symbols.symbol(symbolId), symbolId, ring);
+        if (ingest == null || ring != null) {
+            put(key, route);
+        }
+        return route;
+    }
+
+    private void put(long key, Route route) {
+        if ((routeCount + 1) * 2 > routeKeys.length) {
+            long[] oldKeys = routeKeys;
+            Route[] oldRoutes = routes;
+            routeKeys = new long[oldKeys.length * 2];
+            routes = new Route[oldKeys.length * 2];
+            routeCount = 0;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != 0) {
+                    put(oldKeys[i], oldRoutes[i]);
+                }
+            }
+        }
+        int mask = routeKeys.length - 1;
+        int i = Long.hashCode(key * 0x9E3779B97F4A7C15L) & mask;
+        while (routeKeys[i] != 0) {
+            i = (i + 1) & mask;
+        }
+        routeKeys[i] = key;
+        routes[i] = route;
+        routeCount++;
+    }
+
+    // Encodes queued replies into the session's buffer and writes as much as the socket takes
+    private void write(GatewaySession session) throws IOException {
+        if (!session.key.isValid()) {
+            return;
+        }
+        session.unschedule();
+        ByteBuffer out = session.out;
+        Message.Command reply;
+        while (out.remaining() >= MAX_REPLY_LENGTH && (reply = session.nextReply()) != null) {
+            int at = out.position();
+            if (reply instanceof Message.Fill f) {
+                fill.wrapForEncode(out, at).id(f.id()).orderId(f.order_id()).symbol(f.symbol())
+                        .price(f.price()).quantity(f.quantity());
+                out.position(at + MessageCodec.HEADER_LENGTH + MessageCodec.FillFlyweight.BLOCK_LENGTH);
+            } else if (reply instanceof Message.Ack a) {
+                ack.wrapForEncode(out, at).orderId(a.order_id()).symbol(a.symbol());
+                out.position(at + MessageCodec.HEADER_LENGTH + MessageCodec.AckFlyweight.BLOCK_LENGTH);
+            }
+        }
+        out.flip();
+        session.channel.write(out);
+        out.compact();
+        updateInterest(session);
+    }
+
+    // Reads unless stalled; waits for the socket to take more only while output is left over
+    private static void updateInterest(GatewaySession session) {
+        if (!session.key.isValid()) {
+            return;
+        }
+        boolean pending = session.out.position() > 0 || session.hasReplies();
+        session.key.interestOps((session.stalled ? 0 : SelectionKey.OP_READ) | (pending ? SelectionKey.OP_WRITE : 0));
+    }
+
+    private static Order.OrderType sideOf(MessageCodec.OrderFlyweight order) {
+        return switch (order.action()) {
+            case BUY -> Order.OrderType.BUY;
+            case SELL -> Order.OrderType.SELL;
+            default -> null;
+        };
+    }
+}
@@ -0,0 +1,29 @@
+package com.stockexchange.ingest;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Shared registry of per-symbol rings; each OrderBookActor creates and registers its own ring
+public class OrderIngest {
+    private final Map<String, OrderRing> rings = new ConcurrentHashMap<>();
+    private final int ringSize;
+    private final int drainBatch;
+
+    public OrderIngest(int ringSize, int drainBatch) {
+        this.ringSize = ringSize;
+        this.drainBatch = drainBatch;
+    }
+
+    public void register(String stockSymbol, OrderRing ring) {
+        rings.put(stockSymbol, ring);
+    }
+
+    // Null until the symbol's book has started
+    public OrderRing ring(String stockSymbol) {
+        return rings.get(stockSymbol);
+    }
+
+    // Getters
+    public int getRingSize() { return ringSize; }
+    public int getDrainBatch() { return drainBatch; }
+}
@@ -0,0 +1,134 @@
+package com.stockexchange.ingest;
+
+import akka.actor.typed.ActorRef;
+import com.stockexchange.messages.Message;
+import com.stockexchange.model.Order;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+// Bounded multi-producer, single-consumer ring of preallocated order slots.
+// Producers claim a sequence, fill the slot and publish it; the owning book drains published
+// slots in batches on its own thread. Nothing is allocated per order.
+public final class OrderRing {
+    private final OrderSlot[] slots;
+    private final int mask;
+    private final AtomicLong claimed = new AtomicLong();
+    // Next sequence the consumer will read; slots below it are free for reuse
+    private volatile long consumed;
+    private final AtomicBoolean signalled = new AtomicBoolean();
+    private volatile Runnable wakeup = () -> {};
+
+    public OrderRing(int capacity) {
+        if (Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Ring capacity must be a power of two: " + capacity);
+        }
+        this.slots = new OrderSlot[capacity];
+        for (int i = 0; i < capacity; i++) {
+            slots[i] = new OrderSlot();
+        }
+        this.mask = capacity - 1;
+    }
+
+    // Returns the claimed sequence, or -1 when the ring is full
+    public long tryClaim() {
+        long current;
+        do {
+            current = claimed.get();
+            if (current - consumed >= slots.length) {
+                return -1;
+            }
+        } while (!claimed.compareAndSet(current, current + 1));
+        return current;
+    }
+
+    // Waits for a free slot, spinning briefly and then yielding so the consumer can run
+    public long claim() {
+        long sequence;
+        int spins = 0;
+        while ((sequence = tryClaim()) < 0) {
+            if (++spins < 100) {
+                Thread.onSpinWait();
+            } else {
+                Thread.yield();
+            }
+        }
+        return sequence;
+    }
+
+    public OrderSlot slot(long sequence) {
+        return slots[(int) sequence & mask];
+    }
+
+    public void publish(long sequence) {
+        slot(sequence).published = sequence;
+        if (!signalled.get() && signalled.compareAndSet(false, true)) {
+            wakeup.run();
+        }
+    }
+
+    // Claim, fill and publish in one call; returns false when the ring is full
+    public boolean offer(Order.OrderType side, long priceTicks, int quantity, int account,
+                         ActorRef<Message.Command> replyTo) {
+        long sequence = tryClaim();
+        if (sequence < 0) {
+            return false;
+        }
+        OrderSlot slot = slot(sequence);
+        slot.side = side;
+        slot.priceTicks = priceTicks;
+        slot.quantity = quantity;
+        slot.timestamp = System.nanoTime();
+        slot.account = account;
+        slot.replyTo = replyTo;
+        publish(sequence);
+        return true;
+    }
+
+    // Consumer side: hands up to maxBatch published slots to the handler, which must copy what it
+    // needs before returning. Returns the number drained.
+    public int drain(Consumer<OrderSlot> handler, int maxBatch) {
+        signalled.set(false);
+        long next = consumed;
+        int drained = 0;
+        while (drained < maxBatch) {
+            OrderSlot slot = slots[(int) next & mask];
+            if (slot.published != next) {
+                break;
+            }
+            handler.accept(slot);
+            slot.replyTo = null;
+            next++;
+            drained++;
+        }
+        consumed = next;
+        return drained;
+    }
+
+    public boolean hasPending() {
+        long next = consumed;
+        return slots[(int) next & mask].published == next;
+    }
+
+    // Runs on the publishing thread whenever the consumer needs waking; typically a tell to the book
+    public void setWakeup(Runnable wakeup) {
+        this.wakeup = wakeup;
+    }
+
+    // Re-arms the wakeup after a partial drain, so remaining slots are picked up
+    public void signal() {
+        if (signalled.compareAndSet(false, true)) {
+            wakeup.run();
+        }
+    }
+
+    public int capacity() {
+        return slots.length;
+    }
+
+    // Claimed but not yet drained; an estimate when read off the consumer's thread
+    public long size() {
+        return Math.max(claimed.get() - consumed, 0);
+    }
+}
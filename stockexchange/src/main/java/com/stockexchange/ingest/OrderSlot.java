@@ -0,0 +1,20 @@
+package com.stockexchange.ingest;
+
+import akka.actor.typed.ActorRef;
+import com.stockexchange.messages.Message;
+import com.stockexchange.model.Order;
+
+// Preallocated, reusable order entry in an OrderRing; producers fill it between claim and publish
+public final class OrderSlot {
+    public Order.OrderType side;
+    public long priceTicks;
+    public int quantity;
+    public long timestamp;
+    // Order.DEFAULT_ACCOUNT unless the producer knows better; slots are reused, so always set it
+    public int account;
+    // Optional; receives a Message.Ack and fills like ExecuteTrade.replyTo
+    public ActorRef<Message.Command> replyTo;
+
+    // Sequence this slot was last published for; the consumer only reads slots that match its cursor
+    volatile long published = -1;
+}
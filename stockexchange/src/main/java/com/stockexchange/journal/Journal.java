@@ -0,0 +1,265 @@
+package com.stockexchange.journal;
+
+import com.stockexchange.model.Order;
+import com.stockexchange.model.RestingOrder;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+// Append-only, memory-mapped command log. Each record is [int length][byte type][body]; the length
+// is written last, so a torn record reads as length 0, which marks the end of the journal.
+// ORDER records written before they carried the account are 4 bytes shorter and replay without one.
+// The file is mapped one fixed-size segment at a time and records never straddle a segment.
+// Positions are absolute byte offsets in the file, so a snapshot can record where its tail starts.
+// Not thread-safe: each journal has a single writer, its owning actor.
+public final class Journal implements AutoCloseable {
+    static final byte REGISTER_STOCK = 1;
+    static final byte REGISTER_MARKET_MAKER = 2;
+    static final byte ORDER = 3;
+    static final byte CANCEL = 4;
+    static final byte AMEND = 5;
+    static final byte QUOTE = 6;
+
+    // Written when a record does not fit in the rest of the segment
+    private static final int SEGMENT_END = -1;
+    private static final int HEADER = 5;
+    private static final int ORDER_LENGTH = 25;
+
+    private final FileChannel channel;
+    private final int segmentSize;
+    private final int fsyncEvery;
+    private final long fsyncIntervalNanos;
+
+    private MappedByteBuffer segment;
+    private long segmentStart;
+    // Offset in the current segment of the next record, and of the first byte not yet forced
+    private int writeOffset;
+    private int syncedOffset;
+    private int unsynced;
+    // Body length of the record between reserve and commitRecord
+    private int pendingLength;
+    private long lastSync = System.nanoTime();
+
+    Journal(Path path, int segmentSize, int fsyncEvery, long fsyncIntervalNanos) {
+        this.segmentSize = segmentSize;
+        this.fsyncEvery = fsyncEvery;
+        this.fsyncIntervalNanos = fsyncIntervalNanos;
+        try {
+            this.channel = FileChannel.open(path,
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot open journal " + path, e);
+        }
+    }
+
+    // Replays every record from the start, then leaves the journal positioned for appends.
+    // Returns the number of records read.
+    public long replay(JournalHandler handler) {
+        return replay(handler, 0);
+    }
+
+    // Replays the records from the given position onwards, which must be a record boundary such as
+    // one returned by position(). Returns the number of records read.
+    public long replay(JournalHandler handler, long fromPosition) {
+        long records = 0;
+        map(fromPosition - fromPosition % segmentSize);
+        writeOffset = (int) (fromPosition - segmentStart);
+        while (true) {
+            int length = writeOffset + 4 <= segmentSize ? segment.getInt(writeOffset) : SEGMENT_END;
+            if (length == 0) {
+                break;
+            }
+            if (length == SEGMENT_END) {
+                map(segmentStart + segmentSize);
+                continue;
+            }
+            if (handler != null) {
+                dispatch(segment.get(writeOffset + 4), writeOffset + HEADER, length, handler);
+            }
+            writeOffset += HEADER + length;
+            records++;
+        }
+        syncedOffset = writeOffset;
+        return records;
+    }
+
+    public void appendRegisterStock(String stockSymbol, String companyName, String tickSize, long priceTicks) {
+        byte[] symbol = stockSymbol.getBytes(StandardCharsets.UTF_8);
+        byte[] company = companyName.getBytes(StandardCharsets.UTF_8);
+        byte[] tick = tickSize.getBytes(StandardCharsets.UTF_8);
+        int at = reserve(6 + symbol.length + company.length + tick.length + 8);
+        at = putString(at, symbol);
+        at = putString(at, company);
+        at = putString(at, tick);
+        segment.putLong(at, priceTicks);
+        commitRecord(REGISTER_STOCK);
+    }
+
+    public void appendRegisterMarketMaker(String stockSymbol, long initialPriceTicks) {
+        byte[] symbol = stockSymbol.getBytes(StandardCharsets.UTF_8);
+        int at = reserve(2 + symbol.length + 8);
+        at = putString(at, symbol);
+        segment.putLong(at, initialPriceTicks);
+        commitRecord(REGISTER_MARKET_MAKER);
+    }
+
+    // account is the one the order was charged to, or RestingOrder.NO_ACCOUNT
+    public void appendOrder(Order.OrderType side, long priceTicks, int quantity, long timestamp, int account) {
+        int at = reserve(ORDER_LENGTH);
+        segment.put(at, (byte) (side == Order.OrderType.BUY ? 0 : 1));
+        segment.putLong(at + 1, priceTicks);
+        segment.putInt(at + 9, quantity);
+        segment.putLong(at + 13, timestamp);
+        segment.putInt(at + 21, account);
+        commitRecord(ORDER);
+    }
+
+    public void appendCancel(long orderId) {
+        int at = reserve(8);
+        segment.putLong(at, orderId);
+        commitRecord(CANCEL);
+    }
+
+    public void appendAmend(long orderId, int quantity) {
+        int at = reserve(12);
+        segment.putLong(at, orderId);
+        segment.putInt(at + 8, quantity);
+        commitRecord(AMEND);
+    }
+
+    // Both sides of a market-maker re-quote; see OrderBook.quote
+    public void appendQuote(long bidPriceTicks, int bidQuantity, long askPriceTicks, int askQuantity, long timestamp) {
+        int at = reserve(32);
+        segment.putLong(at, bidPriceTicks);
+        segment.putInt(at + 8, bidQuantity);
+        segment.putLong(at + 12, askPriceTicks);
+        segment.putInt(at + 20, askQuantity);
+        segment.putLong(at + 24, timestamp);
+        commitRecord(QUOTE);
+    }
+
+    // Position the next record will be written at
+    public long position() {
+        return segmentStart + writeOffset;
+    }
+
+    // Called once per processed message, forces only when the batch or interval is due. Callers
+    // reply before this, so with fsync-every above 1 a reply does not mean the record is durable.
+    public void commit() {
+        if (unsynced > 0 && fsyncEvery > 0
+                && (unsynced >= fsyncEvery || System.nanoTime() - lastSync >= fsyncIntervalNanos)) {
+            sync();
+        }
+    }
+
+    public void sync() {
+        if (segment != null && writeOffset > syncedOffset) {
+            segment.force(syncedOffset, writeOffset - syncedOffset);
+            syncedOffset = writeOffset;
+        }
+        unsynced = 0;
+        lastSync = System.nanoTime();
+    }
+
+    @Override
+    public void close() {
+        sync();
+        try {
+            channel.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // Returns the body offset of a record of the given size, moving to a new segment if needed
+    private int reserve(int bodyLength) {
+        if (segment == null) {
+            // Position after the last complete record so appends never overwrite history
+            replay(null);
+        }
+        int recordLength = HEADER + bodyLength;
+        if (recordLength + 4 > segmentSize) {
+            throw new IllegalArgumentException("Journal record larger than segment: " + recordLength);
+        }
+        if (writeOffset + recordLength + 4 > segmentSize) {
+            if (writeOffset + 4 <= segmentSize) {
+                segment.putInt(writeOffset, SEGMENT_END);
+            }
+            sync();
+            map(segmentStart + segmentSize);
+        }
+        segment.putInt(writeOffset + HEADER + bodyLength, 0);
+        segment.putInt(writeOffset, 0);
+        pendingLength = bodyLength;
+        return writeOffset + HEADER;
+    }
+
+    private void commitRecord(byte type) {
+        segment.put(writeOffset + 4, type);
+        // Publishing the length last makes the record visible to replay only once it is complete
+        segment.putInt(writeOffset, pendingLength);
+        writeOffset += HEADER + pendingLength;
+        unsynced++;
+    }
+
+    private int putString(int at, byte[] value) {
+        segment.putShort(at, (short) value.length);
+        segment.put(at + 2, value);
+        return at + 2 + value.length;
+    }
+
+    private String getString(int at) {
+        byte[] value = new byte[segment.getShort(at)];
+        segment.get(at + 2, value);
+        return new String(value, StandardCharsets.UTF_8);
+    }
+
+    private void dispatch(byte type, int at, int length, JournalHandler handler) {
+        switch (type) {
+            case REGISTER_STOCK -> {
+                String symbol = getString(at);
+                at += 2 + segment.getShort(at);
+                String company = getString(at);
+                at += 2 + segment.getShort(at);
+                String tick = getString(at);
+                at += 2 + segment.getShort(at);
+                handler.onRegisterStock(symbol, company, tick, segment.getLong(at));
+            }
+            case REGISTER_MARKET_MAKER -> {
+                String symbol = getString(at);
+                handler.onRegisterMarketMaker(symbol, segment.getLong(at + 2 + segment.getShort(at)));
+            }
+            case ORDER -> handler.onOrder(
+                    segment.get(at) == 0 ? Order.OrderType.BUY : Order.OrderType.SELL,
+                    segment.getLong(at + 1),
+                    segment.getInt(at + 9),
+                    segment.getLong(at + 13),
+                    length >= ORDER_LENGTH ? segment.getInt(at + 21) : RestingOrder.NO_ACCOUNT);
+            case CANCEL -> handler.onCancel(segment.getLong(at));
+            case AMEND -> handler.onAmend(segment.getLong(at), segment.getInt(at + 8));
+            case QUOTE -> handler.onQuote(
+                    segment.getLong(at),
+                    segment.getInt(at + 8),
+                    segment.getLong(at + 12),
+                    segment.getInt(at + 20),
+                    segment.getLong(at + 24));
+            default -> throw new IllegalStateException("Unknown journal record type " + type);
+        }
+    }
+
+    private void map(long start) {
+        try {
+            segment = channel.map(FileChannel.MapMode.READ_WRITE, start, segmentSize);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot map journal segment at " + start, e);
+        }
+        segmentStart = start;
+        writeOffset = 0;
+        syncedOffset = 0;
+    }
+}
@@ -0,0 +1,18 @@
+package com.stockexchange.journal;
+
+import com.stockexchange.model.Order;
+
+// Callbacks for Journal.replay; only the record types a journal holds need overriding
+public interface JournalHandler {
+    default void onRegisterStock(String stockSymbol, String companyName, String tickSize, long priceTicks) {}
+
+    default void onRegisterMarketMaker(String stockSymbol, long initialPriceTicks) {}
+
+    default void onOrder(Order.OrderType side, long priceTicks, int quantity, long timestamp, int account) {}
+
+    default void onCancel(long orderId) {}
+
+    default void onAmend(long orderId, int quantity) {}
+
+    default void onQuote(long bidPriceTicks, int bidQuantity, long askPriceTicks, int askQuantity, long timestamp) {}
+}
@@ -0,0 +1,73 @@
+package com.stockexchange.journal;
+
+import com.stockexchange.model.BookSnapshot;
+import com.typesafe.config.Config;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+
+// Opens journals and book snapshots under one directory with the settings from stockexchange.journal
+public class JournalStore {
+    // Journal holding symbol registrations, as opposed to the per-symbol order journals
+    public static final String EXCHANGE = "exchange";
+
+    private final Path directory;
+    private final int segmentSize;
+    private final int fsyncEvery;
+    private final long fsyncIntervalNanos;
+    private final long snapshotIntervalNanos;
+
+    public JournalStore(Path directory, int segmentSize, int fsyncEvery, long fsyncIntervalNanos, long snapshotIntervalNanos) {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.fsyncEvery = fsyncEvery;
+        this.fsyncIntervalNanos = fsyncIntervalNanos;
+        this.snapshotIntervalNanos = snapshotIntervalNanos;
+        try {
+            Files.createDirectories(directory);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot create journal directory " + directory, e);
+        }
+    }
+
+    // Null when journaling is disabled
+    public static JournalStore fromConfig(Config config) {
+        if (!config.getBoolean("enabled")) {
+            return null;
+        }
+        return new JournalStore(
+                Paths.get(config.getString("dir")),
+                (int) config.getBytes("segment-size").longValue(),
+                config.getInt("fsync-every"),
+                config.getDuration("fsync-interval", TimeUnit.NANOSECONDS),
+                config.getDuration("snapshot-interval", TimeUnit.NANOSECONDS));
+    }
+
+    public Journal open(String name) {
+        return new Journal(directory.resolve(name + ".journal"), segmentSize, fsyncEvery, fsyncIntervalNanos);
+    }
+
+    // Replaces the symbol's snapshot; blocking file IO, so callers run it off the book's thread
+    public void saveSnapshot(String stockSymbol, BookSnapshot snapshot) {
+        SnapshotFile.write(snapshotPath(stockSymbol), stockSymbol, snapshot);
+    }
+
+    // Fills the snapshot from the symbol's latest snapshot file; false when there is none
+    public boolean loadSnapshot(String stockSymbol, BookSnapshot snapshot) {
+        return SnapshotFile.read(snapshotPath(stockSymbol), stockSymbol, snapshot);
+    }
+
+    private Path snapshotPath(String stockSymbol) {
+        return directory.resolve(stockSymbol + ".snapshot");
+    }
+
+    // Getters
+    public Path getDirectory() { return directory; }
+    public int getFsyncEvery() { return fsyncEvery; }
+    public long getFsyncIntervalNanos() { return fsyncIntervalNanos; }
+    public long getSnapshotIntervalNanos() { return snapshotIntervalNanos; }
+}
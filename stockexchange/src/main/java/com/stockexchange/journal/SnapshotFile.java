@@ -0,0 +1,111 @@
+package com.stockexchange.journal;
+
+import com.stockexchange.model.BookSnapshot;
+import com.stockexchange.model.Order;
+import com.stockexchange.model.RestingOrder;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+// Binary book snapshot: a fixed header followed by one 41-byte record per resting order.
+// Version 2 adds the market maker's quote ids to the header and version 3 each order's risk
+// account; version 1 and 2 files still load, their orders without an account.
+// Written to a temporary file and renamed into place, so a crash mid-write leaves the previous
+// snapshot intact and a snapshot file is either complete or absent.
+final class SnapshotFile {
+    private static final int MAGIC_V1 = 0x4F425331; // "OBS1"
+    private static final int MAGIC_V2 = 0x4F425332; // "OBS2"
+    private static final int MAGIC = 0x4F425333; // "OBS3"
+    private static final int ORDER_BYTES = 41;
+
+    private SnapshotFile() {}
+
+    static void write(Path path, String stockSymbol, BookSnapshot snapshot) {
+        byte[] symbol = stockSymbol.getBytes(StandardCharsets.UTF_8);
+        int count = snapshot.getCount();
+        ByteBuffer buffer = ByteBuffer.allocate(4 + 2 + symbol.length + 6 * 8 + 4 + count * ORDER_BYTES);
+        buffer.putInt(MAGIC);
+        buffer.putShort((short) symbol.length).put(symbol);
+        buffer.putLong(snapshot.getJournalPosition());
+        buffer.putLong(snapshot.getNextOrderId());
+        buffer.putLong(snapshot.getNextSequence());
+        buffer.putLong(snapshot.getLastTradePriceTicks());
+        buffer.putLong(snapshot.getBidQuoteId());
+        buffer.putLong(snapshot.getAskQuoteId());
+        buffer.putInt(count);
+        for (int i = 0; i < count; i++) {
+            buffer.putLong(snapshot.getId(i));
+            buffer.putLong(snapshot.getSequence(i));
+            buffer.put((byte) (snapshot.getSide(i) == Order.OrderType.BUY ? 0 : 1));
+            buffer.putLong(snapshot.getPriceTicks(i));
+            buffer.putInt(snapshot.getQuantity(i));
+            buffer.putLong(snapshot.getTimestamp(i));
+            buffer.putInt(snapshot.getAccount(i));
+        }
+        buffer.flip();
+
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot write snapshot " + temp, e);
+        }
+        try {
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot move snapshot into place " + path, e);
+        }
+    }
+
+    // Returns false, leaving the snapshot untouched, when no snapshot file exists
+    static boolean read(Path path, String stockSymbol, BookSnapshot snapshot) {
+        if (!Files.exists(path)) {
+            return false;
+        }
+        ByteBuffer buffer;
+        try {
+            buffer = ByteBuffer.wrap(Files.readAllBytes(path));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read snapshot " + path, e);
+        }
+        int magic = buffer.getInt();
+        if (magic != MAGIC && magic != MAGIC_V2 && magic != MAGIC_V1) {
+            throw new IllegalStateException("Not a book snapshot: " + path);
+        }
+        byte[] symbol = new byte[buffer.getShort()];
+        buffer.get(symbol);
+        if (!stockSymbol.equals(new String(symbol, StandardCharsets.UTF_8))) {
+            throw new IllegalStateException("Snapshot " + path + " does not belong to " + stockSymbol);
+        }
+        snapshot.clear();
+        snapshot.setJournalPosition(buffer.getLong());
+        long nextOrderId = buffer.getLong();
+        long nextSequence = buffer.getLong();
+        snapshot.setCounters(nextOrderId, nextSequence, buffer.getLong());
+        if (magic != MAGIC_V1) {
+            long bidQuoteId = buffer.getLong();
+            snapshot.setQuotes(bidQuoteId, buffer.getLong());
+        } else {
+            snapshot.setQuotes(-1, -1);
+        }
+        int count = buffer.getInt();
+        for (int i = 0; i < count; i++) {
+            snapshot.add(buffer.getLong(), buffer.getLong(),
+                    buffer.get() == 0 ? Order.OrderType.BUY : Order.OrderType.SELL,
+                    buffer.getLong(), buffer.getInt(), buffer.getLong(),
+                    magic == MAGIC ? buffer.getInt() : RestingOrder.NO_ACCOUNT);
+        }
+        return true;
+    }
+}
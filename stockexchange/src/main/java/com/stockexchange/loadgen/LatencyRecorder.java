@@ -0,0 +1,106 @@
+package com.stockexchange.loadgen;
+
+import akka.actor.typed.ActorRef;
+import akka.actor.typed.Behavior;
+import akka.actor.typed.javadsl.AbstractBehavior;
+import akka.actor.typed.javadsl.ActorContext;
+import akka.actor.typed.javadsl.Behaviors;
+import akka.actor.typed.javadsl.Receive;
+import com.stockexchange.messages.Message;
+import org.HdrHistogram.Histogram;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+// The replyTo of every generated order for one symbol. Records order-to-ack and order-to-first-fill
+// latency, both measured from the intended send time so a stalled exchange is charged for the
+// orders that should have been sent while it was stalled.
+final class LatencyRecorder extends AbstractBehavior<Message.Command> {
+    // Asks for copies of the histograms recorded so far
+    static final class Report implements Message.Command {
+        final ActorRef<Histograms> replyTo;
+        Report(ActorRef<Histograms> replyTo) {
+            this.replyTo = replyTo;
+        }
+    }
+
+    static final class Histograms {
+        final Histogram ack;
+        final Histogram fill;
+        final long fills;
+        Histograms(Histogram ack, Histogram fill, long fills) {
+            this.ack = ack;
+            this.fill = fill;
+            this.fills = fills;
+        }
+    }
+
+    // Send times by order id, kept until the order's first fill. An order older than the table
+    // that has not filled yet is forgotten; its slot is reused.
+    private static final int ORDER_TABLE_SIZE = 1 << 16;
+
+    // Internal state
+    private final SendTimes sendTimes;
+    // Highest acknowledged order id, read by the generator to pick cancels
+    private final AtomicLong lastAckedId;
+    private final long[] sentAt = new long[ORDER_TABLE_SIZE];
+    private final long[] orderIds = new long[ORDER_TABLE_SIZE];
+    private final Histogram ackLatency = new Histogram(3);
+    private final Histogram fillLatency = new Histogram(3);
+    private long fills;
+
+    static Behavior<Message.Command> create(SendTimes sendTimes, AtomicLong lastAckedId) {
+        return Behaviors.setup(context -> new LatencyRecorder(context, sendTimes, lastAckedId));
+    }
+
+    private LatencyRecorder(ActorContext<Message.Command> context, SendTimes sendTimes, AtomicLong lastAckedId) {
+        super(context);
+        this.sendTimes = sendTimes;
+        this.lastAckedId = lastAckedId;
+        Arrays.fill(orderIds, -1);
+    }
+
+    @Override
+    public Receive<Message.Command> createReceive() {
+        return newReceiveBuilder()
+                .onMessage(Message.Ack.class, this::onAck)
+                .onMessage(Message.Fill.class, this::onFill)
+                .onMessage(Report.class, this::onReport)
+                .build();
+    }
+
+    private Behavior<Message.Command> onAck(Message.Ack ack) {
+        long now = System.nanoTime();
+        if (sendTimes.size() == 0) {
+            getContext().getLog().warn("Ack for {} {} with no order outstanding", ack.symbol(), ack.order_id());
+            return this;
+        }
+        long sent = sendTimes.poll();
+        ackLatency.recordValue(Math.max(now - sent, 0));
+        if (ack.order_id() == Message.REJECTED) {
+            return this;
+        }
+
+        int slot = (int) ack.order_id() & (ORDER_TABLE_SIZE - 1);
+        sentAt[slot] = sent;
+        orderIds[slot] = ack.order_id();
+        lastAckedId.lazySet(ack.order_id());
+        return this;
+    }
+
+    private Behavior<Message.Command> onFill(Message.Fill fill) {
+        long now = System.nanoTime();
+        fills++;
+        int slot = (int) fill.order_id() & (ORDER_TABLE_SIZE - 1);
+        if (orderIds[slot] == fill.order_id()) {
+            fillLatency.recordValue(Math.max(now - sentAt[slot], 0));
+            orderIds[slot] = -1;
+        }
+        return this;
+    }
+
+    private Behavior<Message.Command> onReport(Report command) {
+        command.replyTo.tell(new Histograms(ackLatency.copy(), fillLatency.copy(), fills));
+        return this;
+    }
+}
@@ -0,0 +1,365 @@
+package com.stockexchange.loadgen;
+
+import akka.actor.typed.ActorRef;
+import akka.actor.typed.ActorSystem;
+import akka.actor.typed.Props;
+import akka.actor.typed.javadsl.AskPattern;
+import com.stockexchange.actors.StockExchangeActor;
+import com.stockexchange.gateway.GatewayClient;
+import com.stockexchange.gateway.OrderGateway;
+import com.stockexchange.ingest.OrderIngest;
+import com.stockexchange.ingest.OrderRing;
+import com.stockexchange.ingest.OrderSlot;
+import com.stockexchange.messages.Message;
+import com.stockexchange.model.Order;
+import com.stockexchange.model.SymbolTable;
+import com.typesafe.config.Config;
+import org.HdrHistogram.Histogram;
+
+import java.io.PrintStream;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+// Open-loop load: orders go out on a fixed schedule whether or not earlier ones have been
+// answered, and latency is measured from when each order was due rather than when it was actually
+// sent, so a stall shows up in the percentiles instead of silently lowering the offered rate.
+public class LoadGenerator {
+    // Sends per symbol that may be waiting for their Ack
+    private static final int OUTSTANDING_PER_SYMBOL = 1 << 20;
+    private static final int READY_ATTEMPTS = 30;
+    private static final Duration ASK_TIMEOUT = Duration.ofSeconds(1);
+    private static final long DRAIN_TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(10);
+    private static final double[] PERCENTILES = {50, 90, 99, 99.9, 99.99};
+    private static final String[] PERCENTILE_NAMES = {"p50", "p90", "p99", "p99.9", "p99.99"};
+    private static final int GATEWAY_BUFFER_SIZE = 64 * 1024;
+
+    private final double rate;
+    private final long durationNanos;
+    private final int symbolCount;
+    private final double zipfExponent;
+    private final double buyWeight;
+    private final double sellWeight;
+    private final double cancelWeight;
+    private final double priceStddevTicks;
+    private final int maxQuantity;
+    private final int cancelWindow;
+    private final int accounts;
+    private final boolean viaGateway;
+
+    public LoadGenerator(double rate, long durationNanos, int symbolCount, double zipfExponent,
+                         double buyWeight, double sellWeight, double cancelWeight,
+                         double priceStddevTicks, int maxQuantity, int cancelWindow, int accounts,
+                         boolean viaGateway) {
+        if (rate <= 0 || symbolCount <= 0 || maxQuantity <= 0 || cancelWindow <= 0 || accounts <= 0) {
+            throw new IllegalArgumentException("Rate, symbols, quantity, cancel-window and accounts must be positive");
+        }
+        if (buyWeight + sellWeight <= 0) {
+            throw new IllegalArgumentException("The order mix needs buys or sells");
+        }
+        this.rate = rate;
+        this.durationNanos = durationNanos;
+        this.symbolCount = symbolCount;
+        this.zipfExponent = zipfExponent;
+        this.buyWeight = buyWeight;
+        this.sellWeight = sellWeight;
+        this.cancelWeight = cancelWeight;
+        this.priceStddevTicks = priceStddevTicks;
+        this.maxQuantity = maxQuantity;
+        this.cancelWindow = cancelWindow;
+        this.accounts = accounts;
+        this.viaGateway = viaGateway;
+    }
+
+    // Null when the load generator is disabled
+    public static LoadGenerator fromConfig(Config config) {
+        if (!config.getBoolean("enabled")) {
+            return null;
+        }
+        return new LoadGenerator(
+                config.getDouble("rate"),
+                config.getDuration("duration", TimeUnit.NANOSECONDS),
+                config.getInt("symbols"),
+                config.getDouble("zipf-exponent"),
+                config.getDouble("mix.buy"),
+                config.getDouble("mix.sell"),
+                config.getDouble("mix.cancel"),
+                config.getDouble("price-stddev-ticks"),
+                config.getInt("quantity"),
+                config.getInt("cancel-window"),
+                config.getInt("accounts"),
+                config.getBoolean("via-gateway"));
+    }
+
+    // Generated symbol names; the first is the most popular
+    public List<String> symbols() {
+        List<String> symbols = new ArrayList<>(symbolCount);
+        for (int i = 1; i <= symbolCount; i++) {
+            symbols.add(String.format("SYM%03d", i));
+        }
+        return symbols;
+    }
+
+    // Drives the exchange from the calling thread for the configured duration, then prints the
+    // latency percentiles. The symbols must be registered with midTicks[i] as the price of
+    // symbols().get(i). Orders go through the ingest rings when there are any, else as ExecuteTrade
+    // stamped with the symbol's id from the exchange's SymbolTable. With via-gateway they are sent
+    // over one loopback connection to the gateway instead, so the latency includes TCP and the codec.
+    public void run(ActorSystem<Message.Command> exchange, OrderIngest ingest, SymbolTable symbolTable,
+                    OrderGateway gateway, long[] midTicks, PrintStream out) {
+        if (viaGateway && gateway == null) {
+            throw new IllegalStateException("loadgen.via-gateway needs stockexchange.gateway.enabled");
+        }
+        List<String> symbols = symbols();
+        SendTimes[] sendTimes = new SendTimes[symbolCount];
+        AtomicLong[] lastAckedIds = new AtomicLong[symbolCount];
+        List<ActorRef<Message.Command>> recorders = new ArrayList<>(symbolCount);
+        for (int i = 0; i < symbolCount; i++) {
+            sendTimes[i] = new SendTimes(OUTSTANDING_PER_SYMBOL);
+            lastAckedIds[i] = new AtomicLong(-1);
+            recorders.add(exchange.systemActorOf(LatencyRecorder.create(sendTimes[i], lastAckedIds[i]),
+                    "loadgen-" + symbols.get(i), Props.empty()));
+        }
+        OrderRing[] rings = new OrderRing[symbolCount];
+        int[] symbolIds = new int[symbolCount];
+        for (int i = 0; i < symbolCount; i++) {
+            awaitBook(exchange, symbols.get(i));
+            rings[i] = ingest != null ? ingest.ring(symbols.get(i)) : null;
+            symbolIds[i] = symbolTable.idOf(symbols.get(i));
+            if (symbolIds[i] != SymbolTable.UNKNOWN) {
+                // The table's own instance, which the exchange compares stamped ids against
+                symbols.set(i, symbolTable.symbol(symbolIds[i]));
+            }
+        }
+        GatewayClient client = viaGateway
+                ? new GatewayClient(gateway.getAddress(), GATEWAY_BUFFER_SIZE, new GatewayReplies(symbols, recorders))
+                : null;
+
+        double[] popularity = zipfCdf(symbolCount, zipfExponent);
+        double totalWeight = buyWeight + sellWeight + cancelWeight;
+        Random random = new Random();
+        long total = (long) (rate * durationNanos / 1e9);
+        double intervalNanos = 1e9 / rate;
+        long orders = 0;
+        long cancels = 0;
+        long skipped = 0;
+
+        String transport = (client != null ? "gateway to " : "") + (ingest != null ? "ring" : "mailbox");
+        out.printf("Load run: %d symbols, %.0f orders/s for %d s via %s%n",
+                symbolCount, rate, TimeUnit.NANOSECONDS.toSeconds(durationNanos), transport);
+        long start = System.nanoTime();
+        for (long n = 0; n < total; n++) {
+            long intended = start + (long) (n * intervalNanos);
+            awaitTime(intended);
+
+            int s = pick(popularity, random.nextDouble());
+            double draw = random.nextDouble() * totalWeight;
+            if (draw < cancelWeight) {
+                long lastAcked = lastAckedIds[s].get();
+                if (lastAcked >= 0) {
+                    long orderId = Math.max(lastAcked - random.nextInt(cancelWindow), 0);
+                    if (client != null) {
+                        client.cancel((int) n, orderId, symbols.get(s));
+                        client.flush();
+                    } else {
+                        exchange.tell(new Message.Cancel((int) n, orderId, symbols.get(s)));
+                    }
+                    cancels++;
+                    continue;
+                }
+                // Nothing to cancel yet; send an order instead
+                draw = cancelWeight + random.nextDouble() * (buyWeight + sellWeight);
+            }
+            Order.OrderType side = draw < cancelWeight + buyWeight ? Order.OrderType.BUY : Order.OrderType.SELL;
+            long priceTicks = Math.max(midTicks[s] + Math.round(random.nextGaussian() * priceStddevTicks), 1);
+            int quantity = 1 + random.nextInt(maxQuantity);
+            int account = random.nextInt(accounts);
+
+            // Acks are matched to send times in order, so an order that cannot be queued is not sent
+            if (!sendTimes[s].offer(intended)) {
+                skipped++;
+                continue;
+            }
+            if (client != null) {
+                client.order((int) n, side == Order.OrderType.BUY ? Message.TradeType.BUY : Message.TradeType.SELL,
+                        priceTicks, quantity, symbols.get(s), account);
+                client.flush();
+            } else {
+                send(exchange, rings[s], symbolIds[s], symbols.get(s), side, priceTicks, quantity, account,
+                        recorders.get(s));
+            }
+            orders++;
+        }
+        long sendNanos = System.nanoTime() - start;
+
+        // Wait for outstanding Acks; fills of orders still resting are not waited for
+        long deadline = System.nanoTime() + DRAIN_TIMEOUT_NANOS;
+        while (outstanding(sendTimes) > 0 && System.nanoTime() < deadline) {
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(10));
+        }
+        long unacknowledged = outstanding(sendTimes);
+        if (client != null) {
+            client.close();
+        }
+
+        Histogram ackLatency = new Histogram(3);
+        Histogram fillLatency = new Histogram(3);
+        long fills = 0;
+        for (ActorRef<Message.Command> recorder : recorders) {
+            LatencyRecorder.Histograms histograms = ask(exchange, recorder);
+            ackLatency.add(histograms.ack);
+            fillLatency.add(histograms.fill);
+            fills += histograms.fills;
+        }
+
+        out.printf("Sent %d orders and %d cancels in %.1f s (%.0f/s), %d skipped, %d unacknowledged, %d fills%n",
+                orders, cancels, sendNanos / 1e9, (orders + cancels) * 1e9 / sendNanos, skipped, unacknowledged, fills);
+        print(out, "Order to ack", ackLatency);
+        print(out, "Order to first fill", fillLatency);
+    }
+
+    private static void send(ActorSystem<Message.Command> exchange, OrderRing ring, int symbolId, String symbol,
+                             Order.OrderType side, long priceTicks, int quantity, int account,
+                             ActorRef<Message.Command> replyTo) {
+        if (ring == null) {
+            exchange.tell(new StockExchangeActor.ExecuteTrade(
+                    new Order(symbolId, symbol, account, quantity, priceTicks, side), replyTo));
+            return;
+        }
+        // Waits for space rather than falling back to the mailbox, which would reorder the Acks
+        long sequence = ring.claim();
+        OrderSlot slot = ring.slot(sequence);
+        slot.side = side;
+        slot.priceTicks = priceTicks;
+        slot.quantity = quantity;
+        slot.timestamp = System.nanoTime();
+        slot.account = account;
+        slot.replyTo = replyTo;
+        ring.publish(sequence);
+    }
+
+    // Replies read off the gateway connection, passed to the symbol's recorder, which matches
+    // fills to its own orders by id
+    private static final class GatewayReplies implements Consumer<Message.Command> {
+        private final Map<String, ActorRef<Message.Command>> recorders = new HashMap<>();
+
+        GatewayReplies(List<String> symbols, List<ActorRef<Message.Command>> recorders) {
+            for (int i = 0; i < symbols.size(); i++) {
+                this.recorders.put(symbols.get(i), recorders.get(i));
+            }
+        }
+
+        // Called on the client's reader thread
+        @Override
+        public void accept(Message.Command reply) {
+            String symbol;
+            if (reply instanceof Message.Ack ack) {
+                symbol = ack.symbol();
+            } else if (reply instanceof Message.Fill fill) {
+                symbol = fill.symbol();
+            } else {
+                return;
+            }
+            ActorRef<Message.Command> recorder = recorders.get(symbol);
+            if (recorder != null) {
+                recorder.tell(reply);
+            }
+        }
+    }
+
+    // Parks while the wait is long and yields close to the deadline; parking is too coarse to hit
+    // sub-millisecond intervals on its own
+    private static void awaitTime(long deadline) {
+        long remaining;
+        while ((remaining = deadline - System.nanoTime()) > 0) {
+            if (remaining > 200_000) {
+                LockSupport.parkNanos(remaining - 100_000);
+            } else {
+                Thread.yield();
+            }
+        }
+    }
+
+    // The router only answers GetDepth once the symbol's book is running
+    private static void awaitBook(ActorSystem<Message.Command> exchange, String symbol) {
+        for (int attempt = 0; attempt < READY_ATTEMPTS; attempt++) {
+            try {
+                AskPattern.<Message.Command, Message.Depth>ask(exchange,
+                        replyTo -> new StockExchangeActor.GetDepth(symbol, 1, replyTo),
+                        ASK_TIMEOUT, exchange.scheduler()).toCompletableFuture().get();
+                return;
+            } catch (ExecutionException e) {
+                if (!(e.getCause() instanceof TimeoutException)) {
+                    throw new IllegalStateException("Book for " + symbol + " failed to start", e.getCause());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted waiting for " + symbol, e);
+            }
+        }
+        throw new IllegalStateException("Book for " + symbol + " did not start");
+    }
+
+    private static LatencyRecorder.Histograms ask(ActorSystem<Message.Command> exchange, ActorRef<Message.Command> recorder) {
+        try {
+            return AskPattern.<Message.Command, LatencyRecorder.Histograms>ask(recorder,
+                    LatencyRecorder.Report::new, ASK_TIMEOUT, exchange.scheduler()).toCompletableFuture().get();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("No report from " + recorder.path().name(), e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted waiting for " + recorder.path().name(), e);
+        }
+    }
+
+    private static long outstanding(SendTimes[] sendTimes) {
+        long outstanding = 0;
+        for (SendTimes times : sendTimes) {
+            outstanding += times.size();
+        }
+        return outstanding;
+    }
+
+    // Cumulative Zipf distribution: symbol k (from 0) is picked in proportion to 1 / (k + 1)^exponent
+    static double[] zipfCdf(int count, double exponent) {
+        double[] cdf = new double[count];
+        double sum = 0;
+        for (int k = 0; k < count; k++) {
+            sum += 1 / Math.pow(k + 1, exponent);
+            cdf[k] = sum;
+        }
+        for (int k = 0; k < count; k++) {
+            cdf[k] /= sum;
+        }
+        return cdf;
+    }
+
+    static int pick(double[] cdf, double uniform) {
+        int index = Arrays.binarySearch(cdf, uniform);
+        if (index < 0) {
+            index = -index - 1;
+        }
+        return Math.min(index, cdf.length - 1);
+    }
+
+    private static void print(PrintStream out, String name, Histogram histogram) {
+        StringBuilder line = new StringBuilder(name).append(" (us, n=").append(histogram.getTotalCount()).append("):");
+        if (histogram.getTotalCount() > 0) {
+            for (int i = 0; i < PERCENTILES.length; i++) {
+                line.append(String.format(" %s=%.1f", PERCENTILE_NAMES[i], histogram.getValueAtPercentile(PERCENTILES[i]) / 1000.0));
+            }
+            line.append(String.format(" max=%.1f", histogram.getMaxValue() / 1000.0));
+        }
+        out.println(line);
+    }
+}
@@ -0,0 +1,44 @@
+package com.stockexchange.loadgen;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+// Single-producer single-consumer queue of intended send times. The generator pushes one per
+// order and the symbol's recorder pops one per Ack; a book acknowledges a sender's orders in the
+// order it sent them, so the head is always the time of the order being acknowledged.
+final class SendTimes {
+    private final long[] times;
+    private final int mask;
+    private final AtomicLong head = new AtomicLong();
+    private final AtomicLong tail = new AtomicLong();
+
+    SendTimes(int capacity) {
+        if (Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Capacity must be a power of two: " + capacity);
+        }
+        this.times = new long[capacity];
+        this.mask = capacity - 1;
+    }
+
+    // Producer side; false when the recorder has fallen a full queue behind
+    boolean offer(long nanos) {
+        long t = tail.get();
+        if (t - head.get() >= times.length) {
+            return false;
+        }
+        times[(int) t & mask] = nanos;
+        tail.lazySet(t + 1);
+        return true;
+    }
+
+    // Consumer side; only valid when size() > 0
+    long poll() {
+        long h = head.get();
+        long nanos = times[(int) h & mask];
+        head.lazySet(h + 1);
+        return nanos;
+    }
+
+    long size() {
+        return tail.get() - head.get();
+    }
+}
@@ -0,0 +1,53 @@
+package com.stockexchange.marketdata;
+
+import akka.actor.typed.ActorSystem;
+import akka.actor.typed.Extension;
+import akka.actor.typed.ExtensionId;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Latest PriceSnapshot of every symbol, readable from any thread without a message to the
+// exchange. Each book publishes by swapping a volatile reference after it processes a message,
+// so a reader always sees one whole update. Readers that poll should keep the Cell.
+public class PriceBoard implements Extension {
+    public static final ExtensionId<PriceBoard> ID = new ExtensionId<PriceBoard>() {
+        @Override
+        public PriceBoard createExtension(ActorSystem<?> system) {
+            return new PriceBoard();
+        }
+    };
+
+    // One per symbol; written only by the symbol's OrderBookActor
+    public static final class Cell {
+        private volatile PriceSnapshot current;
+
+        // Null until the book has published
+        public PriceSnapshot get() {
+            return current;
+        }
+
+        public void publish(PriceSnapshot snapshot) {
+            current = snapshot;
+        }
+    }
+
+    private final Map<String, Cell> cells = new ConcurrentHashMap<>();
+
+    public static PriceBoard get(ActorSystem<?> system) {
+        return system.registerExtension(ID);
+    }
+
+    private PriceBoard() {
+    }
+
+    public Cell cell(String stockSymbol) {
+        return cells.computeIfAbsent(stockSymbol, symbol -> new Cell());
+    }
+
+    // Null for a symbol that has no book or whose book has not published yet
+    public PriceSnapshot snapshot(String stockSymbol) {
+        Cell cell = cells.get(stockSymbol);
+        return cell != null ? cell.get() : null;
+    }
+}
@@ -0,0 +1,48 @@
+package com.stockexchange.marketdata;
+
+// Immutable top of book and last trade for one symbol, as of one book update. Prices are in
+// ticks and 0 means none: no bid, no ask, or no trade yet.
+public final class PriceSnapshot {
+    private final String symbol;
+    private final long version;
+    private final long lastPriceTicks;
+    private final long bidPriceTicks;
+    private final long bidQuantity;
+    private final long askPriceTicks;
+    private final long askQuantity;
+    private final long volume;
+    private final long timestamp;
+
+    public PriceSnapshot(String symbol, long version, long lastPriceTicks, long bidPriceTicks, long bidQuantity,
+                         long askPriceTicks, long askQuantity, long volume, long timestamp) {
+        this.symbol = symbol;
+        this.version = version;
+        this.lastPriceTicks = lastPriceTicks;
+        this.bidPriceTicks = bidPriceTicks;
+        this.bidQuantity = bidQuantity;
+        this.askPriceTicks = askPriceTicks;
+        this.askQuantity = askQuantity;
+        this.volume = volume;
+        this.timestamp = timestamp;
+    }
+
+    @Override
+    public String toString() {
+        return symbol + " v" + version + " last=" + lastPriceTicks + " bid=" + bidQuantity + "@" + bidPriceTicks
+                + " ask=" + askQuantity + "@" + askPriceTicks + " volume=" + volume;
+    }
+
+    // Getters
+    public String getSymbol() { return symbol; }
+    // Increases with every published change; equals the sequence of the matching Message.TopOfBook
+    public long getVersion() { return version; }
+    public long getLastPriceTicks() { return lastPriceTicks; }
+    public long getBidPriceTicks() { return bidPriceTicks; }
+    public long getBidQuantity() { return bidQuantity; }
+    public long getAskPriceTicks() { return askPriceTicks; }
+    public long getAskQuantity() { return askQuantity; }
+    // Shares traded since the book was loaded, including orders replayed from the journal
+    public long getVolume() { return volume; }
+    // Monotonic nanoTime of the update, only comparable within this JVM
+    public long getTimestamp() { return timestamp; }
+}
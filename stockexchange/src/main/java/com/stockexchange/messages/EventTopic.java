@@ -9,7 +9,10 @@ public enum EventTopic {
     PSA("psasystem"),
     ENERGY("energy"),
     ORDERSTATUS("orderstatus"),
-    FILLS("fills");
+    FILLS("fills"),
+    MARKETDATA("marketdata"),
+    DEPTH("depth"),
+    PRICES("prices");
 
     private static final Map<String, EventTopic> mValueMap;
     private final String topic;
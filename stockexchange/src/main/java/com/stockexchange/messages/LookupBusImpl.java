@@ -4,9 +4,43 @@ package com.stockexchange.messages;
 import akka.actor.typed.ActorRef;
 import akka.event.japi.LookupEventBus;
 
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
 
 public class LookupBusImpl extends LookupEventBus<MsgEnvelope, ActorRef, String> {
 
+    // Subscribers that joined with a buffering policy; everyone else gets a plain tell per event
+    private final Map<ActorRef<?>, SubscriberOutbox> outboxes = new ConcurrentHashMap<>();
+
+    // Subscribes with backpressure: the subscriber holds at most one undelivered event in its
+    // mailbox and must call ack after handling each one; until then events are buffered under
+    // the policy. The policy and capacity apply to all of the subscriber's topics.
+    public boolean subscribe(ActorRef<? super MsgEnvelope> subscriber, String topic, SubscriberPolicy policy,
+                             int capacity) {
+        outboxes.putIfAbsent(subscriber, new SubscriberOutbox(policy, capacity));
+        return subscribe(subscriber, topic);
+    }
+
+    // Releases the next buffered event, if any, to a policy subscriber
+    public void ack(ActorRef<? super MsgEnvelope> subscriber) {
+        SubscriberOutbox outbox = outboxes.get(subscriber);
+        if (outbox != null) {
+            MsgEnvelope next = outbox.next();
+            if (next != null) {
+                subscriber.tell(next);
+            }
+        }
+    }
+
+    // The bus's subscriber type is the raw ActorRef, so the override has to take one too
+    @Override
+    @SuppressWarnings("rawtypes")
+    public void unsubscribe(ActorRef subscriber) {
+        super.unsubscribe(subscriber);
+        outboxes.remove(subscriber);
+    }
+
     // is used for extracting the classifier from the incoming events
     @Override
     public String classify(MsgEnvelope event) {
@@ -17,7 +51,23 @@ public class LookupBusImpl extends LookupEventBus<MsgEnvelope, ActorRef, String>
     // for the event’s classifier
     @Override
     public void publish(MsgEnvelope event, ActorRef subscriber) {
-        subscriber.tell(event);
+        // Every subscriber takes MsgEnvelope; the bus just cannot say so in its type
+        @SuppressWarnings("unchecked")
+        ActorRef<? super MsgEnvelope> target = subscriber;
+        SubscriberOutbox outbox = outboxes.get(target);
+        if (outbox == null) {
+            target.tell(event);
+            return;
+        }
+        MsgEnvelope deliver = outbox.offer(event);
+        if (deliver == SubscriberOutbox.OVERFLOW) {
+            // Disconnect policy: stop buffering for a consumer that cannot keep up
+            int pending = outbox.pending();
+            unsubscribe(target);
+            target.tell(new MsgEnvelope(event.topic, new Message.SlowConsumer(event.topic, pending)));
+        } else if (deliver != null) {
+            target.tell(deliver);
+        }
     }
 
     // must define a full order over the subscribers, expressed as expected from
@@ -5,14 +5,13 @@ import java.util.Map;
 import java.util.HashMap;
 import java.util.Collections;
 
-import java.math.BigDecimal;
-import java.time.Instant;
-import java.util.UUID;
-
 
 public final class Message {
     public interface Command extends Serializable{}
 
+    // Order id of the Ack for an order that was not accepted
+    public static final long REJECTED = -1;
+
     public enum TradeType {
         BUY("BUY"), SELL("SELL"), MATCH("MATCH");
 
@@ -47,24 +46,65 @@ public final class Message {
 
     }
 
-    public record Order(int id, TradeType action, BigDecimal price, int quantity, String symbol) implements  Command {
+    // account is the dense risk account the order is charged to
+    public record Order(int id, TradeType action, long price, int quantity, String symbol, int account) implements  Command {
     }
 
-    public record Fill(int id, int order_id, BigDecimal price, int quantity) implements  Command {
+    // Order ids are per symbol, so the symbol is needed to tell which order filled
+    public record Fill(int id, long order_id, String symbol, long price, int quantity) implements  Command {
     }
 
-    public record Cancel(int id, int order_id) implements Command{
+    public record Ack(long order_id, String symbol) implements Command {
     }
 
+    public record Cancel(int id, long order_id, String symbol) implements Command{
+    }
 
-    public record Trade(String id, Instant timestamp, String stockSymbol, int quantity, BigDecimal price, TradeType type) implements Command{
+    public record Amend(int id, long order_id, String symbol, int quantity) implements Command{
+    }
 
-        public Trade(String stockSymbol, int quantity, BigDecimal price, TradeType type) {
-            this(UUID.randomUUID().toString(),
-                    Instant.now(),
-                    stockSymbol,   quantity,   price,   type
-            );
-        }
+    // Best bid/offer and last trade price of one symbol; zero price means that side is empty.
+    // sequence increases with every change, so a subscriber can tell it skipped conflated states.
+    public record TopOfBook(String symbol, long sequence, long bidPrice, long bidQuantity,
+                            long askPrice, long askQuantity, long lastPrice) implements Command {
+    }
+
+    // Up to the requested number of levels per side, best first. sequence is that of the last
+    // DepthDelta applied, so deltas with a higher sequence bring the copy up to date.
+    public record Depth(String symbol, long sequence, long[] bidPrices, long[] bidQuantities,
+                        long[] askPrices, long[] askQuantities) implements Command {
+    }
+
+    // New aggregate quantity at one price level; 0 removes the level, if the client has it.
+    // sequence increases by one per delta and symbol, so a gap means a missed delta and the local
+    // book must be refetched.
+    public record DepthDelta(String symbol, long sequence, TradeType side, long price, long quantity) implements Command {
+    }
+
+    // Simulated prices that moved on one tick of the shared price driver; symbols[i] is now at
+    // priceTicks[i]. Symbols whose price did not change are left out.
+    public record SimulatedPrices(long tick, String[] symbols, long[] priceTicks) implements Command {
+    }
+
+    // Trades of one symbol in a time window, oldest first, one array per column. Timestamps are
+    // epoch nanoseconds; aggressors[i] is the side of the incoming order in trade i.
+    public record Trades(String symbol, long[] timestamps, long[] prices, int[] quantities,
+                         TradeType[] aggressors) implements Command {
+    }
+
+    // OHLCV bars of one interval in a time window, oldest first; starts are epoch nanoseconds and
+    // vwaps are in fractional ticks. Intervals without trades have no bar.
+    public record Bars(String symbol, long intervalNanos, long[] starts, long[] opens, long[] highs, long[] lows,
+                       long[] closes, long[] volumes, double[] vwaps) implements Command {
+    }
+
+    // Delivered once to a subscriber the bus disconnected for falling too far behind
+    public record SlowConsumer(String topic, int pending) implements Command {
+    }
+
+
+    // timestamp is in epoch nanoseconds
+    public record Trade(long id, long timestamp, String stockSymbol, int quantity, long price, TradeType type) implements Command{
     }
 
 }
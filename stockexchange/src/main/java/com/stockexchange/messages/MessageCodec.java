@@ -0,0 +1,358 @@
+package com.stockexchange.messages;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+// Fixed-layout binary encoding of the Message records. Every message is a 4-byte header
+// [short templateId][short blockLength] followed by a block whose fields sit at fixed offsets.
+// Symbols are 8 ASCII bytes padded with zeros. Values are little-endian: wrap buffers in that order.
+//
+// The flyweights read and write fields in place over a ByteBuffer, so a message can be built or
+// inspected without creating the record; encode and decode convert to and from the records.
+public final class MessageCodec {
+    public static final ByteOrder BYTE_ORDER = ByteOrder.LITTLE_ENDIAN;
+    public static final int HEADER_LENGTH = 4;
+    public static final int SYMBOL_LENGTH = 8;
+
+    private MessageCodec() {}
+
+    public static int templateId(ByteBuffer buffer, int offset) {
+        return buffer.getShort(offset);
+    }
+
+    public static int blockLength(ByteBuffer buffer, int offset) {
+        return buffer.getShort(offset + 2);
+    }
+
+    // Encoded size of a message including its header, or -1 if the codec does not cover it
+    public static int encodedLength(Object message) {
+        if (message instanceof Message.Order) return HEADER_LENGTH + OrderFlyweight.BLOCK_LENGTH;
+        if (message instanceof Message.Fill) return HEADER_LENGTH + FillFlyweight.BLOCK_LENGTH;
+        if (message instanceof Message.Ack) return HEADER_LENGTH + AckFlyweight.BLOCK_LENGTH;
+        if (message instanceof Message.Cancel) return HEADER_LENGTH + CancelFlyweight.BLOCK_LENGTH;
+        if (message instanceof Message.Amend) return HEADER_LENGTH + AmendFlyweight.BLOCK_LENGTH;
+        if (message instanceof Message.Trade) return HEADER_LENGTH + TradeFlyweight.BLOCK_LENGTH;
+        if (message instanceof Message.TopOfBook) return HEADER_LENGTH + TopOfBookFlyweight.BLOCK_LENGTH;
+        if (message instanceof Message.DepthDelta) return HEADER_LENGTH + DepthDeltaFlyweight.BLOCK_LENGTH;
+        return -1;
+    }
+
+    // Writes the message at offset and returns the number of bytes written
+    public static int encode(Object message, ByteBuffer buffer, int offset) {
+        if (message instanceof Message.Order order) {
+            new OrderFlyweight().wrapForEncode(buffer, offset)
+                    .id(order.id()).action(order.action()).price(order.price())
+                    .quantity(order.quantity()).symbol(order.symbol()).account(order.account());
+        } else if (message instanceof Message.Fill fill) {
+            new FillFlyweight().wrapForEncode(buffer, offset)
+                    .id(fill.id()).orderId(fill.order_id()).symbol(fill.symbol())
+                    .price(fill.price()).quantity(fill.quantity());
+        } else if (message instanceof Message.Ack ack) {
+            new AckFlyweight().wrapForEncode(buffer, offset)
+                    .orderId(ack.order_id()).symbol(ack.symbol());
+        } else if (message instanceof Message.Cancel cancel) {
+            new CancelFlyweight().wrapForEncode(buffer, offset)
+                    .id(cancel.id()).orderId(cancel.order_id()).symbol(cancel.symbol());
+        } else if (message instanceof Message.Amend amend) {
+            new AmendFlyweight().wrapForEncode(buffer, offset)
+                    .id(amend.id()).orderId(amend.order_id()).symbol(amend.symbol()).quantity(amend.quantity());
+        } else if (message instanceof Message.Trade trade) {
+            new TradeFlyweight().wrapForEncode(buffer, offset)
+                    .id(trade.id()).timestamp(trade.timestamp()).symbol(trade.stockSymbol())
+                    .quantity(trade.quantity()).price(trade.price()).type(trade.type());
+        } else if (message instanceof Message.TopOfBook top) {
+            new TopOfBookFlyweight().wrapForEncode(buffer, offset)
+                    .symbol(top.symbol()).sequence(top.sequence())
+                    .bidPrice(top.bidPrice()).bidQuantity(top.bidQuantity())
+                    .askPrice(top.askPrice()).askQuantity(top.askQuantity())
+                    .lastPrice(top.lastPrice());
+        } else if (message instanceof Message.DepthDelta delta) {
+            new DepthDeltaFlyweight().wrapForEncode(buffer, offset)
+                    .symbol(delta.symbol()).sequence(delta.sequence()).side(delta.side())
+                    .price(delta.price()).quantity(delta.quantity());
+        } else {
+            throw new IllegalArgumentException("No binary encoding for " + message.getClass().getName());
+        }
+        return encodedLength(message);
+    }
+
+    // Materializes the record encoded at offset
+    public static Object decode(ByteBuffer buffer, int offset) {
+        int templateId = templateId(buffer, offset);
+        switch (templateId) {
+            case OrderFlyweight.TEMPLATE_ID -> {
+                OrderFlyweight order = new OrderFlyweight().wrap(buffer, offset);
+                return new Message.Order(order.id(), order.action(), order.price(), order.quantity(), order.symbol(),
+                        order.account());
+            }
+            case FillFlyweight.TEMPLATE_ID -> {
+                FillFlyweight fill = new FillFlyweight().wrap(buffer, offset);
+                return new Message.Fill(fill.id(), fill.orderId(), fill.symbol(), fill.price(), fill.quantity());
+            }
+            case AckFlyweight.TEMPLATE_ID -> {
+                AckFlyweight ack = new AckFlyweight().wrap(buffer, offset);
+                return new Message.Ack(ack.orderId(), ack.symbol());
+            }
+            case CancelFlyweight.TEMPLATE_ID -> {
+                CancelFlyweight cancel = new CancelFlyweight().wrap(buffer, offset);
+                return new Message.Cancel(cancel.id(), cancel.orderId(), cancel.symbol());
+            }
+            case AmendFlyweight.TEMPLATE_ID -> {
+                AmendFlyweight amend = new AmendFlyweight().wrap(buffer, offset);
+                return new Message.Amend(amend.id(), amend.orderId(), amend.symbol(), amend.quantity());
+            }
+            case TradeFlyweight.TEMPLATE_ID -> {
+                TradeFlyweight trade = new TradeFlyweight().wrap(buffer, offset);
+                return new Message.Trade(trade.id(), trade.timestamp(), trade.symbol(),
+                        trade.quantity(), trade.price(), trade.type());
+            }
+            case TopOfBookFlyweight.TEMPLATE_ID -> {
+                TopOfBookFlyweight top = new TopOfBookFlyweight().wrap(buffer, offset);
+                return new Message.TopOfBook(top.symbol(), top.sequence(), top.bidPrice(), top.bidQuantity(),
+                        top.askPrice(), top.askQuantity(), top.lastPrice());
+            }
+            case DepthDeltaFlyweight.TEMPLATE_ID -> {
+                DepthDeltaFlyweight delta = new DepthDeltaFlyweight().wrap(buffer, offset);
+                return new Message.DepthDelta(delta.symbol(), delta.sequence(), delta.side(), delta.price(), delta.quantity());
+            }
+            default -> throw new IllegalArgumentException("Unknown message template " + templateId);
+        }
+    }
+
+    // A reusable view over one encoded message; wrap it over another offset to move on
+    abstract static class Flyweight<T extends Flyweight<T>> {
+        ByteBuffer buffer;
+        // Offset of the block, just past the header
+        int offset;
+
+        abstract int templateId();
+
+        abstract int blockLength();
+
+        @SuppressWarnings("unchecked")
+        public T wrap(ByteBuffer buffer, int offset) {
+            this.buffer = buffer;
+            this.offset = offset + HEADER_LENGTH;
+            return (T) this;
+        }
+
+        // Writes the header and positions the flyweight for setting fields
+        public T wrapForEncode(ByteBuffer buffer, int offset) {
+            buffer.putShort(offset, (short) templateId());
+            buffer.putShort(offset + 2, (short) blockLength());
+            return wrap(buffer, offset);
+        }
+
+        String getSymbol(int at) {
+            int length = 0;
+            while (length < SYMBOL_LENGTH && buffer.get(offset + at + length) != 0) {
+                length++;
+            }
+            char[] chars = new char[length];
+            for (int i = 0; i < length; i++) {
+                chars[i] = (char) buffer.get(offset + at + i);
+            }
+            return new String(chars);
+        }
+
+        void putSymbol(int at, String symbol) {
+            if (symbol.length() > SYMBOL_LENGTH) {
+                throw new IllegalArgumentException("Symbol longer than " + SYMBOL_LENGTH + " characters: " + symbol);
+            }
+            for (int i = 0; i < SYMBOL_LENGTH; i++) {
+                char c = i < symbol.length() ? symbol.charAt(i) : 0;
+                if (c > 0x7F) {
+                    throw new IllegalArgumentException("Symbol is not ASCII: " + symbol);
+                }
+                buffer.put(offset + at + i, (byte) c);
+            }
+        }
+
+        // The symbol's 8 bytes as one number: distinct symbols give distinct keys, so a receiver can
+        // look the symbol up in a primitive map without creating a String
+        long symbolKey(int at) {
+            return buffer.getLong(offset + at);
+        }
+
+        // Compares in place, so a receiver can route on the symbol without creating a String
+        boolean symbolEquals(int at, String symbol) {
+            if (symbol.length() > SYMBOL_LENGTH) {
+                return false;
+            }
+            for (int i = 0; i < SYMBOL_LENGTH; i++) {
+                char c = i < symbol.length() ? symbol.charAt(i) : 0;
+                if (buffer.get(offset + at + i) != (byte) c) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    public static final class OrderFlyweight extends Flyweight<OrderFlyweight> {
+        public static final int TEMPLATE_ID = 1;
+        public static final int BLOCK_LENGTH = 29;
+
+        int templateId() { return TEMPLATE_ID; }
+        int blockLength() { return BLOCK_LENGTH; }
+
+        public int id() { return buffer.getInt(offset); }
+        public Message.TradeType action() { return Message.TradeType.values()[buffer.get(offset + 4)]; }
+        public long price() { return buffer.getLong(offset + 5); }
+        public int quantity() { return buffer.getInt(offset + 13); }
+        public String symbol() { return getSymbol(17); }
+        public boolean symbolEquals(String symbol) { return symbolEquals(17, symbol); }
+        public long symbolKey() { return symbolKey(17); }
+        public int account() { return buffer.getInt(offset + 25); }
+
+        public OrderFlyweight id(int id) { buffer.putInt(offset, id); return this; }
+        public OrderFlyweight action(Message.TradeType action) { buffer.put(offset + 4, (byte) action.ordinal()); return this; }
+        public OrderFlyweight price(long price) { buffer.putLong(offset + 5, price); return this; }
+        public OrderFlyweight quantity(int quantity) { buffer.putInt(offset + 13, quantity); return this; }
+        public OrderFlyweight symbol(String symbol) { putSymbol(17, symbol); return this; }
+        public OrderFlyweight account(int account) { buffer.putInt(offset + 25, account); return this; }
+    }
+
+    public static final class FillFlyweight extends Flyweight<FillFlyweight> {
+        public static final int TEMPLATE_ID = 2;
+        public static final int BLOCK_LENGTH = 32;
+
+        int templateId() { return TEMPLATE_ID; }
+        int blockLength() { return BLOCK_LENGTH; }
+
+        public int id() { return buffer.getInt(offset); }
+        public long orderId() { return buffer.getLong(offset + 4); }
+        public long price() { return buffer.getLong(offset + 12); }
+        public int quantity() { return buffer.getInt(offset + 20); }
+        public String symbol() { return getSymbol(24); }
+        public boolean symbolEquals(String symbol) { return symbolEquals(24, symbol); }
+
+        public FillFlyweight id(int id) { buffer.putInt(offset, id); return this; }
+        public FillFlyweight orderId(long orderId) { buffer.putLong(offset + 4, orderId); return this; }
+        public FillFlyweight price(long price) { buffer.putLong(offset + 12, price); return this; }
+        public FillFlyweight quantity(int quantity) { buffer.putInt(offset + 20, quantity); return this; }
+        public FillFlyweight symbol(String symbol) { putSymbol(24, symbol); return this; }
+    }
+
+    public static final class AckFlyweight extends Flyweight<AckFlyweight> {
+        public static final int TEMPLATE_ID = 3;
+        public static final int BLOCK_LENGTH = 16;
+
+        int templateId() { return TEMPLATE_ID; }
+        int blockLength() { return BLOCK_LENGTH; }
+
+        public long orderId() { return buffer.getLong(offset); }
+        public String symbol() { return getSymbol(8); }
+        public boolean symbolEquals(String symbol) { return symbolEquals(8, symbol); }
+
+        public AckFlyweight orderId(long orderId) { buffer.putLong(offset, orderId); return this; }
+        public AckFlyweight symbol(String symbol) { putSymbol(8, symbol); return this; }
+    }
+
+    public static final class CancelFlyweight extends Flyweight<CancelFlyweight> {
+        public static final int TEMPLATE_ID = 4;
+        public static final int BLOCK_LENGTH = 20;
+
+        int templateId() { return TEMPLATE_ID; }
+        int blockLength() { return BLOCK_LENGTH; }
+
+        public int id() { return buffer.getInt(offset); }
+        public long orderId() { return buffer.getLong(offset + 4); }
+        public String symbol() { return getSymbol(12); }
+        public boolean symbolEquals(String symbol) { return symbolEquals(12, symbol); }
+        public long symbolKey() { return symbolKey(12); }
+
+        public CancelFlyweight id(int id) { buffer.putInt(offset, id); return this; }
+        public CancelFlyweight orderId(long orderId) { buffer.putLong(offset + 4, orderId); return this; }
+        public CancelFlyweight symbol(String symbol) { putSymbol(12, symbol); return this; }
+    }
+
+    public static final class AmendFlyweight extends Flyweight<AmendFlyweight> {
+        public static final int TEMPLATE_ID = 5;
+        public static final int BLOCK_LENGTH = 24;
+
+        int templateId() { return TEMPLATE_ID; }
+        int blockLength() { return BLOCK_LENGTH; }
+
+        public int id() { return buffer.getInt(offset); }
+        public long orderId() { return buffer.getLong(offset + 4); }
+        public String symbol() { return getSymbol(12); }
+        public boolean symbolEquals(String symbol) { return symbolEquals(12, symbol); }
+        public long symbolKey() { return symbolKey(12); }
+        public int quantity() { return buffer.getInt(offset + 20); }
+
+        public AmendFlyweight id(int id) { buffer.putInt(offset, id); return this; }
+        public AmendFlyweight orderId(long orderId) { buffer.putLong(offset + 4, orderId); return this; }
+        public AmendFlyweight symbol(String symbol) { putSymbol(12, symbol); return this; }
+        public AmendFlyweight quantity(int quantity) { buffer.putInt(offset + 20, quantity); return this; }
+    }
+
+    public static final class TradeFlyweight extends Flyweight<TradeFlyweight> {
+        public static final int TEMPLATE_ID = 6;
+        public static final int BLOCK_LENGTH = 37;
+
+        int templateId() { return TEMPLATE_ID; }
+        int blockLength() { return BLOCK_LENGTH; }
+
+        public long id() { return buffer.getLong(offset); }
+        public long timestamp() { return buffer.getLong(offset + 8); }
+        public String symbol() { return getSymbol(16); }
+        public boolean symbolEquals(String symbol) { return symbolEquals(16, symbol); }
+        public int quantity() { return buffer.getInt(offset + 24); }
+        public long price() { return buffer.getLong(offset + 28); }
+        public Message.TradeType type() { return Message.TradeType.values()[buffer.get(offset + 36)]; }
+
+        public TradeFlyweight id(long id) { buffer.putLong(offset, id); return this; }
+        public TradeFlyweight timestamp(long timestamp) { buffer.putLong(offset + 8, timestamp); return this; }
+        public TradeFlyweight symbol(String symbol) { putSymbol(16, symbol); return this; }
+        public TradeFlyweight quantity(int quantity) { buffer.putInt(offset + 24, quantity); return this; }
+        public TradeFlyweight price(long price) { buffer.putLong(offset + 28, price); return this; }
+        public TradeFlyweight type(Message.TradeType type) { buffer.put(offset + 36, (byte) type.ordinal()); return this; }
+    }
+
+    public static final class TopOfBookFlyweight extends Flyweight<TopOfBookFlyweight> {
+        public static final int TEMPLATE_ID = 7;
+        public static final int BLOCK_LENGTH = 56;
+
+        int templateId() { return TEMPLATE_ID; }
+        int blockLength() { return BLOCK_LENGTH; }
+
+        public String symbol() { return getSymbol(0); }
+        public boolean symbolEquals(String symbol) { return symbolEquals(0, symbol); }
+        public long sequence() { return buffer.getLong(offset + 8); }
+        public long bidPrice() { return buffer.getLong(offset + 16); }
+        public long bidQuantity() { return buffer.getLong(offset + 24); }
+        public long askPrice() { return buffer.getLong(offset + 32); }
+        public long askQuantity() { return buffer.getLong(offset + 40); }
+        public long lastPrice() { return buffer.getLong(offset + 48); }
+
+        public TopOfBookFlyweight symbol(String symbol) { putSymbol(0, symbol); return this; }
+        public TopOfBookFlyweight sequence(long sequence) { buffer.putLong(offset + 8, sequence); return this; }
+        public TopOfBookFlyweight bidPrice(long price) { buffer.putLong(offset + 16, price); return this; }
+        public TopOfBookFlyweight bidQuantity(long quantity) { buffer.putLong(offset + 24, quantity); return this; }
+        public TopOfBookFlyweight askPrice(long price) { buffer.putLong(offset + 32, price); return this; }
+        public TopOfBookFlyweight askQuantity(long quantity) { buffer.putLong(offset + 40, quantity); return this; }
+        public TopOfBookFlyweight lastPrice(long price) { buffer.putLong(offset + 48, price); return this; }
+    }
+
+    public static final class DepthDeltaFlyweight extends Flyweight<DepthDeltaFlyweight> {
+        public static final int TEMPLATE_ID = 8;
+        public static final int BLOCK_LENGTH = 33;
+
+        int templateId() { return TEMPLATE_ID; }
+        int blockLength() { return BLOCK_LENGTH; }
+
+        public String symbol() { return getSymbol(0); }
+        public boolean symbolEquals(String symbol) { return symbolEquals(0, symbol); }
+        public long sequence() { return buffer.getLong(offset + 8); }
+        public Message.TradeType side() { return Message.TradeType.values()[buffer.get(offset + 16)]; }
+        public long price() { return buffer.getLong(offset + 17); }
+        public long quantity() { return buffer.getLong(offset + 25); }
+
+        public DepthDeltaFlyweight symbol(String symbol) { putSymbol(0, symbol); return this; }
+        public DepthDeltaFlyweight sequence(long sequence) { buffer.putLong(offset + 8, sequence); return this; }
+        public DepthDeltaFlyweight side(Message.TradeType side) { buffer.put(offset + 16, (byte) side.ordinal()); return this; }
+        public DepthDeltaFlyweight price(long price) { buffer.putLong(offset + 17, price); return this; }
+        public DepthDeltaFlyweight quantity(long quantity) { buffer.putLong(offset + 25, quantity); return this; }
+    }
+}
@@ -0,0 +1,60 @@
+package com.stockexchange.messages;
+
+import akka.serialization.ByteBufferSerializer;
+import akka.serialization.JSerializer;
+
+import java.nio.ByteBuffer;
+
+// Akka serializer for the Message records using MessageCodec. The template id in the header
+// identifies the type, so no class manifest is sent. ByteBufferSerializer lets remoting encode
+// straight into its own buffers instead of going through a byte array.
+public class MessageSerializer extends JSerializer implements ByteBufferSerializer {
+    // Any unique value above Akka's reserved 0-40
+    private static final int IDENTIFIER = 7301;
+
+    @Override
+    public int identifier() {
+        return IDENTIFIER;
+    }
+
+    @Override
+    public boolean includeManifest() {
+        return false;
+    }
+
+    @Override
+    public byte[] toBinary(Object message) {
+        byte[] bytes = new byte[encodedLength(message)];
+        MessageCodec.encode(message, ByteBuffer.wrap(bytes).order(MessageCodec.BYTE_ORDER), 0);
+        return bytes;
+    }
+
+    @Override
+    public Object fromBinaryJava(byte[] bytes, Class<?> manifest) {
+        return MessageCodec.decode(ByteBuffer.wrap(bytes).order(MessageCodec.BYTE_ORDER), 0);
+    }
+
+    @Override
+    public void toBinary(Object message, ByteBuffer buffer) {
+        ByteBuffer target = buffer.order() == MessageCodec.BYTE_ORDER ? buffer : buffer.duplicate().order(MessageCodec.BYTE_ORDER);
+        int written = MessageCodec.encode(message, target, buffer.position());
+        buffer.position(buffer.position() + written);
+    }
+
+    @Override
+    public Object fromBinary(ByteBuffer buffer, String manifest) {
+        ByteBuffer source = buffer.order() == MessageCodec.BYTE_ORDER ? buffer : buffer.duplicate().order(MessageCodec.BYTE_ORDER);
+        int offset = buffer.position();
+        Object message = MessageCodec.decode(source, offset);
+        buffer.position(offset + MessageCodec.HEADER_LENGTH + MessageCodec.blockLength(source, offset));
+        return message;
+    }
+
+    private static int encodedLength(Object message) {
+        int length = MessageCodec.encodedLength(message);
+        if (length < 0) {
+            throw new IllegalArgumentException("No binary encoding for " + message.getClass().getName());
+        }
+        return length;
+    }
+}
@@ -4,9 +4,16 @@ package com.stockexchange.messages;
 public class MsgEnvelope implements Message.Command {
     public final String topic;
     public final Object payload;
+    // Events with the same topic and key supersede each other for conflating subscribers; may be null
+    public final String key;
 
     public MsgEnvelope(String topic, Object payload) {
+        this(topic, null, payload);
+    }
+
+    public MsgEnvelope(String topic, String key, Object payload) {
         this.topic = topic;
+        this.key = key;
         this.payload = payload;
     }
-}
\ No newline at end of file
+}
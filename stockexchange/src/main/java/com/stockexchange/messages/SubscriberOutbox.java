@@ -0,0 +1,76 @@
+package com.stockexchange.messages;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Per-subscriber buffer between publishers and one subscriber's mailbox. At most one event is in
+// the mailbox at a time; the rest wait here under the subscriber's policy until it acknowledges.
+// Publishers and the subscriber only ever contend on this subscriber's lock.
+final class SubscriberOutbox {
+    // Returned by offer when a DISCONNECT subscriber's queue is full
+    static final MsgEnvelope OVERFLOW = new MsgEnvelope(null, null);
+
+    private final SubscriberPolicy policy;
+    private final int capacity;
+    // CONFLATE keeps events by topic and key in first-arrival order, unkeyed events by identity
+    private final Map<Object, MsgEnvelope> latest;
+    private final ArrayDeque<MsgEnvelope> queue;
+    private boolean inFlight;
+
+    SubscriberOutbox(SubscriberPolicy policy, int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Subscriber capacity must be positive: " + capacity);
+        }
+        this.policy = policy;
+        this.capacity = capacity;
+        this.latest = policy == SubscriberPolicy.CONFLATE ? new LinkedHashMap<>() : null;
+        this.queue = policy == SubscriberPolicy.CONFLATE ? null : new ArrayDeque<>();
+    }
+
+    // Returns the event to deliver now, null when it was buffered, or OVERFLOW
+    synchronized MsgEnvelope offer(MsgEnvelope event) {
+        if (!inFlight) {
+            inFlight = true;
+            return event;
+        }
+        if (latest != null) {
+            Object key = event.key != null ? event.topic + '/' + event.key : new Object();
+            if (latest.put(key, event) == null && latest.size() > capacity) {
+                Iterator<MsgEnvelope> eldest = latest.values().iterator();
+                eldest.next();
+                eldest.remove();
+            }
+        } else {
+            if (queue.size() == capacity) {
+                if (policy == SubscriberPolicy.DISCONNECT) {
+                    return OVERFLOW;
+                }
+                queue.pollFirst();
+            }
+            queue.addLast(event);
+        }
+        return null;
+    }
+
+    // Called once the subscriber has handled the delivered event; returns the next one to deliver
+    synchronized MsgEnvelope next() {
+        MsgEnvelope event;
+        if (latest != null) {
+            Iterator<MsgEnvelope> first = latest.values().iterator();
+            event = first.hasNext() ? first.next() : null;
+            if (event != null) {
+                first.remove();
+            }
+        } else {
+            event = queue.pollFirst();
+        }
+        inFlight = event != null;
+        return event;
+    }
+
+    synchronized int pending() {
+        return latest != null ? latest.size() : queue.size();
+    }
+}
@@ -0,0 +1,11 @@
+package com.stockexchange.messages;
+
+// What LookupBusImpl does with events for a subscriber that has not yet acknowledged the last one
+public enum SubscriberPolicy {
+    // Keep only the latest event per topic and key, so a slow reader sees current state, not history
+    CONFLATE,
+    // Queue up to the capacity, discarding the oldest queued event when full
+    DROP_OLDEST,
+    // Queue up to the capacity, then unsubscribe the subscriber from everything
+    DISCONNECT
+}
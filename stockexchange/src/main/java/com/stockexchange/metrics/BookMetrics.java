@@ -0,0 +1,97 @@
+package com.stockexchange.metrics;
+
+import com.stockexchange.ingest.OrderRing;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.util.concurrent.atomic.LongAdder;
+
+// Per-symbol counters written by the symbol's OrderBookActor. Writes are a striped add, a
+// volatile store or a wait-free histogram record; the histogram is only folded together when
+// someone reads a percentile.
+public class BookMetrics implements BookMetricsMXBean {
+    private final String symbol;
+    private final LongAdder ordersIn = new LongAdder();
+    private final LongAdder fills = new LongAdder();
+    private final LongAdder cancels = new LongAdder();
+    private final LongAdder riskRejects = new LongAdder();
+    private volatile int restingOrders;
+    private volatile int bidLevels;
+    private volatile int askLevels;
+    private volatile OrderRing ring;
+    // Nanoseconds to match and rest one order
+    private final Recorder matchLatency = new Recorder(3);
+    // Guarded by this; only readers touch them
+    private Histogram interval;
+    private final Histogram matchLatencyTotal = new Histogram(3);
+
+    BookMetrics(String symbol) {
+        this.symbol = symbol;
+    }
+
+    // Writer side, called on the book's thread
+
+    public void onOrder(long matchNanos, int fillCount) {
+        ordersIn.increment();
+        if (fillCount > 0) {
+            fills.add(fillCount);
+        }
+        matchLatency.recordValue(Math.max(matchNanos, 0));
+    }
+
+    public void onCancel() {
+        cancels.increment();
+    }
+
+    public void onRiskReject() {
+        riskRejects.increment();
+    }
+
+    public void onDepth(int restingOrders, int bidLevels, int askLevels) {
+        this.restingOrders = restingOrders;
+        this.bidLevels = bidLevels;
+        this.askLevels = askLevels;
+    }
+
+    // Reports the ring's backlog as this book's queue depth
+    public void setRing(OrderRing ring) {
+        this.ring = ring;
+    }
+
+    // Reader side
+
+    private synchronized double latencyMicros(double percentile) {
+        interval = matchLatency.getIntervalHistogram(interval);
+        matchLatencyTotal.add(interval);
+        if (matchLatencyTotal.getTotalCount() == 0) {
+            return 0;
+        }
+        long nanos = percentile >= 100 ? matchLatencyTotal.getMaxValue() : matchLatencyTotal.getValueAtPercentile(percentile);
+        return nanos / 1000.0;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s in=%d fills=%d cancels=%d rejects=%d resting=%d levels=%d/%d queue=%d match p50=%.1fus p99=%.1fus max=%.1fus",
+                symbol, getOrdersIn(), getFills(), getCancels(), getRiskRejects(), restingOrders, bidLevels, askLevels, getQueueDepth(),
+                getMatchLatencyP50Micros(), getMatchLatencyP99Micros(), getMatchLatencyMaxMicros());
+    }
+
+    // Getters
+    @Override public String getSymbol() { return symbol; }
+    @Override public long getOrdersIn() { return ordersIn.sum(); }
+    @Override public long getFills() { return fills.sum(); }
+    @Override public long getCancels() { return cancels.sum(); }
+    @Override public long getRiskRejects() { return riskRejects.sum(); }
+    @Override public int getRestingOrders() { return restingOrders; }
+    @Override public int getBidLevels() { return bidLevels; }
+    @Override public int getAskLevels() { return askLevels; }
+    @Override public long getQueueDepth() {
+        OrderRing current = ring;
+        return current != null ? current.size() : 0;
+    }
+    @Override public double getMatchLatencyP50Micros() { return latencyMicros(50); }
+    @Override public double getMatchLatencyP99Micros() { return latencyMicros(99); }
+    @Override public double getMatchLatencyP999Micros() { return latencyMicros(99.9); }
+    @Override public double getMatchLatencyMaxMicros() { return latencyMicros(100); }
+}
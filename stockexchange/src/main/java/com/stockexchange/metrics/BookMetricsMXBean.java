@@ -0,0 +1,18 @@
+package com.stockexchange.metrics;
+
+// JMX view of one symbol's BookMetrics. Latencies are in microseconds since startup.
+public interface BookMetricsMXBean {
+    String getSymbol();
+    long getOrdersIn();
+    long getFills();
+    long getCancels();
+    long getRiskRejects();
+    int getRestingOrders();
+    int getBidLevels();
+    int getAskLevels();
+    long getQueueDepth();
+    double getMatchLatencyP50Micros();
+    double getMatchLatencyP99Micros();
+    double getMatchLatencyP999Micros();
+    double getMatchLatencyMaxMicros();
+}
@@ -0,0 +1,150 @@
+package com.stockexchange.metrics;
+
+import akka.actor.typed.ActorSystem;
+import akka.actor.typed.Extension;
+import akka.actor.typed.ExtensionId;
+import akka.dispatch.MessageQueue;
+import com.typesafe.config.Config;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+
+// One per actor system: per-symbol BookMetrics and the depth of every metered mailbox, exported
+// over JMX under com.stockexchange and logged every stockexchange.metrics.log-interval.
+// Nothing here is computed until JMX or the log asks for it.
+public class ExchangeMetrics implements Extension {
+    public static final ExtensionId<ExchangeMetrics> ID = new ExtensionId<ExchangeMetrics>() {
+        @Override
+        public ExchangeMetrics createExtension(ActorSystem<?> system) {
+            return new ExchangeMetrics(system);
+        }
+    };
+
+    // Config path for MailboxSelector.fromConfig to spawn an actor with a MeteredMailbox
+    public static final String MAILBOX = "stockexchange.metrics.mailbox";
+
+    private static final Logger log = LoggerFactory.getLogger(ExchangeMetrics.class);
+
+    // Sorted so the log lists symbols and actors in a stable order
+    private final Map<String, BookMetrics> books = new ConcurrentSkipListMap<>();
+    private final Map<String, MessageQueue> mailboxes = new ConcurrentSkipListMap<>();
+    // Null when JMX export is off
+    private final MBeanServer mbeanServer;
+
+    public static ExchangeMetrics get(ActorSystem<?> system) {
+        return system.registerExtension(ID);
+    }
+
+    private ExchangeMetrics(ActorSystem<?> system) {
+        Config config = system.settings().config().getConfig("stockexchange.metrics");
+        this.mbeanServer = config.getBoolean("jmx") ? ManagementFactory.getPlatformMBeanServer() : null;
+
+        long logIntervalNanos = config.getDuration("log-interval", TimeUnit.NANOSECONDS);
+        if (logIntervalNanos > 0) {
+            Duration interval = Duration.ofNanos(logIntervalNanos);
+            system.scheduler().scheduleAtFixedRate(interval, interval, this::logSnapshot, system.executionContext());
+        }
+        system.getWhenTerminated().thenRun(this::unregisterAll);
+    }
+
+    public BookMetrics book(String stockSymbol) {
+        return books.computeIfAbsent(stockSymbol, symbol -> {
+            BookMetrics metrics = new BookMetrics(symbol);
+            register(objectName("OrderBook", "symbol", symbol), metrics);
+            return metrics;
+        });
+    }
+
+    void registerMailbox(String path, MessageQueue queue) {
+        mailboxes.put(path, queue);
+        register(objectName("Mailbox", "path", path), new MailboxMXBean() {
+            @Override
+            public String getPath() {
+                return path;
+            }
+
+            @Override
+            public int getDepth() {
+                return mailboxDepth(path);
+            }
+        });
+    }
+
+    // A restarted actor keeps its mailbox, so only the queue that registered may remove the entry
+    void unregisterMailbox(String path, MessageQueue queue) {
+        if (mailboxes.remove(path, queue)) {
+            unregister(objectName("Mailbox", "path", path));
+        }
+    }
+
+    // Messages waiting for the actor at path, or -1 if it has no metered mailbox
+    public int mailboxDepth(String path) {
+        MessageQueue queue = mailboxes.get(path);
+        return queue != null ? queue.numberOfMessages() : -1;
+    }
+
+    public void logSnapshot() {
+        if (!log.isInfoEnabled()) {
+            return;
+        }
+        for (BookMetrics metrics : books.values()) {
+            log.info("Book {}", metrics);
+        }
+        StringBuilder depths = new StringBuilder();
+        mailboxes.forEach((path, queue) -> {
+            int depth = queue.numberOfMessages();
+            if (depth > 0) {
+                depths.append(' ').append(path).append('=').append(depth);
+            }
+        });
+        log.info("Mailbox depth:{}", depths.length() > 0 ? depths : " all empty");
+    }
+
+    private ObjectName objectName(String type, String key, String value) {
+        try {
+            return new ObjectName("com.stockexchange:type=" + type + "," + key + "=" + ObjectName.quote(value));
+        } catch (JMException e) {
+            throw new IllegalArgumentException("Bad JMX name for " + value, e);
+        }
+    }
+
+    private void register(ObjectName name, Object bean) {
+        if (mbeanServer == null) {
+            return;
+        }
+        try {
+            if (mbeanServer.isRegistered(name)) {
+                mbeanServer.unregisterMBean(name);
+            }
+            mbeanServer.registerMBean(bean, name);
+        } catch (JMException e) {
+            log.warn("Could not register {}", name, e);
+        }
+    }
+
+    private void unregister(ObjectName name) {
+        if (mbeanServer == null) {
+            return;
+        }
+        try {
+            if (mbeanServer.isRegistered(name)) {
+                mbeanServer.unregisterMBean(name);
+            }
+        } catch (JMException e) {
+            log.warn("Could not unregister {}", name, e);
+        }
+    }
+
+    private void unregisterAll() {
+        books.keySet().forEach(symbol -> unregister(objectName("OrderBook", "symbol", symbol)));
+        mailboxes.keySet().forEach(path -> unregister(objectName("Mailbox", "path", path)));
+    }
+}
@@ -0,0 +1,8 @@
+package com.stockexchange.metrics;
+
+// JMX view of one metered actor mailbox
+public interface MailboxMXBean {
+    String getPath();
+    // Messages waiting; counted by walking the queue, so only on read
+    int getDepth();
+}
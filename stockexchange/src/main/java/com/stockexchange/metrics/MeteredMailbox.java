@@ -0,0 +1,39 @@
+package com.stockexchange.metrics;
+
+import akka.actor.ActorRef;
+import akka.actor.ActorSystem;
+import akka.actor.typed.javadsl.Adapter;
+import akka.dispatch.MailboxType;
+import akka.dispatch.MessageQueue;
+import akka.dispatch.ProducesMessageQueue;
+import akka.dispatch.UnboundedMailbox;
+import com.typesafe.config.Config;
+import scala.Option;
+
+// Akka's unbounded mailbox, registered with ExchangeMetrics under the owner's path so its depth
+// can be read. Enqueue and dequeue are untouched; the depth is counted only when someone asks.
+// Selected with MailboxSelector.fromConfig(ExchangeMetrics.MAILBOX).
+public class MeteredMailbox implements MailboxType, ProducesMessageQueue<UnboundedMailbox.MessageQueue> {
+
+    // Akka instantiates mailbox types reflectively with this signature
+    public MeteredMailbox(ActorSystem.Settings settings, Config config) {
+    }
+
+    @Override
+    public MessageQueue create(Option<ActorRef> owner, Option<ActorSystem> system) {
+        if (owner.isEmpty() || system.isEmpty()) {
+            return new UnboundedMailbox.MessageQueue();
+        }
+        ExchangeMetrics metrics = ExchangeMetrics.get(Adapter.toTyped(system.get()));
+        String path = owner.get().path().toStringWithoutAddress();
+        UnboundedMailbox.MessageQueue queue = new UnboundedMailbox.MessageQueue() {
+            @Override
+            public void cleanUp(ActorRef owner, MessageQueue deadLetters) {
+                metrics.unregisterMailbox(path, this);
+                super.cleanUp(owner, deadLetters);
+            }
+        };
+        metrics.registerMailbox(path, queue);
+        return queue;
+    }
+}
@@ -0,0 +1,93 @@
+package com.stockexchange.model;
+
+import java.util.Arrays;
+
+// OHLCV bars of one interval, one column per field, updated in place as each trade arrives.
+// Intervals without trades have no bar. Once maxBars is reached the older half is dropped.
+// Not thread-safe: written and read by the symbol's book actor.
+public class BarSeries {
+    private final long intervalNanos;
+    private final int maxBars;
+    private long[] starts = new long[256];
+    private long[] opens = new long[256];
+    private long[] highs = new long[256];
+    private long[] lows = new long[256];
+    private long[] closes = new long[256];
+    private long[] volumes = new long[256];
+    // Sum of price * quantity in ticks, for VWAP
+    private long[] notionals = new long[256];
+    private int count;
+
+    public BarSeries(long intervalNanos, int maxBars) {
+        if (intervalNanos <= 0 || maxBars < 2) {
+            throw new IllegalArgumentException("Bar interval must be positive and max-bars at least 2");
+        }
+        this.intervalNanos = intervalNanos;
+        this.maxBars = maxBars;
+    }
+
+    // Trades must arrive in timestamp order
+    public void onTrade(long timestamp, long priceTicks, int quantity) {
+        long start = timestamp - Math.floorMod(timestamp, intervalNanos);
+        if (count == 0 || start > starts[count - 1]) {
+            if (count == maxBars) {
+                dropOlderHalf();
+            } else if (count == starts.length) {
+                grow(Math.min(count * 2, maxBars));
+            }
+            starts[count] = start;
+            opens[count] = priceTicks;
+            highs[count] = priceTicks;
+            lows[count] = priceTicks;
+            volumes[count] = 0;
+            notionals[count] = 0;
+            count++;
+        }
+        int bar = count - 1;
+        if (priceTicks > highs[bar]) {
+            highs[bar] = priceTicks;
+        } else if (priceTicks < lows[bar]) {
+            lows[bar] = priceTicks;
+        }
+        closes[bar] = priceTicks;
+        volumes[bar] += quantity;
+        notionals[bar] += priceTicks * quantity;
+    }
+
+    // First bar starting at or after timestamp; size() if there is none
+    public int indexOf(long timestamp) {
+        int index = Arrays.binarySearch(starts, 0, count, timestamp);
+        return index >= 0 ? index : -index - 1;
+    }
+
+    private void grow(int capacity) {
+        starts = Arrays.copyOf(starts, capacity);
+        opens = Arrays.copyOf(opens, capacity);
+        highs = Arrays.copyOf(highs, capacity);
+        lows = Arrays.copyOf(lows, capacity);
+        closes = Arrays.copyOf(closes, capacity);
+        volumes = Arrays.copyOf(volumes, capacity);
+        notionals = Arrays.copyOf(notionals, capacity);
+    }
+
+    private void dropOlderHalf() {
+        int keep = count / 2;
+        int from = count - keep;
+        for (long[] column : new long[][] {starts, opens, highs, lows, closes, volumes, notionals}) {
+            System.arraycopy(column, from, column, 0, keep);
+        }
+        count = keep;
+    }
+
+    // Getters
+    public long getIntervalNanos() { return intervalNanos; }
+    public int size() { return count; }
+    public long getStart(int bar) { return starts[bar]; }
+    public long getOpen(int bar) { return opens[bar]; }
+    public long getHigh(int bar) { return highs[bar]; }
+    public long getLow(int bar) { return lows[bar]; }
+    public long getClose(int bar) { return closes[bar]; }
+    public long getVolume(int bar) { return volumes[bar]; }
+    // Volume-weighted average price in ticks, fractional
+    public double getVwap(int bar) { return volumes[bar] > 0 ? (double) notionals[bar] / volumes[bar] : 0; }
+}
@@ -0,0 +1,98 @@
+package com.stockexchange.model;
+
+import java.util.Arrays;
+
+// One side of the book as an array of levels sorted worst to best, so the best level is always last
+final class BookSide {
+    private final boolean bids;
+    private PriceLevel[] levels = new PriceLevel[64];
+    private int size;
+    // Emptied levels kept for reuse so steady-state quoting does not allocate
+    private PriceLevel[] spare = new PriceLevel[64];
+    private int spareCount;
+
+    BookSide(boolean bids) {
+        this.bids = bids;
+    }
+
+    PriceLevel best() {
+        return size == 0 ? null : levels[size - 1];
+    }
+
+    PriceLevel levelAt(int depth) {
+        return depth < size ? levels[size - 1 - depth] : null;
+    }
+
+    int size() {
+        return size;
+    }
+
+    PriceLevel find(long priceTicks) {
+        int index = search(priceTicks);
+        return index >= 0 ? levels[index] : null;
+    }
+
+    PriceLevel getOrCreate(long priceTicks) {
+        int index = search(priceTicks);
+        if (index >= 0) {
+            return levels[index];
+        }
+        int insertAt = -index - 1;
+        if (size == levels.length) {
+            levels = Arrays.copyOf(levels, size * 2);
+        }
+        // New levels usually arrive near the top of the book, so this copy is short
+        System.arraycopy(levels, insertAt, levels, insertAt + 1, size - insertAt);
+        PriceLevel level;
+        if (spareCount > 0) {
+            level = spare[--spareCount];
+            spare[spareCount] = null;
+            level.reset(priceTicks);
+        } else {
+            level = new PriceLevel(priceTicks);
+        }
+        levels[insertAt] = level;
+        size++;
+        return level;
+    }
+
+    void remove(PriceLevel level) {
+        if (size > 0 && levels[size - 1] == level) {
+            levels[--size] = null;
+        } else {
+            int index = search(level.getPriceTicks());
+            if (index < 0) {
+                return;
+            }
+            System.arraycopy(levels, index + 1, levels, index, size - index - 1);
+            levels[--size] = null;
+        }
+        if (spareCount < spare.length) {
+            spare[spareCount++] = level;
+        }
+    }
+
+    // True when price a is strictly better than price b for this side
+    boolean isBetter(long a, long b) {
+        return bids ? a > b : a < b;
+    }
+
+    // Binary search ordered worst to best; returns -(insertion point) - 1 when absent
+    private int search(long priceTicks) {
+        int low = 0;
+        int high = size - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            long midPrice = levels[mid].getPriceTicks();
+            if (midPrice == priceTicks) {
+                return mid;
+            }
+            if (isBetter(priceTicks, midPrice)) {
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return -(low + 1);
+    }
+}
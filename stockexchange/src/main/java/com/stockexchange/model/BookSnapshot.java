@@ -0,0 +1,82 @@
+package com.stockexchange.model;
+
+import java.util.Arrays;
+
+// Point-in-time copy of a book's resting orders and counters, held column-wise in primitive arrays.
+// Orders are stored worst level to best and, within a level, in queue order, so restoring them in
+// array order rebuilds the same price-time priority. Reused between snapshots to avoid reallocating.
+public final class BookSnapshot {
+    private long[] ids = new long[1024];
+    private long[] sequences = new long[1024];
+    private boolean[] buys = new boolean[1024];
+    private long[] prices = new long[1024];
+    private int[] quantities = new int[1024];
+    private long[] timestamps = new long[1024];
+    private int[] accounts = new int[1024];
+    private int count;
+
+    private long nextOrderId;
+    private long nextSequence;
+    private long lastTradePriceTicks;
+    private long bidQuoteId = -1;
+    private long askQuoteId = -1;
+    // Journal position of the first command not reflected in this snapshot
+    private long journalPosition;
+
+    public void clear() {
+        count = 0;
+    }
+
+    public void add(long id, long sequence, Order.OrderType side, long priceTicks, int quantity, long timestamp,
+                    int account) {
+        if (count == ids.length) {
+            int capacity = count * 2;
+            ids = Arrays.copyOf(ids, capacity);
+            sequences = Arrays.copyOf(sequences, capacity);
+            buys = Arrays.copyOf(buys, capacity);
+            prices = Arrays.copyOf(prices, capacity);
+            quantities = Arrays.copyOf(quantities, capacity);
+            timestamps = Arrays.copyOf(timestamps, capacity);
+            accounts = Arrays.copyOf(accounts, capacity);
+        }
+        ids[count] = id;
+        sequences[count] = sequence;
+        buys[count] = side == Order.OrderType.BUY;
+        prices[count] = priceTicks;
+        quantities[count] = quantity;
+        timestamps[count] = timestamp;
+        accounts[count] = account;
+        count++;
+    }
+
+    public void setCounters(long nextOrderId, long nextSequence, long lastTradePriceTicks) {
+        this.nextOrderId = nextOrderId;
+        this.nextSequence = nextSequence;
+        this.lastTradePriceTicks = lastTradePriceTicks;
+    }
+
+    public void setQuotes(long bidQuoteId, long askQuoteId) {
+        this.bidQuoteId = bidQuoteId;
+        this.askQuoteId = askQuoteId;
+    }
+
+    public void setJournalPosition(long journalPosition) {
+        this.journalPosition = journalPosition;
+    }
+
+    // Getters
+    public int getCount() { return count; }
+    public long getId(int index) { return ids[index]; }
+    public long getSequence(int index) { return sequences[index]; }
+    public Order.OrderType getSide(int index) { return buys[index] ? Order.OrderType.BUY : Order.OrderType.SELL; }
+    public long getPriceTicks(int index) { return prices[index]; }
+    public int getQuantity(int index) { return quantities[index]; }
+    public long getTimestamp(int index) { return timestamps[index]; }
+    public int getAccount(int index) { return accounts[index]; }
+    public long getNextOrderId() { return nextOrderId; }
+    public long getNextSequence() { return nextSequence; }
+    public long getLastTradePriceTicks() { return lastTradePriceTicks; }
+    public long getBidQuoteId() { return bidQuoteId; }
+    public long getAskQuoteId() { return askQuoteId; }
+    public long getJournalPosition() { return journalPosition; }
+}
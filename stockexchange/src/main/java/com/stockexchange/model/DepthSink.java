@@ -0,0 +1,7 @@
+package com.stockexchange.model;
+
+// Receives the new aggregate quantity of each price level changed since the last flush;
+// a quantity of 0 means the level is gone, possibly one that appeared and emptied in between
+public interface DepthSink {
+    void onLevel(Order.OrderType side, long priceTicks, long totalQuantity);
+}
@@ -0,0 +1,7 @@
+package com.stockexchange.model;
+
+// Receives every execution produced by the book; implementations are expected to be reused across calls
+@FunctionalInterface
+public interface FillSink {
+    void onFill(long takerId, long makerId, Order.OrderType takerSide, long priceTicks, int quantity);
+}
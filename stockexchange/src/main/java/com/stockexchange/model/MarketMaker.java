@@ -0,0 +1,53 @@
+package com.stockexchange.model;
+
+import java.util.random.RandomGenerator;
+
+// Quoting rules of a market maker, apart from how its quotes reach the book: a two-sided quote
+// spread-bps either side of the reference price, 10 to 59 shares a side, renewed once the
+// reference has moved requote-threshold-bps from the price of the quote in the book. Whoever
+// drives it also re-quotes when a quote trades. Not thread-safe.
+public class MarketMaker {
+    private final long spreadBps;
+    private final long requoteThresholdBps;
+    private final RandomGenerator random;
+    private long currentPriceTicks;
+    // Reference price of the quote currently in the book, 0 before the first
+    private long quotedPriceTicks;
+    // The latest quote
+    private long bidPriceTicks;
+    private int bidQuantity;
+    private long askPriceTicks;
+    private int askQuantity;
+
+    public MarketMaker(long initialPriceTicks, long spreadBps, long requoteThresholdBps, RandomGenerator random) {
+        this.currentPriceTicks = initialPriceTicks;
+        this.spreadBps = spreadBps;
+        this.requoteThresholdBps = requoteThresholdBps;
+        this.random = random;
+    }
+
+    // Takes a new reference price; true when the quote in the book has become stale
+    public boolean onPrice(long priceTicks) {
+        this.currentPriceTicks = priceTicks;
+        if (quotedPriceTicks == 0) {
+            return true;
+        }
+        return Math.abs(currentPriceTicks - quotedPriceTicks) * 10_000 >= requoteThresholdBps * quotedPriceTicks;
+    }
+
+    // Works out the next quote around the reference price; read it back with the getters
+    public void quote() {
+        bidPriceTicks = TickSize.offsetBps(currentPriceTicks, -spreadBps);
+        askPriceTicks = TickSize.offsetBps(currentPriceTicks, spreadBps);
+        bidQuantity = random.nextInt(50) + 10;
+        askQuantity = random.nextInt(50) + 10;
+        quotedPriceTicks = currentPriceTicks;
+    }
+
+    // Getters
+    public long getCurrentPriceTicks() { return currentPriceTicks; }
+    public long getBidPriceTicks() { return bidPriceTicks; }
+    public int getBidQuantity() { return bidQuantity; }
+    public long getAskPriceTicks() { return askPriceTicks; }
+    public int getAskQuantity() { return askQuantity; }
+}
@@ -1,35 +1,52 @@
 package com.stockexchange.model;
 
-import java.math.BigDecimal;
-import java.time.Instant;
-import java.util.UUID;
+import java.io.Serializable;
+
+// Order request as submitted; the exchange assigns the order id when the book accepts it
+public class Order implements Serializable {
+    // Account of orders entered without one
+    public static final int DEFAULT_ACCOUNT = 0;
 
-public class Order {
-    private final UUID id;
     private final String stockSymbol;
+    // SymbolTable id, or SymbolTable.UNKNOWN for the exchange to look up from the symbol. An id
+    // that does not name stockSymbol in the exchange's table is ignored the same way.
+    private final int symbolId;
+    // Dense account id the pre-trade risk limits are kept against
+    private final int accountId;
     private final int quantity;
-    private final BigDecimal price;
-    private final Instant timestamp;
+    private final long priceTicks;
+    private final long timestamp;
     private final OrderType type;
 
     public enum OrderType {
         BUY, SELL, MATCH
     }
 
-    public Order(String stockSymbol, int quantity, BigDecimal price, OrderType type) {
-        this.id = UUID.randomUUID();
+    public Order(String stockSymbol, int quantity, long priceTicks, OrderType type) {
+        this(SymbolTable.UNKNOWN, stockSymbol, quantity, priceTicks, type);
+    }
+
+    public Order(int symbolId, String stockSymbol, int quantity, long priceTicks, OrderType type) {
+        this(symbolId, stockSymbol, DEFAULT_ACCOUNT, quantity, priceTicks, type);
+    }
+
+    public Order(int symbolId, String stockSymbol, int accountId, int quantity, long priceTicks, OrderType type) {
+        this.symbolId = symbolId;
+        this.accountId = accountId;
         this.stockSymbol = stockSymbol;
         this.quantity = quantity;
-        this.price = price;
-        this.timestamp = Instant.now();
+        this.priceTicks = priceTicks;
+        this.timestamp = System.nanoTime();
         this.type = type;
     }
 
     // Getters
-    public UUID getId() { return id; }
     public String getStockSymbol() { return stockSymbol; }
+    public int getSymbolId() { return symbolId; }
+    public int getAccountId() { return accountId; }
     public int getQuantity() { return quantity; }
-    public BigDecimal getPrice() { return price; }
-    public Instant getTimestamp() { return timestamp; }
+    public long getPriceTicks() { return priceTicks; }
+    // Monotonic nanoTime, only comparable within this JVM
+    public long getTimestamp() { return timestamp; }
     public OrderType getType() { return type; }
 }
@@ -1,51 +1,197 @@
 // Order Book Implementation
 package com.stockexchange.model;
 
-import java.math.BigDecimal;
-import java.time.Instant;
 import java.util.*;
 import com.stockexchange.model.Order;
 
 
 public class OrderBook {
     private final String stockSymbol;
-    private final PriorityQueue<Order> buyOrders;
-    private final PriorityQueue<Order> sellOrders;
+    private final TickSize tickSize;
+    // Price levels per side, each a FIFO queue of orders at one tick price
+    private final BookSide bids = new BookSide(true);
+    private final BookSide asks = new BookSide(false);
+    // Resting orders by id for O(1) cancel and amend
+    private final OrderIndex ordersById = new OrderIndex(1024);
+    // Free list of recycled entries, linked through RestingOrder.next
+    private RestingOrder freeOrders;
+    // Order ids are assigned by the book, so they are monotonic per symbol and replay deterministically
+    private long nextOrderId = 1;
+    // Arrival sequence, the time half of price-time priority
+    private long nextSequence;
+    // Price of the most recent execution, 0 before the first
+    private long lastTradePriceTicks;
+    // Order ids of the market maker's two quotes, or -1; ids are never reused, so a stale id is harmless
+    private long bidQuoteId = -1;
+    private long askQuoteId = -1;
+    // Levels touched since the last flushDepthChanges, as (price << 1 | buy); may hold duplicates
+    private long[] changedLevels;
+    private int changedCount;
 
-    public OrderBook(String stockSymbol) {
+    public OrderBook(String stockSymbol, TickSize tickSize) {
         this.stockSymbol = stockSymbol;
-        // Buy orders sorted in descending order (highest price first)
-        this.buyOrders = new PriorityQueue<>((a, b) -> b.getPrice().compareTo(a.getPrice()));
-        // Sell orders sorted in ascending order (lowest price first)
-        this.sellOrders = new PriorityQueue<>(Comparator.comparing(Order::getPrice));
+        this.tickSize = tickSize;
     }
 
-    public void addOrder(Order order) {
-        System.out.println("Adding order ");
-        if (order.getType() == Order.OrderType.BUY) {
-            buyOrders.offer(order);
+    // Rests the order without matching. Returns the assigned order id.
+    public long addOrder(Order order) {
+        long orderId = nextOrderId++;
+        rest(orderId, order.getType(), order.getPriceTicks(), order.getQuantity(), order.getTimestamp());
+        return orderId;
+    }
+
+    // Sweeps the incoming order against the opposite side until it no longer crosses, then rests
+    // any remainder. Returns the assigned order id.
+    public long addOrder(Order order, FillSink sink) {
+        return addOrder(order.getType(), order.getPriceTicks(), order.getQuantity(), order.getTimestamp(), sink);
+    }
+
+    // Same as addOrder(Order, FillSink) for callers that hold the order as primitives
+    public long addOrder(Order.OrderType type, long priceTicks, int quantity, long timestamp, FillSink sink) {
+        return addOrder(type, priceTicks, quantity, timestamp, null, sink);
+    }
+
+    // The owner is kept with any resting remainder and returned by getOrder(id).getOwner(), so the
+    // sink can look up who to notify for the maker side of a fill
+    public long addOrder(Order.OrderType type, long priceTicks, int quantity, long timestamp, Object owner, FillSink sink) {
+        return addOrder(type, priceTicks, quantity, timestamp, RestingOrder.NO_ACCOUNT, owner, sink);
+    }
+
+    // The account, like the owner, stays with the resting remainder for the risk checks
+    public long addOrder(Order.OrderType type, long priceTicks, int quantity, long timestamp, int account, Object owner,
+                         FillSink sink) {
+        long orderId = nextOrderId++;
+        int remaining = sweep(orderId, type, priceTicks, quantity, sink);
+        if (remaining > 0) {
+            rest(orderId, nextSequence++, type, priceTicks, remaining, timestamp, account, owner);
+        }
+        return orderId;
+    }
+
+    // Cancel/replace as one step. A new price moves the order to the back of the queue there, first
+    // matching as the taker if it crosses; the order keeps its id and its pooled entry throughout.
+    // At the same price this is amendOrder. Returns false if the order is not resting.
+    public boolean replaceOrder(long orderId, long priceTicks, int quantity, Object owner, FillSink sink) {
+        RestingOrder order = ordersById.get(orderId);
+        if (order == null) {
+            return false;
+        }
+        order.owner = owner;
+        if (priceTicks == order.priceTicks || quantity <= 0) {
+            return amendOrder(orderId, quantity);
+        }
+        detach(order);
+        int remaining = sweep(orderId, order.side, priceTicks, quantity, sink);
+        if (remaining > 0) {
+            order.priceTicks = priceTicks;
+            order.quantity = remaining;
+            order.sequence = nextSequence++;
+            (order.side == Order.OrderType.BUY ? bids : asks).getOrCreate(priceTicks).append(order);
+            levelChanged(order.side, priceTicks);
         } else {
-            sellOrders.offer(order);
+            release(order);
         }
+        return true;
+    }
+
+    // Keeps one market-maker quote per side: moves each side's quote with replaceOrder while it
+    // still rests, or enters a new order once the old one has been filled away. A quantity of 0
+    // pulls that side. The side moving towards the other goes second, so the two never trade.
+    public void quote(long bidPriceTicks, int bidQuantity, long askPriceTicks, int askQuantity, long timestamp,
+                      Object owner, FillSink sink) {
+        RestingOrder ask = ordersById.get(askQuoteId);
+        if (ask != null && bidPriceTicks >= ask.priceTicks) {
+            quote(Order.OrderType.SELL, askPriceTicks, askQuantity, timestamp, owner, sink);
+            quote(Order.OrderType.BUY, bidPriceTicks, bidQuantity, timestamp, owner, sink);
+        } else {
+            quote(Order.OrderType.BUY, bidPriceTicks, bidQuantity, timestamp, owner, sink);
+            quote(Order.OrderType.SELL, askPriceTicks, askQuantity, timestamp, owner, sink);
+        }
+    }
+
+    private void quote(Order.OrderType side, long priceTicks, int quantity, long timestamp, Object owner, FillSink sink) {
+        boolean buy = side == Order.OrderType.BUY;
+        long quoteId = buy ? bidQuoteId : askQuoteId;
+        if (quantity <= 0) {
+            if (quoteId >= 0) {
+                cancelOrder(quoteId);
+            }
+            quoteId = -1;
+        } else if (quoteId < 0 || !replaceOrder(quoteId, priceTicks, quantity, owner, sink)) {
+            quoteId = addOrder(side, priceTicks, quantity, timestamp, owner, sink);
+        }
+        if (buy) {
+            bidQuoteId = quoteId;
+        } else {
+            askQuoteId = quoteId;
+        }
+    }
+
+    // Matches an incoming quantity against the opposite side for as long as it crosses; returns
+    // what is left to rest
+    private int sweep(long orderId, Order.OrderType type, long priceTicks, int quantity, FillSink sink) {
+        boolean buy = type == Order.OrderType.BUY;
+        BookSide opposite = buy ? asks : bids;
+        int remaining = quantity;
+
+        PriceLevel level = opposite.best();
+        while (remaining > 0 && level != null
+                && (buy ? level.getPriceTicks() <= priceTicks : level.getPriceTicks() >= priceTicks)) {
+            RestingOrder maker = level.getHead();
+            int matchedQuantity = Math.min(remaining, maker.quantity);
+            remaining -= matchedQuantity;
+            sink.onFill(orderId, maker.id, type, level.getPriceTicks(), matchedQuantity);
+            lastTradePriceTicks = level.getPriceTicks();
+            fill(maker, matchedQuantity);
+            level = opposite.best();
+        }
+        return remaining;
+    }
+
+    // Uncrosses the whole book, reporting each execution at the price of the earlier order.
+    // Returns the number of fills.
+    public int matchOrders(FillSink sink) {
+        int fills = 0;
+        PriceLevel bestBid = bids.best();
+        PriceLevel bestAsk = asks.best();
+        while (bestBid != null && bestAsk != null && bestBid.getPriceTicks() >= bestAsk.getPriceTicks()) {
+            RestingOrder buy = bestBid.getHead();
+            RestingOrder sell = bestAsk.getHead();
+            int matchedQuantity = Math.min(buy.quantity, sell.quantity);
+            if (buy.sequence < sell.sequence) {
+                lastTradePriceTicks = buy.priceTicks;
+                sink.onFill(sell.id, buy.id, Order.OrderType.SELL, buy.priceTicks, matchedQuantity);
+            } else {
+                lastTradePriceTicks = sell.priceTicks;
+                sink.onFill(buy.id, sell.id, Order.OrderType.BUY, sell.priceTicks, matchedQuantity);
+            }
+            fill(buy, matchedQuantity);
+            fill(sell, matchedQuantity);
+            fills++;
+            bestBid = bids.best();
+            bestAsk = asks.best();
+        }
+        return fills;
     }
 
     public Optional<com.stockexchange.model.Order> matchOrders() {
-        System.out.println("Match orders ");
-        if (buyOrders.isEmpty() || sellOrders.isEmpty()) {
+        PriceLevel bestBid = bids.best();
+        PriceLevel bestAsk = asks.best();
+        if (bestBid == null || bestAsk == null) {
             return Optional.empty();
         }
 
-        Order bestBuy = buyOrders.peek();
-        Order bestSell = sellOrders.peek();
-
-        if (bestBuy.getPrice().compareTo(bestSell.getPrice()) >= 0) {
+        if (bestBid.getPriceTicks() >= bestAsk.getPriceTicks()) {
             // Match found
-            int matchedQuantity = Math.min(bestBuy.getQuantity(), bestSell.getQuantity());
-            BigDecimal tradePrice = bestSell.getPrice(); // Use sell order price
+            RestingOrder buy = bestBid.getHead();
+            RestingOrder sell = bestAsk.getHead();
+            int matchedQuantity = Math.min(buy.quantity, sell.quantity);
+            long tradePrice = bestAsk.getPriceTicks(); // Use sell order price
+            lastTradePriceTicks = tradePrice;
 
             // Remove or update orders
-            updateOrderAfterTrade(buyOrders, bestBuy, matchedQuantity);
-            updateOrderAfterTrade(sellOrders, bestSell, matchedQuantity);
+            fill(buy, matchedQuantity);
+            fill(sell, matchedQuantity);
 
             return Optional.of(new com.stockexchange.model.Order(
                     this.stockSymbol,
@@ -58,16 +204,183 @@ public class OrderBook {
         return Optional.empty();
     }
 
-    private void updateOrderAfterTrade(PriorityQueue<Order> orders, Order order, int tradedQuantity) {
-        orders.remove(order);
-        if (order.getQuantity() > tradedQuantity) {
-            Order remainingOrder = new Order(
-                    order.getStockSymbol(),
-                    order.getQuantity() - tradedQuantity,
-                    order.getPrice(),
-                    order.getType()
-            );
-            orders.offer(remainingOrder);
+    public boolean cancelOrder(long orderId) {
+        RestingOrder order = ordersById.get(orderId);
+        if (order == null) {
+            return false;
+        }
+        unlink(order);
+        return true;
+    }
+
+    // Reducing quantity keeps queue priority; increasing it sends the order to the back of its level
+    public boolean amendOrder(long orderId, int quantity) {
+        RestingOrder order = ordersById.get(orderId);
+        if (order == null) {
+            return false;
+        }
+        if (quantity <= 0) {
+            unlink(order);
+        } else if (quantity < order.quantity) {
+            order.level.reduce(order, order.quantity - quantity);
+            levelChanged(order.side, order.priceTicks);
+        } else if (quantity > order.quantity) {
+            PriceLevel level = order.level;
+            level.remove(order);
+            order.quantity = quantity;
+            order.sequence = nextSequence++;
+            level.append(order);
+            levelChanged(order.side, order.priceTicks);
+        }
+        return true;
+    }
+
+    public RestingOrder getOrder(long orderId) {
+        return ordersById.get(orderId);
+    }
+
+    // Starts recording which price levels change, for flushDepthChanges
+    public void trackDepthChanges() {
+        if (changedLevels == null) {
+            changedLevels = new long[256];
+        }
+    }
+
+    // Reports each level changed since the last flush once, with its current aggregate quantity,
+    // in ascending price order across both sides, an ask ahead of a bid at the same price.
+    // Returns the number of levels reported.
+    public int flushDepthChanges(DepthSink sink) {
+        if (changedCount == 0) {
+            return 0;
+        }
+        Arrays.sort(changedLevels, 0, changedCount);
+        int reported = 0;
+        long previous = -1;
+        for (int i = 0; i < changedCount; i++) {
+            long key = changedLevels[i];
+            if (key == previous) {
+                continue;
+            }
+            previous = key;
+            boolean buy = (key & 1) != 0;
+            long priceTicks = key >>> 1;
+            PriceLevel level = (buy ? bids : asks).find(priceTicks);
+            sink.onLevel(buy ? Order.OrderType.BUY : Order.OrderType.SELL, priceTicks,
+                    level != null ? level.getTotalQuantity() : 0);
+            reported++;
+        }
+        changedCount = 0;
+        return reported;
+    }
+
+    private void levelChanged(Order.OrderType side, long priceTicks) {
+        if (changedLevels == null) {
+            return;
+        }
+        if (changedCount == changedLevels.length) {
+            changedLevels = Arrays.copyOf(changedLevels, changedCount * 2);
+        }
+        changedLevels[changedCount++] = priceTicks << 1 | (side == Order.OrderType.BUY ? 1 : 0);
+    }
+
+    // Copies the resting orders and counters into the snapshot; linear in the size of the book
+    public void snapshotTo(BookSnapshot snapshot) {
+        snapshot.clear();
+        copySide(bids, snapshot);
+        copySide(asks, snapshot);
+        snapshot.setCounters(nextOrderId, nextSequence, lastTradePriceTicks);
+        snapshot.setQuotes(bidQuoteId, askQuoteId);
+    }
+
+    // Rebuilds an empty book from a snapshot, keeping order ids and queue priority
+    public void restore(BookSnapshot snapshot) {
+        if (ordersById.size() > 0) {
+            throw new IllegalStateException("Cannot restore into a non-empty book: " + stockSymbol);
+        }
+        for (int i = 0; i < snapshot.getCount(); i++) {
+            rest(snapshot.getId(i), snapshot.getSequence(i), snapshot.getSide(i), snapshot.getPriceTicks(i),
+                    snapshot.getQuantity(i), snapshot.getTimestamp(i), snapshot.getAccount(i), null);
+        }
+        nextOrderId = snapshot.getNextOrderId();
+        nextSequence = snapshot.getNextSequence();
+        lastTradePriceTicks = snapshot.getLastTradePriceTicks();
+        bidQuoteId = snapshot.getBidQuoteId();
+        askQuoteId = snapshot.getAskQuoteId();
+    }
+
+    // Worst level first, so restore only ever appends levels at the top of the side
+    private void copySide(BookSide side, BookSnapshot snapshot) {
+        for (int depth = side.size() - 1; depth >= 0; depth--) {
+            for (RestingOrder order = side.levelAt(depth).getHead(); order != null; order = order.next) {
+                snapshot.add(order.id, order.sequence, order.side, order.priceTicks, order.quantity, order.timestamp,
+                        order.account);
+            }
         }
     }
+
+    private void rest(long orderId, Order.OrderType side, long priceTicks, int quantity, long timestamp) {
+        rest(orderId, nextSequence++, side, priceTicks, quantity, timestamp, RestingOrder.NO_ACCOUNT, null);
+    }
+
+    private void rest(long orderId, long sequence, Order.OrderType side, long priceTicks, int quantity, long timestamp,
+                      int account, Object owner) {
+        RestingOrder order = freeOrders;
+        if (order != null) {
+            freeOrders = order.next;
+            order.next = null;
+        } else {
+            order = new RestingOrder();
+        }
+        order.init(orderId, sequence, side, priceTicks, quantity, timestamp, account, owner);
+        (side == Order.OrderType.BUY ? bids : asks).getOrCreate(priceTicks).append(order);
+        ordersById.put(orderId, order);
+        levelChanged(side, priceTicks);
+    }
+
+    private void fill(RestingOrder order, int tradedQuantity) {
+        if (order.quantity > tradedQuantity) {
+            order.level.reduce(order, tradedQuantity);
+            levelChanged(order.side, order.priceTicks);
+        } else {
+            unlink(order);
+        }
+    }
+
+    private void unlink(RestingOrder order) {
+        detach(order);
+        release(order);
+    }
+
+    // Takes the order out of its level but leaves it indexed by id
+    private void detach(RestingOrder order) {
+        levelChanged(order.side, order.priceTicks);
+        PriceLevel level = order.level;
+        level.remove(order);
+        if (level.isEmpty()) {
+            (order.side == Order.OrderType.BUY ? bids : asks).remove(level);
+        }
+    }
+
+    private void release(RestingOrder order) {
+        ordersById.remove(order.id);
+        order.side = null;
+        order.owner = null;
+        order.next = freeOrders;
+        freeOrders = order;
+    }
+
+    // Getters
+    public String getStockSymbol() { return stockSymbol; }
+    public TickSize getTickSize() { return tickSize; }
+    public PriceLevel getBestBid() { return bids.best(); }
+    public PriceLevel getBestAsk() { return asks.best(); }
+    // Level at the given depth from the top of the side, or null; 0 is the best
+    public PriceLevel getBidLevel(int depth) { return bids.levelAt(depth); }
+    public PriceLevel getAskLevel(int depth) { return asks.levelAt(depth); }
+    public int getBidLevelCount() { return bids.size(); }
+    public int getAskLevelCount() { return asks.size(); }
+    public int getRestingOrderCount() { return ordersById.size(); }
+    public long getLastTradePriceTicks() { return lastTradePriceTicks; }
+    public long getBidQuoteId() { return bidQuoteId; }
+    public long getAskQuoteId() { return askQuoteId; }
 }
@@ -0,0 +1,91 @@
+package com.stockexchange.model;
+
+// Open-addressing map from order id to resting entry; no boxing on the order path.
+// Ids must be positive, 0 marks an empty slot.
+final class OrderIndex {
+    private long[] keys;
+    private RestingOrder[] values;
+    private int mask;
+    private int size;
+
+    OrderIndex(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(16, expectedSize * 2) - 1) << 1;
+        keys = new long[capacity];
+        values = new RestingOrder[capacity];
+        mask = capacity - 1;
+    }
+
+    RestingOrder get(long id) {
+        int slot = slot(id);
+        while (keys[slot] != 0) {
+            if (keys[slot] == id) {
+                return values[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        return null;
+    }
+
+    void put(long id, RestingOrder order) {
+        if ((size + 1) * 2 > keys.length) {
+            resize();
+        }
+        int slot = slot(id);
+        while (keys[slot] != 0 && keys[slot] != id) {
+            slot = (slot + 1) & mask;
+        }
+        if (keys[slot] == 0) {
+            size++;
+        }
+        keys[slot] = id;
+        values[slot] = order;
+    }
+
+    void remove(long id) {
+        int slot = slot(id);
+        while (keys[slot] != id) {
+            if (keys[slot] == 0) {
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        // Backward-shift deletion keeps probe chains intact without tombstones
+        int gap = slot;
+        int next = (gap + 1) & mask;
+        while (keys[next] != 0) {
+            int home = slot(keys[next]);
+            if (((next - home) & mask) >= ((next - gap) & mask)) {
+                keys[gap] = keys[next];
+                values[gap] = values[next];
+                gap = next;
+            }
+            next = (next + 1) & mask;
+        }
+        keys[gap] = 0;
+        values[gap] = null;
+        size--;
+    }
+
+    int size() {
+        return size;
+    }
+
+    private int slot(long id) {
+        long h = id * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+
+    private void resize() {
+        long[] oldKeys = keys;
+        RestingOrder[] oldValues = values;
+        keys = new long[oldKeys.length * 2];
+        values = new RestingOrder[oldKeys.length * 2];
+        mask = keys.length - 1;
+        size = 0;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != 0) {
+                put(oldKeys[i], oldValues[i]);
+            }
+        }
+    }
+}
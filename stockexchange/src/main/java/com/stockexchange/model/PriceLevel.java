@@ -0,0 +1,71 @@
+package com.stockexchange.model;
+
+// All orders resting at one tick price, kept in arrival order
+public final class PriceLevel {
+    private long priceTicks;
+    private long totalQuantity;
+    private int orderCount;
+    private RestingOrder head;
+    private RestingOrder tail;
+
+    PriceLevel(long priceTicks) {
+        this.priceTicks = priceTicks;
+    }
+
+    // Reuse an emptied level for another price
+    void reset(long priceTicks) {
+        this.priceTicks = priceTicks;
+        this.totalQuantity = 0;
+        this.orderCount = 0;
+        this.head = null;
+        this.tail = null;
+    }
+
+    void append(RestingOrder order) {
+        order.level = this;
+        order.prev = tail;
+        order.next = null;
+        if (tail == null) {
+            head = order;
+        } else {
+            tail.next = order;
+        }
+        tail = order;
+        totalQuantity += order.quantity;
+        orderCount++;
+    }
+
+    void remove(RestingOrder order) {
+        if (order.prev == null) {
+            head = order.next;
+        } else {
+            order.prev.next = order.next;
+        }
+        if (order.next == null) {
+            tail = order.prev;
+        } else {
+            order.next.prev = order.prev;
+        }
+        totalQuantity -= order.quantity;
+        orderCount--;
+        order.level = null;
+        order.prev = null;
+        order.next = null;
+    }
+
+    // Partial fill: the order keeps its place in the queue
+    void reduce(RestingOrder order, int quantity) {
+        order.quantity -= quantity;
+        totalQuantity -= quantity;
+    }
+
+    boolean isEmpty() {
+        return head == null;
+    }
+
+    // Getters
+    public long getPriceTicks() { return priceTicks; }
+    public long getTotalQuantity() { return totalQuantity; }
+    public int getOrderCount() { return orderCount; }
+    public RestingOrder getHead() { return head; }
+}
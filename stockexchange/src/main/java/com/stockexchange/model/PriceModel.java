@@ -0,0 +1,39 @@
+package com.stockexchange.model;
+
+import java.util.random.RandomGenerator;
+
+// How a simulated price moves over one tick. volatility is the size of a typical move as a
+// fraction of the price; reversion is the fraction of the distance back to the anchor price
+// (the price the symbol was registered at) closed per tick.
+public enum PriceModel {
+    // Uniform move of up to +/- volatility, as MarketPriceSimulatorActor does
+    RANDOM_WALK {
+        @Override
+        public long next(long priceTicks, long anchorTicks, double volatility, double reversion, RandomGenerator random) {
+            return priceTicks + Math.round(priceTicks * (random.nextDouble() * 2 - 1) * volatility);
+        }
+    },
+    // Geometric Brownian motion: log returns normally distributed with volatility as standard deviation
+    GBM {
+        @Override
+        public long next(long priceTicks, long anchorTicks, double volatility, double reversion, RandomGenerator random) {
+            return Math.round(priceTicks * Math.exp(volatility * random.nextGaussian() - 0.5 * volatility * volatility));
+        }
+    },
+    // Ornstein-Uhlenbeck: normally distributed moves pulled back towards the anchor price
+    MEAN_REVERTING {
+        @Override
+        public long next(long priceTicks, long anchorTicks, double volatility, double reversion, RandomGenerator random) {
+            return priceTicks + Math.round(reversion * (anchorTicks - priceTicks)
+                    + priceTicks * volatility * random.nextGaussian());
+        }
+    };
+
+    // May return 0 or less; callers clamp to a tick
+    public abstract long next(long priceTicks, long anchorTicks, double volatility, double reversion, RandomGenerator random);
+
+    // Accepts the config spelling, e.g. "mean-reverting"
+    public static PriceModel fromName(String name) {
+        return valueOf(name.trim().toUpperCase().replace('-', '_'));
+    }
+}
@@ -0,0 +1,45 @@
+package com.stockexchange.model;
+
+// Mutable book entry for an order resting at a price level. Entries are pooled by the book and
+// reused once the order is filled or cancelled, so references must not be kept past the call.
+public final class RestingOrder {
+    public static final int NO_ACCOUNT = -1;
+
+    long id;
+    long sequence;
+    Order.OrderType side;
+    long priceTicks;
+    int quantity;
+    long timestamp;
+    // Account charged for the order, or NO_ACCOUNT when it is outside pre-trade risk
+    int account;
+    // Opaque to the book: whoever should hear about fills of this order, or null
+    Object owner;
+
+    // Intrusive FIFO links within the owning level; next also links the free list
+    PriceLevel level;
+    RestingOrder prev;
+    RestingOrder next;
+
+    void init(long id, long sequence, Order.OrderType side, long priceTicks, int quantity, long timestamp, int account,
+              Object owner) {
+        this.id = id;
+        this.sequence = sequence;
+        this.side = side;
+        this.priceTicks = priceTicks;
+        this.quantity = quantity;
+        this.timestamp = timestamp;
+        this.account = account;
+        this.owner = owner;
+    }
+
+    // Getters
+    public long getId() { return id; }
+    public long getSequence() { return sequence; }
+    public Order.OrderType getSide() { return side; }
+    public long getPriceTicks() { return priceTicks; }
+    public int getQuantity() { return quantity; }
+    public long getTimestamp() { return timestamp; }
+    public int getAccount() { return account; }
+    public Object getOwner() { return owner; }
+}
@@ -1,21 +1,24 @@
 package com.stockexchange.model;
 
-import java.math.BigDecimal;
+import java.io.Serializable;
 import java.util.UUID;
 
-public class Stock {
+public class Stock implements Serializable {
     private final String symbol;
     private final String companyName;
-    private final BigDecimal price;
+    private final TickSize tickSize;
+    private final long priceTicks;
 
-    public Stock(String symbol, String companyName, BigDecimal price) {
+    public Stock(String symbol, String companyName, TickSize tickSize, long priceTicks) {
         this.symbol = symbol;
         this.companyName = companyName;
-        this.price = price;
+        this.tickSize = tickSize;
+        this.priceTicks = priceTicks;
     }
 
     // Getters
     public String getSymbol() { return symbol; }
     public String getCompanyName() { return companyName; }
-    public BigDecimal getPrice() { return price; }
+    public TickSize getTickSize() { return tickSize; }
+    public long getPriceTicks() { return priceTicks; }
 }
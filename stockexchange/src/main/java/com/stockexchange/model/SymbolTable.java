@@ -0,0 +1,46 @@
+package com.stockexchange.model;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Dense int ids for symbols, assigned in registration order and never reused. Per-symbol state
+// lives in arrays indexed by the id, so the order path never hashes or compares a symbol string.
+// Ids are local to this process; anything written to disk or the wire keeps the symbol.
+public class SymbolTable {
+    public static final int UNKNOWN = -1;
+
+    private final Map<String, Integer> ids = new ConcurrentHashMap<>();
+    // A slot is written before its id is published in ids, so readers holding an id need no lock
+    private volatile String[] symbols = new String[64];
+    private int count;
+
+    // Only the exchange interns; producers look ids up once a symbol is registered
+    public synchronized int intern(String stockSymbol) {
+        Integer id = ids.get(stockSymbol);
+        if (id != null) {
+            return id;
+        }
+        if (count == symbols.length) {
+            symbols = Arrays.copyOf(symbols, count * 2);
+        }
+        symbols[count] = stockSymbol;
+        ids.put(stockSymbol, count);
+        return count++;
+    }
+
+    // UNKNOWN if the symbol was never interned
+    public int idOf(String stockSymbol) {
+        Integer id = ids.get(stockSymbol);
+        return id != null ? id : UNKNOWN;
+    }
+
+    public String symbol(int id) {
+        String[] current = symbols;
+        return id >= 0 && id < current.length ? current[id] : null;
+    }
+
+    public int size() {
+        return ids.size();
+    }
+}
@@ -0,0 +1,42 @@
+package com.stockexchange.model;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+// Minimum price increment of a symbol. Prices are carried as a long count of ticks everywhere and
+// only turned back into decimals for logging and display.
+public final class TickSize implements Serializable {
+    public static final TickSize CENT = new TickSize(new BigDecimal("0.01"));
+
+    private final BigDecimal tick;
+
+    public TickSize(BigDecimal tick) {
+        if (tick.signum() <= 0) {
+            throw new IllegalArgumentException("Tick size must be positive: " + tick);
+        }
+        this.tick = tick;
+    }
+
+    public long toTicks(BigDecimal price) {
+        return price.divide(tick, 0, RoundingMode.HALF_UP).longValueExact();
+    }
+
+    public BigDecimal toPrice(long ticks) {
+        return tick.multiply(BigDecimal.valueOf(ticks));
+    }
+
+    // For logging and display only
+    public String format(long ticks) {
+        return toPrice(ticks).toPlainString();
+    }
+
+    // Shifts a price by a number of basis points, rounding half away from zero to a whole tick
+    public static long offsetBps(long ticks, long bps) {
+        long scaled = ticks * bps;
+        return ticks + (scaled >= 0 ? (scaled + 5_000) / 10_000 : (scaled - 5_000) / 10_000);
+    }
+
+    // Getters
+    public BigDecimal getTick() { return tick; }
+}
@@ -0,0 +1,129 @@
+package com.stockexchange.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Every fill of one symbol in arrival order, stored column by column in fixed-size chunks so a
+// time range is a binary search followed by array copies. Trades are numbered from 0; once
+// maxTrades are kept the oldest chunk is dropped, and its chunk is reused for new trades. Each
+// trade also updates the configured BarSeries. Not thread-safe: owned by the symbol's book actor.
+public class TradeTape {
+    private static final class Chunk {
+        final long[] timestamps;
+        final long[] prices;
+        final int[] quantities;
+        // Order.OrderType ordinal of the incoming order that traded
+        final byte[] aggressors;
+
+        Chunk(int size) {
+            timestamps = new long[size];
+            prices = new long[size];
+            quantities = new int[size];
+            aggressors = new byte[size];
+        }
+    }
+
+    private static final Order.OrderType[] TYPES = Order.OrderType.values();
+
+    private final int chunkSize;
+    private final int maxChunks;
+    private final List<Chunk> chunks = new ArrayList<>();
+    private Chunk spare;
+    // Number of the first trade still kept, always at a chunk boundary
+    private long first;
+    private long next;
+    private final BarSeries[] bars;
+
+    public TradeTape(int chunkSize, long maxTrades, BarSeries... bars) {
+        if (chunkSize <= 0 || maxTrades < chunkSize) {
+            throw new IllegalArgumentException("Chunk size must be positive and no larger than max-trades");
+        }
+        this.chunkSize = chunkSize;
+        this.maxChunks = (int) Math.min(maxTrades / chunkSize, Integer.MAX_VALUE);
+        this.bars = bars;
+    }
+
+    // timestamp must not go backwards
+    public void append(long timestamp, long priceTicks, int quantity, Order.OrderType aggressor) {
+        int offset = (int) ((next - first) % chunkSize);
+        if (offset == 0) {
+            if (chunks.size() == maxChunks) {
+                spare = chunks.remove(0);
+                first += chunkSize;
+            }
+            chunks.add(spare != null ? spare : new Chunk(chunkSize));
+            spare = null;
+        }
+        Chunk chunk = chunks.get(chunks.size() - 1);
+        chunk.timestamps[offset] = timestamp;
+        chunk.prices[offset] = priceTicks;
+        chunk.quantities[offset] = quantity;
+        chunk.aggressors[offset] = (byte) aggressor.ordinal();
+        next++;
+
+        for (BarSeries series : bars) {
+            series.onTrade(timestamp, priceTicks, quantity);
+        }
+    }
+
+    // Number of the first kept trade at or after timestamp; getNext() if there is none
+    public long indexOf(long timestamp) {
+        long low = first;
+        long high = next;
+        while (low < high) {
+            long mid = (low + high) >>> 1;
+            if (getTimestamp(mid) < timestamp) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    // Copies trades from (inclusive) to to (exclusive) into the arrays starting at index 0,
+    // a chunk-sized run at a time
+    public void copy(long from, long to, long[] timestamps, long[] prices, int[] quantities, Order.OrderType[] aggressors) {
+        int at = 0;
+        long trade = from;
+        while (trade < to) {
+            Chunk chunk = chunk(trade);
+            int offset = offset(trade);
+            int length = (int) Math.min(chunkSize - offset, to - trade);
+            System.arraycopy(chunk.timestamps, offset, timestamps, at, length);
+            System.arraycopy(chunk.prices, offset, prices, at, length);
+            System.arraycopy(chunk.quantities, offset, quantities, at, length);
+            for (int i = 0; i < length; i++) {
+                aggressors[at + i] = TYPES[chunk.aggressors[offset + i]];
+            }
+            at += length;
+            trade += length;
+        }
+    }
+
+    // Null unless a series with this interval was configured
+    public BarSeries bars(long intervalNanos) {
+        for (BarSeries series : bars) {
+            if (series.getIntervalNanos() == intervalNanos) {
+                return series;
+            }
+        }
+        return null;
+    }
+
+    private Chunk chunk(long trade) {
+        return chunks.get((int) ((trade - first) / chunkSize));
+    }
+
+    private int offset(long trade) {
+        return (int) ((trade - first) % chunkSize);
+    }
+
+    // Getters
+    public long getFirst() { return first; }
+    public long getNext() { return next; }
+    public long getTimestamp(long trade) { return chunk(trade).timestamps[offset(trade)]; }
+    public long getPriceTicks(long trade) { return chunk(trade).prices[offset(trade)]; }
+    public int getQuantity(long trade) { return chunk(trade).quantities[offset(trade)]; }
+    public Order.OrderType getAggressor(long trade) { return TYPES[chunk(trade).aggressors[offset(trade)]]; }
+}
@@ -0,0 +1,110 @@
+package com.stockexchange.risk;
+
+import com.stockexchange.model.Order;
+import com.stockexchange.model.OrderBook;
+import com.stockexchange.model.PriceLevel;
+import com.stockexchange.model.TickSize;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+// The pre-trade checks of one symbol, run by its book before an order is journaled or matched.
+// Positions are per symbol, so they live here in a plain array only the book's thread touches;
+// order rate and open notional span symbols and are kept in PreTradeRisk.
+public class BookRisk {
+    public enum Result { PASSED, UNKNOWN_ACCOUNT, PRICE_BAND, POSITION, ORDER_RATE, OPEN_NOTIONAL }
+
+    private final PreTradeRisk limits;
+    // Currency value of one tick in millionths, at least 1
+    private final long tickMicros;
+    // Net filled shares per account, long positive
+    private final long[] positions;
+
+    BookRisk(PreTradeRisk limits, TickSize tickSize) {
+        this.limits = limits;
+        this.tickMicros = Math.max(tickSize.getTick().multiply(BigDecimal.valueOf(PreTradeRisk.microsPerUnit()))
+                .setScale(0, RoundingMode.HALF_UP).longValueExact(), 1);
+        this.positions = new long[limits.getMaxAccounts()];
+    }
+
+    // The price band's centre: the book's last trade, or its mid before the first trade, or 0 to
+    // skip the band while either side is empty
+    public static long referencePriceTicks(OrderBook book) {
+        if (book.getLastTradePriceTicks() > 0) {
+            return book.getLastTradePriceTicks();
+        }
+        PriceLevel bid = book.getBestBid();
+        PriceLevel ask = book.getBestAsk();
+        return bid != null && ask != null ? (bid.getPriceTicks() + ask.getPriceTicks()) / 2 : 0;
+    }
+
+    // Checks a new order and, if it passes, reserves its notional until it fills or is cancelled.
+    // referencePriceTicks is normally referencePriceTicks(book), 0 to skip the price band. nowNanos is
+    // System.nanoTime() of this JVM, so every book counts the rate on the same clock.
+    public Result check(int account, Order.OrderType side, long priceTicks, int quantity, long referencePriceTicks,
+                        long nowNanos) {
+        if (!tracked(account)) {
+            return Result.UNKNOWN_ACCOUNT;
+        }
+        if (referencePriceTicks > 0
+                && Math.abs(priceTicks - referencePriceTicks) * 10_000 > referencePriceTicks * limits.getPriceBandBps()) {
+            return Result.PRICE_BAND;
+        }
+        long position = positions[account];
+        long after = position + (side == Order.OrderType.BUY ? quantity : -quantity);
+        if (Math.abs(after) > limits.getMaxPosition() && Math.abs(after) > Math.abs(position)) {
+            return Result.POSITION;
+        }
+        if (!limits.countOrder(account, nowNanos)) {
+            return Result.ORDER_RATE;
+        }
+        if (!limits.reserve(account, notional(priceTicks, quantity))) {
+            return Result.OPEN_NOTIONAL;
+        }
+        return Result.PASSED;
+    }
+
+    // The methods below take accounts of orders already in the book. One recovered after
+    // max-accounts was lowered can be out of range; it is left untracked rather than failing.
+
+    // An amend that adds quantity to a resting order; false if the notional does not fit
+    public boolean reserve(int account, long priceTicks, int quantity) {
+        return !tracked(account) || limits.reserve(account, notional(priceTicks, quantity));
+    }
+
+    // A resting order recovered from the journal or a snapshot; charged without checking limits
+    public void restore(int account, long priceTicks, int quantity) {
+        if (tracked(account)) {
+            limits.charge(account, notional(priceTicks, quantity));
+        }
+    }
+
+    // Quantity that is no longer open: filled, cancelled or amended away
+    public void release(int account, long priceTicks, int quantity) {
+        if (quantity > 0 && tracked(account)) {
+            limits.release(account, notional(priceTicks, quantity));
+        }
+    }
+
+    public void onFill(int account, Order.OrderType side, int quantity) {
+        if (tracked(account)) {
+            positions[account] += side == Order.OrderType.BUY ? quantity : -quantity;
+        }
+    }
+
+    private boolean tracked(int account) {
+        return account >= 0 && account < positions.length;
+    }
+
+    // Saturates rather than overflows, which fails the notional check
+    private long notional(long priceTicks, int quantity) {
+        long ticks = priceTicks * quantity;
+        if (priceTicks != 0 && ticks / priceTicks != quantity || ticks > Long.MAX_VALUE / tickMicros) {
+            return Long.MAX_VALUE / 2;
+        }
+        return ticks * tickMicros;
+    }
+
+    // Getters
+    public long getPosition(int account) { return positions[account]; }
+}
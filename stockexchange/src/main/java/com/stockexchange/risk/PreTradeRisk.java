@@ -0,0 +1,96 @@
+package com.stockexchange.risk;
+
+import akka.actor.typed.ActorSystem;
+import akka.actor.typed.Extension;
+import akka.actor.typed.ExtensionId;
+import com.stockexchange.model.TickSize;
+import com.typesafe.config.Config;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Per-account limits shared by every book, configured under stockexchange.risk. Accounts are
+// dense ids below max-accounts, each with a preallocated slot in these arrays, so a check is a
+// few atomic operations and never allocates. Open notional includes orders recovered from the
+// journal or a snapshot that still rest; positions and order rate count only since startup.
+public class PreTradeRisk implements Extension {
+    public static final ExtensionId<PreTradeRisk> ID = new ExtensionId<PreTradeRisk>() {
+        @Override
+        public PreTradeRisk createExtension(ActorSystem<?> system) {
+            return new PreTradeRisk(system.settings().config().getConfig("stockexchange.risk"));
+        }
+    };
+
+    private static final long MICROS_PER_UNIT = 1_000_000;
+    private static final long NANOS_PER_SECOND = 1_000_000_000;
+
+    private final boolean enabled;
+    private final int maxAccounts;
+    private final long maxPosition;
+    private final long maxOpenNotionalMicros;
+    private final long maxOrdersPerSecond;
+    private final long priceBandBps;
+    // Notional of each account's open orders across all symbols, in millionths of a currency unit
+    private final AtomicLongArray openNotional;
+    // Orders per account in the current one-second window
+    private final AtomicLongArray rateWindow;
+    private final AtomicLongArray rateCount;
+
+    public static PreTradeRisk get(ActorSystem<?> system) {
+        return system.registerExtension(ID);
+    }
+
+    PreTradeRisk(Config config) {
+        this.enabled = config.getBoolean("enabled");
+        this.maxAccounts = config.getInt("max-accounts");
+        this.maxPosition = config.getLong("max-position");
+        this.maxOpenNotionalMicros = Math.multiplyExact(config.getLong("max-open-notional"), MICROS_PER_UNIT);
+        this.maxOrdersPerSecond = config.getLong("max-orders-per-second");
+        this.priceBandBps = config.getLong("price-band-bps");
+        this.openNotional = new AtomicLongArray(maxAccounts);
+        this.rateWindow = new AtomicLongArray(maxAccounts);
+        this.rateCount = new AtomicLongArray(maxAccounts);
+    }
+
+    // Null when risk checks are off
+    public BookRisk forBook(TickSize tickSize) {
+        return enabled ? new BookRisk(this, tickSize) : null;
+    }
+
+    // Counts the order against the account's rate. Two books racing over a window boundary can
+    // let a few extra orders through, which is fine for a rate limit.
+    boolean countOrder(int account, long nowNanos) {
+        long window = nowNanos / NANOS_PER_SECOND;
+        if (rateWindow.get(account) != window) {
+            rateWindow.set(account, window);
+            rateCount.set(account, 0);
+        }
+        return rateCount.incrementAndGet(account) <= maxOrdersPerSecond;
+    }
+
+    boolean reserve(int account, long notionalMicros) {
+        if (openNotional.addAndGet(account, notionalMicros) <= maxOpenNotionalMicros) {
+            return true;
+        }
+        openNotional.addAndGet(account, -notionalMicros);
+        return false;
+    }
+
+    void charge(int account, long notionalMicros) {
+        openNotional.addAndGet(account, notionalMicros);
+    }
+
+    void release(int account, long notionalMicros) {
+        openNotional.addAndGet(account, -notionalMicros);
+    }
+
+    // Open order notional of the account in currency units
+    public double getOpenNotional(int account) {
+        return (double) openNotional.get(account) / MICROS_PER_UNIT;
+    }
+
+    // Getters
+    public int getMaxAccounts() { return maxAccounts; }
+    public long getMaxPosition() { return maxPosition; }
+    public long getPriceBandBps() { return priceBandBps; }
+    static long microsPerUnit() { return MICROS_PER_UNIT; }
+}
@@ -0,0 +1,100 @@
+package com.stockexchange.backtest;
+
+import com.stockexchange.model.PriceModel;
+import com.stockexchange.model.TickSize;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class BacktestTest {
+    private Path events;
+    private final List<Path> fillFiles = new ArrayList<>();
+
+    @Before
+    public void writeEvents() throws IOException {
+        // Orders around each symbol's price, some cancelled or amended later by ref
+        Random random = new Random(3);
+        StringBuilder lines = new StringBuilder("# time,symbol,type,...\n");
+        long time = 0;
+        for (int i = 0; i < 5_000; i++) {
+            time += 1 + random.nextInt(200_000);
+            String symbol = random.nextBoolean() ? "IBM" : "MSFT";
+            double price = (symbol.equals("IBM") ? 100 : 300) + random.nextInt(200) / 100.0 - 1;
+            int event = random.nextInt(10);
+            if (event == 0 && i > 0) {
+                lines.append(time).append(',').append(symbol).append(",CANCEL,").append(random.nextInt(i)).append('\n');
+            } else if (event == 1 && i > 0) {
+                lines.append(time).append(',').append(symbol).append(",AMEND,").append(random.nextInt(i)).append(',')
+                        .append(random.nextInt(50)).append('\n');
+            } else {
+                lines.append(time).append(',').append(symbol).append(random.nextBoolean() ? ",BUY," : ",SELL,")
+                        .append(String.format("%.2f", price)).append(',').append(1 + random.nextInt(100)).append(',')
+                        .append(i).append('\n');
+            }
+        }
+        events = Files.createTempFile("backtest", ".csv");
+        Files.writeString(events, lines);
+    }
+
+    @After
+    public void deleteFiles() throws IOException {
+        Files.deleteIfExists(events);
+        for (Path file : fillFiles) {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    public void sameFileAndSeedGiveTheSameDigestAndFills() throws IOException {
+        for (boolean simulatePrices : new boolean[] {false, true}) {
+            Path firstFills = fillsFile();
+            Path secondFills = fillsFile();
+            List<String> first = run(42, simulatePrices, firstFills);
+            List<String> second = run(42, simulatePrices, secondFills);
+
+            assertEquals(first, second);
+            assertTrue(Files.readAllLines(firstFills).size() > 100);
+            assertEquals(Files.readAllLines(firstFills), Files.readAllLines(secondFills));
+        }
+    }
+
+    @Test
+    public void anotherSeedMovesTheMarketMakers() throws IOException {
+        assertFalse(run(42, true, null).equals(run(43, true, null)));
+    }
+
+    // The digest and per-symbol lines of the report; the summary's wall-clock timings vary
+    private List<String> run(long seed, boolean simulatePrices, Path fills) {
+        ByteArrayOutputStream report = new ByteArrayOutputStream();
+        new Backtest(events, seed, symbol -> TickSize.CENT, 10, 5, simulatePrices, 1_000_000, PriceModel.GBM, 0.001,
+                0.1, fills).run(new PrintStream(report, true, StandardCharsets.UTF_8));
+
+        String[] lines = report.toString(StandardCharsets.UTF_8).split("\n");
+        List<String> kept = new ArrayList<>();
+        kept.add(lines[0].substring(lines[0].indexOf(" fills, digest ")));
+        for (int i = 1; i < lines.length; i++) {
+            kept.add(lines[i]);
+        }
+        return kept;
+    }
+
+    private Path fillsFile() throws IOException {
+        Path file = Files.createTempFile("backtest-fills", ".csv");
+        fillFiles.add(file);
+        return file;
+    }
+}
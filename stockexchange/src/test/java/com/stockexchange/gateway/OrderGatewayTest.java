@@ -0,0 +1,201 @@
+package com.stockexchange.gateway;
+
+import akka.actor.typed.ActorRef;
+import akka.actor.typed.ActorSystem;
+import akka.actor.typed.javadsl.Behaviors;
+import com.stockexchange.ingest.OrderIngest;
+import com.stockexchange.ingest.OrderRing;
+import com.stockexchange.messages.Message;
+import com.stockexchange.messages.MessageCodec;
+import com.stockexchange.model.SymbolTable;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class OrderGatewayTest {
+    private static final long TIMEOUT_NANOS = 5_000_000_000L;
+
+    private ActorSystem<Message.Command> system;
+    private final OrderRing ring = new OrderRing(4);
+    private OrderGateway gateway;
+    private final List<Socket> sockets = new ArrayList<>();
+
+    @Before
+    public void startGateway() {
+        system = ActorSystem.create(Behaviors.<Message.Command>empty(), "OrderGatewayTest");
+        SymbolTable symbols = new SymbolTable();
+        symbols.intern("IBM");
+        OrderIngest ingest = new OrderIngest(4, 4);
+        ingest.register("IBM", ring);
+        gateway = new OrderGateway(system, ingest, symbols, new InetSocketAddress("127.0.0.1", 0), 256);
+        gateway.start();
+    }
+
+    @After
+    public void stopGateway() throws IOException {
+        for (Socket socket : sockets) {
+            socket.close();
+        }
+        gateway.close();
+        system.terminate();
+    }
+
+    @Test
+    public void framesSplitAcrossReadsReachTheRingAndGetTheirReplies() throws Exception {
+        byte[] frames = encode(
+                order(1, Message.TradeType.BUY, 9050, 100, "IBM", 7),
+                order(2, Message.TradeType.SELL, 9100, 5, "IBM", 8),
+                order(3, Message.TradeType.BUY, 9000, 1, "IBM", 9));
+        Socket socket = connect();
+        // Chunks that never line up with a frame boundary
+        for (int at = 0; at < frames.length; at += 7) {
+            socket.getOutputStream().write(frames, at, Math.min(7, frames.length - at));
+            socket.getOutputStream().flush();
+            Thread.sleep(1);
+        }
+
+        List<String> received = new ArrayList<>();
+        List<ActorRef<Message.Command>> replyTo = new ArrayList<>();
+        drain(3, received, replyTo);
+        assertEquals(List.of("BUY 9050x100@7", "SELL 9100x5@8", "BUY 9000x1@9"), received);
+
+        replyTo.get(0).tell(new Message.Ack(44, "IBM"));
+        replyTo.get(0).tell(new Message.Fill(3, 44, "IBM", 9050, 25));
+        assertEquals(new Message.Ack(44, "IBM"), readReply(socket));
+        assertEquals(new Message.Fill(3, 44, "IBM", 9050, 25), readReply(socket));
+    }
+
+    @Test
+    public void invalidOrdersAreRejectedWithoutReachingTheRing() throws Exception {
+        Socket socket = connect();
+        socket.getOutputStream().write(encode(
+                order(1, Message.TradeType.BUY, 9050, 100, "MSFT", 0),
+                order(2, Message.TradeType.BUY, 9050, 0, "IBM", 0),
+                order(3, Message.TradeType.BUY, 0, 100, "IBM", 0)));
+
+        assertEquals(new Message.Ack(Message.REJECTED, "MSFT"), readReply(socket));
+        assertEquals(new Message.Ack(Message.REJECTED, "IBM"), readReply(socket));
+        assertEquals(new Message.Ack(Message.REJECTED, "IBM"), readReply(socket));
+        assertEquals(0, ring.size());
+    }
+
+    @Test
+    public void badFrameLengthsCloseOnlyThatConnection() throws Exception {
+        Socket empty = connect();
+        empty.getOutputStream().write(header(MessageCodec.OrderFlyweight.TEMPLATE_ID, 0));
+        Socket oversized = connect();
+        oversized.getOutputStream().write(header(MessageCodec.OrderFlyweight.TEMPLATE_ID, 1000));
+        Socket shortBlock = connect();
+        shortBlock.getOutputStream().write(header(MessageCodec.OrderFlyweight.TEMPLATE_ID, 4));
+        shortBlock.getOutputStream().write(new byte[4]);
+        assertEquals(-1, empty.getInputStream().read());
+        assertEquals(-1, oversized.getInputStream().read());
+        assertEquals(-1, shortBlock.getInputStream().read());
+
+        Socket good = connect();
+        good.getOutputStream().write(encode(order(1, Message.TradeType.SELL, 9050, 10, "IBM", 0)));
+        List<String> received = new ArrayList<>();
+        drain(1, received, new ArrayList<>());
+        assertEquals(List.of("SELL 9050x10@0"), received);
+    }
+
+    @Test
+    public void fullRingStallsTheConnectionUntilThereIsRoomAndKeepsTheOrder() throws Exception {
+        Message.Order[] orders = new Message.Order[20];
+        for (int i = 0; i < orders.length; i++) {
+            orders[i] = order(i, Message.TradeType.BUY, i + 1, 1, "IBM", 0);
+        }
+        Socket socket = connect();
+        socket.getOutputStream().write(encode(orders));
+
+        long deadline = System.nanoTime() + TIMEOUT_NANOS;
+        while (ring.size() < 4) {
+            assertTrue("Ring never filled", System.nanoTime() < deadline);
+            Thread.sleep(1);
+        }
+        // Stalled rather than dropping or rejecting what does not fit
+        Thread.sleep(20);
+        assertEquals(4, ring.size());
+
+        List<String> received = new ArrayList<>();
+        deadline = System.nanoTime() + TIMEOUT_NANOS;
+        while (received.size() < orders.length) {
+            assertTrue("Stalled connection never resumed", System.nanoTime() < deadline);
+            ring.drain(slot -> received.add(String.valueOf(slot.priceTicks)), 3);
+            Thread.sleep(1);
+        }
+        List<String> expected = new ArrayList<>();
+        for (int i = 1; i <= orders.length; i++) {
+            expected.add(String.valueOf(i));
+        }
+        assertEquals(expected, received);
+    }
+
+    private Socket connect() throws IOException {
+        Socket socket = new Socket();
+        sockets.add(socket);
+        socket.setTcpNoDelay(true);
+        socket.setSoTimeout(5000);
+        socket.connect(gateway.getAddress());
+        return socket;
+    }
+
+    // Drains the ring until count orders have arrived, as "side pricexquantity@account"
+    private void drain(int count, List<String> received, List<ActorRef<Message.Command>> replyTo)
+            throws InterruptedException {
+        long deadline = System.nanoTime() + TIMEOUT_NANOS;
+        while (received.size() < count) {
+            if (System.nanoTime() > deadline) {
+                fail("Got " + received + " of " + count + " orders");
+            }
+            ring.drain(slot -> {
+                received.add(slot.side + " " + slot.priceTicks + "x" + slot.quantity + "@" + slot.account);
+                replyTo.add(slot.replyTo);
+            }, 8);
+            Thread.sleep(1);
+        }
+    }
+
+    private static Message.Order order(int id, Message.TradeType action, long priceTicks, int quantity, String symbol,
+                                       int account) {
+        return new Message.Order(id, action, priceTicks, quantity, symbol, account);
+    }
+
+    private static byte[] encode(Message.Order... orders) {
+        ByteBuffer buffer = ByteBuffer.allocate(orders.length * MessageCodec.encodedLength(orders[0]))
+                .order(MessageCodec.BYTE_ORDER);
+        int at = 0;
+        for (Message.Order order : orders) {
+            at += MessageCodec.encode(order, buffer, at);
+        }
+        return buffer.array();
+    }
+
+    private static byte[] header(int templateId, int blockLength) {
+        return ByteBuffer.allocate(MessageCodec.HEADER_LENGTH).order(MessageCodec.BYTE_ORDER)
+                .putShort((short) templateId).putShort((short) blockLength).array();
+    }
+
+    private static Object readReply(Socket socket) throws IOException {
+        DataInputStream in = new DataInputStream(socket.getInputStream());
+        byte[] header = new byte[MessageCodec.HEADER_LENGTH];
+        in.readFully(header);
+        int blockLength = MessageCodec.blockLength(ByteBuffer.wrap(header).order(MessageCodec.BYTE_ORDER), 0);
+        byte[] frame = new byte[MessageCodec.HEADER_LENGTH + blockLength];
+        System.arraycopy(header, 0, frame, 0, header.length);
+        in.readFully(frame, header.length, blockLength);
+        return MessageCodec.decode(ByteBuffer.wrap(frame).order(MessageCodec.BYTE_ORDER), 0);
+    }
+}
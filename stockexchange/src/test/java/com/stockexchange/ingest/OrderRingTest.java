@@ -0,0 +1,137 @@
+package com.stockexchange.ingest;
+
+import com.stockexchange.model.Order;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class OrderRingTest {
+    @Test(expected = IllegalArgumentException.class)
+    public void capacityMustBeAPowerOfTwo() {
+        new OrderRing(12);
+    }
+
+    @Test
+    public void offersUntilFullThenDrainsInOrderAndWrapsAround() {
+        OrderRing ring = new OrderRing(4);
+        for (int round = 0; round < 3; round++) {
+            for (int i = 0; i < 4; i++) {
+                assertTrue(ring.offer(Order.OrderType.BUY, 100 * round + i, i + 1, i, null));
+            }
+            assertFalse(ring.offer(Order.OrderType.SELL, 1, 1, 0, null));
+            assertEquals(-1, ring.tryClaim());
+            assertEquals(4, ring.size());
+
+            List<String> drained = new ArrayList<>();
+            assertEquals(3, ring.drain(slot -> drained.add(slot.priceTicks + "x" + slot.quantity + "@" + slot.account), 3));
+            assertEquals(1, ring.size());
+            assertTrue(ring.hasPending());
+            assertEquals(1, ring.drain(slot -> drained.add(slot.priceTicks + "x" + slot.quantity + "@" + slot.account), 3));
+            assertFalse(ring.hasPending());
+            assertEquals(List.of(
+                    100 * round + "x1@0", 100 * round + 1 + "x2@1", 100 * round + 2 + "x3@2", 100 * round + 3 + "x4@3"),
+                    drained);
+        }
+    }
+
+    @Test
+    public void drainStopsAtAClaimedSlotThatIsNotYetPublished() {
+        OrderRing ring = new OrderRing(8);
+        long first = ring.claim();
+        long second = ring.claim();
+        ring.slot(second).quantity = 2;
+        ring.publish(second);
+
+        List<Integer> drained = new ArrayList<>();
+        assertEquals(0, ring.drain(slot -> drained.add(slot.quantity), 8));
+        assertFalse(ring.hasPending());
+
+        ring.slot(first).quantity = 1;
+        ring.publish(first);
+        assertEquals(2, ring.drain(slot -> drained.add(slot.quantity), 8));
+        assertEquals(List.of(1, 2), drained);
+    }
+
+    @Test
+    public void drainedSlotsDropTheirReplyTo() {
+        OrderRing ring = new OrderRing(2);
+        long sequence = ring.claim();
+        OrderSlot slot = ring.slot(sequence);
+        ring.publish(sequence);
+        ring.drain(s -> {}, 1);
+        assertNull(slot.replyTo);
+    }
+
+    @Test
+    public void wakesTheConsumerOncePerDrain() {
+        OrderRing ring = new OrderRing(8);
+        AtomicInteger wakeups = new AtomicInteger();
+        ring.setWakeup(wakeups::incrementAndGet);
+
+        ring.offer(Order.OrderType.BUY, 1, 1, 0, null);
+        ring.offer(Order.OrderType.BUY, 2, 1, 0, null);
+        ring.offer(Order.OrderType.BUY, 3, 1, 0, null);
+        assertEquals(1, wakeups.get());
+
+        // A partial drain leaves work behind; the consumer re-arms with signal
+        assertEquals(1, ring.drain(slot -> {}, 1));
+        ring.offer(Order.OrderType.BUY, 4, 1, 0, null);
+        assertEquals(2, wakeups.get());
+        assertEquals(3, ring.drain(slot -> {}, 8));
+        assertFalse(ring.hasPending());
+
+        ring.offer(Order.OrderType.BUY, 5, 1, 0, null);
+        assertEquals(3, wakeups.get());
+        ring.signal();
+        assertEquals(3, wakeups.get());
+        ring.drain(slot -> {}, 8);
+        ring.signal();
+        assertEquals(4, wakeups.get());
+    }
+
+    @Test
+    public void concurrentProducersLoseNothingAndKeepTheirOwnOrder() throws InterruptedException {
+        OrderRing ring = new OrderRing(64);
+        int producers = 4;
+        int perProducer = 50_000;
+        Thread[] threads = new Thread[producers];
+        for (int p = 0; p < producers; p++) {
+            int producer = p;
+            threads[p] = new Thread(() -> {
+                for (int i = 0; i < perProducer; i++) {
+                    long sequence = ring.claim();
+                    OrderSlot slot = ring.slot(sequence);
+                    slot.account = producer;
+                    slot.priceTicks = i;
+                    ring.publish(sequence);
+                }
+            });
+            threads[p].start();
+        }
+
+        long[] next = new long[producers];
+        int[] received = {0};
+        boolean[] inOrder = {true};
+        while (received[0] < producers * perProducer) {
+            received[0] += ring.drain(slot -> {
+                inOrder[0] &= slot.priceTicks == next[slot.account];
+                next[slot.account]++;
+            }, 256);
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertTrue(inOrder[0]);
+        for (int p = 0; p < producers; p++) {
+            assertEquals(perProducer, next[p]);
+        }
+        assertEquals(0, ring.size());
+    }
+}
@@ -0,0 +1,305 @@
+package com.stockexchange.journal;
+
+import com.stockexchange.model.BookSnapshot;
+import com.stockexchange.model.FillSink;
+import com.stockexchange.model.Order;
+import com.stockexchange.model.OrderBook;
+import com.stockexchange.model.RestingOrder;
+import com.stockexchange.model.TickSize;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class JournalTest {
+    private static final FillSink NO_FILLS = (takerId, makerId, takerSide, priceTicks, quantity) -> {};
+
+    private Path directory;
+
+    @Before
+    public void createDirectory() throws IOException {
+        directory = Files.createTempDirectory("journal-test");
+    }
+
+    @After
+    public void deleteDirectory() throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    @Test
+    public void replaysEveryRecordTypeAfterReopening() {
+        JournalStore store = store(4096);
+        try (Journal journal = store.open("IBM")) {
+            journal.appendRegisterStock("IBM", "International Business Machines", "0.01", 9077);
+            journal.appendRegisterMarketMaker("IBM", 9077);
+            journal.appendOrder(Order.OrderType.BUY, 9050, 100, 42, 7);
+            journal.appendOrder(Order.OrderType.SELL, 9100, 5, 43, RestingOrder.NO_ACCOUNT);
+            journal.appendCancel(1);
+            journal.appendAmend(2, 3);
+            journal.appendQuote(9000, 10, 9200, 20, 44);
+        }
+
+        List<String> records = new ArrayList<>();
+        try (Journal journal = store.open("IBM")) {
+            assertEquals(7, journal.replay(recorder(records)));
+        }
+        assertEquals(List.of(
+                "stock IBM International Business Machines 0.01 9077",
+                "maker IBM 9077",
+                "order BUY 9050 100 42 7",
+                "order SELL 9100 5 43 -1",
+                "cancel 1",
+                "amend 2 3",
+                "quote 9000 10 9200 20 44"), records);
+    }
+
+    @Test
+    public void appendsAfterTheLastRecordOnReopen() {
+        JournalStore store = store(4096);
+        try (Journal journal = store.open("IBM")) {
+            journal.appendCancel(1);
+        }
+        try (Journal journal = store.open("IBM")) {
+            journal.appendCancel(2);
+        }
+
+        List<String> records = new ArrayList<>();
+        try (Journal journal = store.open("IBM")) {
+            journal.replay(recorder(records));
+        }
+        assertEquals(List.of("cancel 1", "cancel 2"), records);
+    }
+
+    @Test
+    public void tornRecordEndsTheJournalAndIsOverwritten() throws IOException {
+        JournalStore store = store(4096);
+        long tornAt;
+        try (Journal journal = store.open("IBM")) {
+            journal.appendCancel(1);
+            journal.appendCancel(2);
+            tornAt = journal.position();
+            journal.appendCancel(3);
+        }
+        // A crash between writing the body and publishing the length leaves the length at 0
+        try (FileChannel channel = FileChannel.open(directory.resolve("IBM.journal"), StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.allocate(4), tornAt);
+        }
+
+        List<String> records = new ArrayList<>();
+        try (Journal journal = store.open("IBM")) {
+            assertEquals(2, journal.replay(recorder(records)));
+            assertEquals(tornAt, journal.position());
+            journal.appendAmend(2, 50);
+        }
+        assertEquals(List.of("cancel 1", "cancel 2"), records);
+
+        records.clear();
+        try (Journal journal = store.open("IBM")) {
+            assertEquals(3, journal.replay(recorder(records)));
+        }
+        assertEquals(List.of("cancel 1", "cancel 2", "amend 2 50"), records);
+    }
+
+    @Test
+    public void recordsThatDoNotFitMoveToTheNextSegment() {
+        // Records of 13, 17 and 30 bytes against a 64-byte segment end segments on varying gaps
+        JournalStore store = store(64);
+        List<String> expected = new ArrayList<>();
+        try (Journal journal = store.open("IBM")) {
+            for (int i = 1; i <= 200; i++) {
+                switch (i % 3) {
+                    case 0 -> {
+                        journal.appendCancel(i);
+                        expected.add("cancel " + i);
+                    }
+                    case 1 -> {
+                        journal.appendAmend(i, i * 2);
+                        expected.add("amend " + i + " " + i * 2);
+                    }
+                    default -> {
+                        journal.appendOrder(Order.OrderType.BUY, i, i, i, i);
+                        expected.add("order BUY " + i + " " + i + " " + i + " " + i);
+                    }
+                }
+            }
+            assertTrue(journal.position() > 64 * 50);
+        }
+
+        List<String> records = new ArrayList<>();
+        try (Journal journal = store.open("IBM")) {
+            assertEquals(200, journal.replay(recorder(records)));
+        }
+        assertEquals(expected, records);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsARecordLargerThanASegment() {
+        try (Journal journal = store(32).open("IBM")) {
+            journal.appendOrder(Order.OrderType.BUY, 1, 1, 1, 1);
+        }
+    }
+
+    @Test
+    public void replaysFromAPositionInALaterSegment() {
+        JournalStore store = store(64);
+        long from;
+        try (Journal journal = store.open("IBM")) {
+            for (int i = 1; i <= 10; i++) {
+                journal.appendCancel(i);
+            }
+            from = journal.position();
+            journal.appendCancel(11);
+            journal.appendCancel(12);
+        }
+        assertTrue(from > 64);
+
+        List<String> records = new ArrayList<>();
+        try (Journal journal = store.open("IBM")) {
+            assertEquals(2, journal.replay(recorder(records), from));
+        }
+        assertEquals(List.of("cancel 11", "cancel 12"), records);
+    }
+
+    @Test
+    public void snapshotPlusJournalTailRebuildsTheBook() {
+        JournalStore store = store(256);
+        TickSize tickSize = new TickSize(new BigDecimal("0.01"));
+        OrderBook live = new OrderBook("IBM", tickSize);
+        BookSnapshot snapshot = new BookSnapshot();
+        try (Journal journal = store.open("IBM")) {
+            for (int i = 0; i < 20; i++) {
+                submit(journal, live, i % 2 == 0 ? Order.OrderType.BUY : Order.OrderType.SELL,
+                        i % 2 == 0 ? 1000 - i : 1010 + i, 10 + i, i, i % 4);
+            }
+            journal.appendCancel(3);
+            live.cancelOrder(3);
+
+            live.snapshotTo(snapshot);
+            snapshot.setJournalPosition(journal.position());
+            store.saveSnapshot("IBM", snapshot);
+
+            // Crosses the book, so the tail also replays fills against snapshot orders
+            submit(journal, live, Order.OrderType.BUY, 1015, 25, 100, 5);
+            journal.appendAmend(2, 4);
+            live.amendOrder(2, 4);
+            submit(journal, live, Order.OrderType.SELL, 990, 7, 101, RestingOrder.NO_ACCOUNT);
+        }
+
+        OrderBook recovered = new OrderBook("IBM", tickSize);
+        BookSnapshot loaded = new BookSnapshot();
+        assertTrue(store.loadSnapshot("IBM", loaded));
+        recovered.restore(loaded);
+        try (Journal journal = store.open("IBM")) {
+            journal.replay(new JournalHandler() {
+                @Override
+                public void onOrder(Order.OrderType side, long priceTicks, int quantity, long timestamp, int account) {
+                    recovered.addOrder(side, priceTicks, quantity, timestamp, account, null, NO_FILLS);
+                }
+
+                @Override
+                public void onCancel(long orderId) {
+                    recovered.cancelOrder(orderId);
+                }
+
+                @Override
+                public void onAmend(long orderId, int quantity) {
+                    recovered.amendOrder(orderId, quantity);
+                }
+            }, loaded.getJournalPosition());
+        }
+
+        BookSnapshot expected = new BookSnapshot();
+        BookSnapshot actual = new BookSnapshot();
+        live.snapshotTo(expected);
+        recovered.snapshotTo(actual);
+        assertSameBook(expected, actual);
+        assertEquals(live.getLastTradePriceTicks(), recovered.getLastTradePriceTicks());
+        assertFalse(recovered.getRestingOrderCount() == 0);
+    }
+
+    @Test
+    public void missingSnapshotLeavesTheSnapshotUntouched() {
+        BookSnapshot snapshot = new BookSnapshot();
+        assertFalse(store(4096).loadSnapshot("IBM", snapshot));
+        assertEquals(0, snapshot.getCount());
+    }
+
+    private JournalStore store(int segmentSize) {
+        return new JournalStore(directory, segmentSize, 0, 0, 0);
+    }
+
+    private static void submit(Journal journal, OrderBook book, Order.OrderType side, long priceTicks, int quantity,
+                               long timestamp, int account) {
+        journal.appendOrder(side, priceTicks, quantity, timestamp, account);
+        book.addOrder(side, priceTicks, quantity, timestamp, account, null, NO_FILLS);
+    }
+
+    private static void assertSameBook(BookSnapshot expected, BookSnapshot actual) {
+        assertEquals(expected.getCount(), actual.getCount());
+        for (int i = 0; i < expected.getCount(); i++) {
+            assertEquals(expected.getId(i), actual.getId(i));
+            assertEquals(expected.getSequence(i), actual.getSequence(i));
+            assertEquals(expected.getSide(i), actual.getSide(i));
+            assertEquals(expected.getPriceTicks(i), actual.getPriceTicks(i));
+            assertEquals(expected.getQuantity(i), actual.getQuantity(i));
+            assertEquals(expected.getTimestamp(i), actual.getTimestamp(i));
+            assertEquals(expected.getAccount(i), actual.getAccount(i));
+        }
+        assertEquals(expected.getNextOrderId(), actual.getNextOrderId());
+        assertEquals(expected.getNextSequence(), actual.getNextSequence());
+    }
+
+    private static JournalHandler recorder(List<String> records) {
+        return new JournalHandler() {
+            @Override
+            public void onRegisterStock(String stockSymbol, String companyName, String tickSize, long priceTicks) {
+                records.add("stock " + stockSymbol + " " + companyName + " " + tickSize + " " + priceTicks);
+            }
+
+            @Override
+            public void onRegisterMarketMaker(String stockSymbol, long initialPriceTicks) {
+                records.add("maker " + stockSymbol + " " + initialPriceTicks);
+            }
+
+            @Override
+            public void onOrder(Order.OrderType side, long priceTicks, int quantity, long timestamp, int account) {
+                records.add("order " + side + " " + priceTicks + " " + quantity + " " + timestamp + " " + account);
+            }
+
+            @Override
+            public void onCancel(long orderId) {
+                records.add("cancel " + orderId);
+            }
+
+            @Override
+            public void onAmend(long orderId, int quantity) {
+                records.add("amend " + orderId + " " + quantity);
+            }
+
+            @Override
+            public void onQuote(long bidPriceTicks, int bidQuantity, long askPriceTicks, int askQuantity, long timestamp) {
+                records.add("quote " + bidPriceTicks + " " + bidQuantity + " " + askPriceTicks + " " + askQuantity
+                        + " " + timestamp);
+            }
+        };
+    }
+}
@@ -0,0 +1,99 @@
+package com.stockexchange.messages;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class MessageCodecTest {
+    private static final List<Object> MESSAGES = List.of(
+            new Message.Order(1, Message.TradeType.BUY, 9050, 100, "IBM", 7),
+            new Message.Order(2, Message.TradeType.SELL, Long.MAX_VALUE, Integer.MAX_VALUE, "BRK.B", -1),
+            new Message.Fill(3, 44, "IBM", 9050, 25),
+            new Message.Ack(44, "IBM"),
+            new Message.Ack(Message.REJECTED, "IBM"),
+            new Message.Cancel(4, 44, "ABCDEFGH"),
+            new Message.Amend(5, 44, "IBM", 10),
+            new Message.Trade(45, 123456789L, "IBM", 25, 9050, Message.TradeType.MATCH),
+            new Message.TopOfBook("IBM", 9, 9050, 100, 9100, 200, 9075),
+            new Message.DepthDelta("IBM", 10, Message.TradeType.SELL, 9100, 0));
+
+    @Test
+    public void everyCoveredMessageRoundTrips() {
+        ByteBuffer buffer = ByteBuffer.allocate(64).order(MessageCodec.BYTE_ORDER);
+        for (Object message : MESSAGES) {
+            int length = MessageCodec.encode(message, buffer, 3);
+            assertEquals(MessageCodec.encodedLength(message), length);
+            assertEquals(length - MessageCodec.HEADER_LENGTH, MessageCodec.blockLength(buffer, 3));
+            assertEquals(message, MessageCodec.decode(buffer, 3));
+        }
+    }
+
+    @Test
+    public void messagesFollowEachOtherInOneBuffer() {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(1024).order(MessageCodec.BYTE_ORDER);
+        int offset = 0;
+        for (Object message : MESSAGES) {
+            offset += MessageCodec.encode(message, buffer, offset);
+        }
+        offset = 0;
+        for (Object message : MESSAGES) {
+            assertEquals(message, MessageCodec.decode(buffer, offset));
+            offset += MessageCodec.HEADER_LENGTH + MessageCodec.blockLength(buffer, offset);
+        }
+    }
+
+    @Test
+    public void flyweightsReadFieldsInPlace() {
+        ByteBuffer buffer = ByteBuffer.allocate(64).order(MessageCodec.BYTE_ORDER);
+        MessageCodec.encode(new Message.Order(1, Message.TradeType.SELL, 9050, 100, "IBM", 7), buffer, 0);
+
+        MessageCodec.OrderFlyweight order = new MessageCodec.OrderFlyweight().wrap(buffer, 0);
+        assertEquals(MessageCodec.OrderFlyweight.TEMPLATE_ID, MessageCodec.templateId(buffer, 0));
+        assertEquals(Message.TradeType.SELL, order.action());
+        assertEquals(9050, order.price());
+        assertEquals(7, order.account());
+        assertTrue(order.symbolEquals("IBM"));
+        assertFalse(order.symbolEquals("IB"));
+        assertFalse(order.symbolEquals("IBMX"));
+        assertFalse(order.symbolEquals("IBMIBMIBM"));
+
+        MessageCodec.encode(new Message.Order(2, Message.TradeType.BUY, 1, 1, "MSFT", 0), buffer, 0);
+        long msft = order.symbolKey();
+        MessageCodec.encode(new Message.Cancel(3, 4, "MSFT"), buffer, 0);
+        assertEquals(msft, new MessageCodec.CancelFlyweight().wrap(buffer, 0).symbolKey());
+        MessageCodec.encode(new Message.Cancel(3, 4, "MSF"), buffer, 0);
+        assertFalse(msft == new MessageCodec.CancelFlyweight().wrap(buffer, 0).symbolKey());
+    }
+
+    @Test
+    public void uncoveredMessagesHaveNoLength() {
+        assertEquals(-1, MessageCodec.encodedLength(new Message.SlowConsumer("IBM", 1)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsUncoveredMessages() {
+        MessageCodec.encode(new Message.SlowConsumer("IBM", 1), ByteBuffer.allocate(64), 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsSymbolsLongerThanTheField() {
+        MessageCodec.encode(new Message.Ack(1, "ABCDEFGHI"), ByteBuffer.allocate(64), 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsNonAsciiSymbols() {
+        MessageCodec.encode(new Message.Ack(1, "IBM\u00C9"), ByteBuffer.allocate(64), 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsUnknownTemplates() {
+        ByteBuffer buffer = ByteBuffer.allocate(64).order(MessageCodec.BYTE_ORDER);
+        buffer.putShort(0, (short) 99);
+        MessageCodec.decode(buffer, 0);
+    }
+}
@@ -0,0 +1,95 @@
+package com.stockexchange.messages;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class SubscriberOutboxTest {
+    @Test
+    public void firstEventGoesStraightThroughUntilAcknowledged() {
+        for (SubscriberPolicy policy : SubscriberPolicy.values()) {
+            SubscriberOutbox outbox = new SubscriberOutbox(policy, 4);
+            MsgEnvelope first = event("IBM", 1);
+            assertSame(first, outbox.offer(first));
+            assertNull(outbox.offer(event("IBM", 2)));
+            assertEquals(1, outbox.pending());
+
+            assertEquals(2, outbox.next().payload);
+            assertNull(outbox.next());
+            MsgEnvelope later = event("IBM", 3);
+            assertSame(later, outbox.offer(later));
+        }
+    }
+
+    @Test
+    public void conflateKeepsTheLatestPerKeyInFirstArrivalOrder() {
+        SubscriberOutbox outbox = new SubscriberOutbox(SubscriberPolicy.CONFLATE, 4);
+        outbox.offer(event("IBM", 0));
+        outbox.offer(event("IBM", 1));
+        outbox.offer(event("MSFT", 1));
+        outbox.offer(event("IBM", 2));
+        outbox.offer(new MsgEnvelope("MARKETDATA", "MSFT", 2));
+        outbox.offer(new MsgEnvelope("TRADES", "MSFT", 9));
+        assertEquals(3, outbox.pending());
+
+        assertEquals(List.of("IBM 2", "MSFT 2", "MSFT 9"), drain(outbox));
+    }
+
+    @Test
+    public void conflateNeverMergesUnkeyedEventsAndDropsTheOldestKeyPastCapacity() {
+        SubscriberOutbox outbox = new SubscriberOutbox(SubscriberPolicy.CONFLATE, 2);
+        outbox.offer(event("IBM", 0));
+        outbox.offer(new MsgEnvelope("PSA", "a"));
+        outbox.offer(new MsgEnvelope("PSA", "b"));
+        assertEquals(2, outbox.pending());
+        outbox.offer(event("IBM", 1));
+        outbox.offer(event("IBM", 2));
+
+        assertEquals(List.of("null b", "IBM 2"), drain(outbox));
+    }
+
+    @Test
+    public void dropOldestQueuesEveryEventUpToCapacity() {
+        SubscriberOutbox outbox = new SubscriberOutbox(SubscriberPolicy.DROP_OLDEST, 2);
+        outbox.offer(event("IBM", 0));
+        assertNull(outbox.offer(event("IBM", 1)));
+        assertNull(outbox.offer(event("IBM", 2)));
+        assertNull(outbox.offer(event("IBM", 3)));
+        assertEquals(2, outbox.pending());
+
+        assertEquals(List.of("IBM 2", "IBM 3"), drain(outbox));
+    }
+
+    @Test
+    public void disconnectOverflowsOnceTheQueueIsFull() {
+        SubscriberOutbox outbox = new SubscriberOutbox(SubscriberPolicy.DISCONNECT, 2);
+        outbox.offer(event("IBM", 0));
+        assertNull(outbox.offer(event("IBM", 1)));
+        assertNull(outbox.offer(event("IBM", 2)));
+        assertSame(SubscriberOutbox.OVERFLOW, outbox.offer(event("IBM", 3)));
+        assertEquals(2, outbox.pending());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void capacityMustBePositive() {
+        new SubscriberOutbox(SubscriberPolicy.DROP_OLDEST, 0);
+    }
+
+    private static MsgEnvelope event(String symbol, int sequence) {
+        return new MsgEnvelope("MARKETDATA", symbol, sequence);
+    }
+
+    // Acknowledges until the outbox is empty, as "key payload" per event delivered
+    private static List<String> drain(SubscriberOutbox outbox) {
+        List<String> delivered = new ArrayList<>();
+        for (MsgEnvelope event = outbox.next(); event != null; event = outbox.next()) {
+            delivered.add(event.key + " " + event.payload);
+        }
+        return delivered;
+    }
+}
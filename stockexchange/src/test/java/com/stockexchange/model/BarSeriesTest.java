@@ -0,0 +1,86 @@
+package com.stockexchange.model;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class BarSeriesTest {
+    @Test
+    public void tradesInOneIntervalBuildOneBar() {
+        BarSeries bars = new BarSeries(1_000, 16);
+        bars.onTrade(5_200, 100, 10);
+        bars.onTrade(5_300, 104, 5);
+        bars.onTrade(5_400, 98, 20);
+        bars.onTrade(5_999, 101, 5);
+
+        assertEquals(1, bars.size());
+        assertEquals(5_000, bars.getStart(0));
+        assertEquals(100, bars.getOpen(0));
+        assertEquals(104, bars.getHigh(0));
+        assertEquals(98, bars.getLow(0));
+        assertEquals(101, bars.getClose(0));
+        assertEquals(40, bars.getVolume(0));
+        // (100 * 10 + 104 * 5 + 98 * 20 + 101 * 5) / 40
+        assertEquals(99.625, bars.getVwap(0), 1e-9);
+    }
+
+    @Test
+    public void aNewIntervalStartsAFreshBarAndEmptyIntervalsHaveNone() {
+        BarSeries bars = new BarSeries(1_000, 16);
+        bars.onTrade(5_999, 100, 10);
+        bars.onTrade(6_000, 110, 1);
+        bars.onTrade(9_500, 90, 3);
+        bars.onTrade(9_600, 95, 1);
+
+        assertEquals(3, bars.size());
+        assertEquals(6_000, bars.getStart(1));
+        assertEquals(110, bars.getOpen(1));
+        assertEquals(110, bars.getLow(1));
+        assertEquals(1, bars.getVolume(1));
+        assertEquals(110.0, bars.getVwap(1), 1e-9);
+        assertEquals(9_000, bars.getStart(2));
+        assertEquals(90, bars.getOpen(2));
+        assertEquals(95, bars.getHigh(2));
+        assertEquals(91.25, bars.getVwap(2), 1e-9);
+
+        assertEquals(0, bars.indexOf(0));
+        assertEquals(1, bars.indexOf(6_000));
+        assertEquals(2, bars.indexOf(6_001));
+        assertEquals(3, bars.indexOf(9_001));
+    }
+
+    @Test
+    public void dropsTheOlderHalfOnceFull() {
+        BarSeries bars = new BarSeries(10, 4);
+        for (int i = 0; i < 4; i++) {
+            bars.onTrade(10 * i, 100 + i, 1);
+        }
+        bars.onTrade(40, 104, 1);
+
+        assertEquals(3, bars.size());
+        assertEquals(20, bars.getStart(0));
+        assertEquals(102, bars.getOpen(0));
+        assertEquals(40, bars.getStart(2));
+        assertEquals(104, bars.getClose(2));
+    }
+
+    @Test
+    public void growsPastItsInitialColumnsUpToMaxBars() {
+        BarSeries bars = new BarSeries(1, 300);
+        for (int i = 0; i < 300; i++) {
+            bars.onTrade(i, i, 1);
+        }
+        assertEquals(300, bars.size());
+        assertEquals(299, bars.getClose(299));
+
+        bars.onTrade(300, 300, 1);
+        assertEquals(151, bars.size());
+        assertEquals(150, bars.getStart(0));
+        assertEquals(300, bars.getStart(150));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void intervalMustBePositive() {
+        new BarSeries(0, 16);
+    }
+}
@@ -0,0 +1,289 @@
+package com.stockexchange.model;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class OrderBookTest {
+    private final OrderBook book = new OrderBook("IBM", TickSize.CENT);
+    // One "taker maker side price quantity" line per fill
+    private final List<String> fills = new ArrayList<>();
+    private final FillSink sink = (takerId, makerId, takerSide, priceTicks, quantity) ->
+            fills.add(takerId + " " + makerId + " " + takerSide + " " + priceTicks + " " + quantity);
+
+    @Test
+    public void bestPriceTradesFirstThenEarliestAtThatPrice() {
+        long a = sell(101, 10);
+        long b = sell(100, 10);
+        long c = sell(100, 10);
+        long d = sell(102, 5);
+
+        long taker = buy(100, 15);
+        assertEquals(List.of(taker + " " + b + " BUY 100 10", taker + " " + c + " BUY 100 5"), fills);
+        assertNull(book.getOrder(taker));
+        assertNull(book.getOrder(b));
+        assertEquals(5, book.getOrder(c).getQuantity());
+        assertEquals(10, book.getOrder(a).getQuantity());
+        assertEquals(5, book.getOrder(d).getQuantity());
+        assertEquals(100, book.getLastTradePriceTicks());
+    }
+
+    @Test
+    public void buySweepsAskLevelsUpToItsLimit() {
+        long a = sell(100, 5);
+        long b = sell(101, 5);
+        long c = sell(102, 5);
+        sell(103, 5);
+
+        long taker = buy(102, 12);
+        assertEquals(List.of(
+                taker + " " + a + " BUY 100 5",
+                taker + " " + b + " BUY 101 5",
+                taker + " " + c + " BUY 102 2"), fills);
+        assertEquals(2, book.getAskLevelCount());
+        assertEquals(102, book.getBestAsk().getPriceTicks());
+        assertEquals(3, book.getBestAsk().getTotalQuantity());
+        assertNull(book.getBestBid());
+        assertEquals(102, book.getLastTradePriceTicks());
+    }
+
+    @Test
+    public void sellSweepsBidLevelsDownToItsLimit() {
+        long a = buy(100, 5);
+        long b = buy(99, 5);
+        buy(98, 5);
+
+        long taker = sell(99, 20);
+        assertEquals(List.of(taker + " " + a + " SELL 100 5", taker + " " + b + " SELL 99 5"), fills);
+        assertEquals(98, book.getBestBid().getPriceTicks());
+        assertEquals(99, book.getBestAsk().getPriceTicks());
+        assertEquals(10, book.getOrder(taker).getQuantity());
+    }
+
+    @Test
+    public void partialFillRestsTheRemainderWithItsOwnerAndAccount() {
+        long maker = sell(100, 5);
+        Object owner = new Object();
+        long taker = book.addOrder(Order.OrderType.BUY, 101, 8, 7, 3, owner, sink);
+
+        assertEquals(List.of(taker + " " + maker + " BUY 100 5"), fills);
+        RestingOrder rest = book.getOrder(taker);
+        assertEquals(3, rest.getQuantity());
+        assertEquals(101, rest.getPriceTicks());
+        assertEquals(Order.OrderType.BUY, rest.getSide());
+        assertEquals(3, rest.getAccount());
+        assertSame(owner, rest.getOwner());
+        assertSame(rest, book.getBestBid().getHead());
+
+        // Trades at the resting order's price, not the incoming one's
+        fills.clear();
+        long next = sell(99, 1);
+        assertEquals(List.of(next + " " + taker + " SELL 101 1"), fills);
+        assertEquals(2, book.getOrder(taker).getQuantity());
+    }
+
+    @Test
+    public void nonCrossingOrdersRestAtTheirOwnLevels() {
+        buy(99, 1);
+        buy(99, 2);
+        buy(98, 3);
+        sell(100, 4);
+        sell(101, 5);
+
+        assertEquals(0, fills.size());
+        assertEquals(5, book.getRestingOrderCount());
+        assertEquals(99, book.getBidLevel(0).getPriceTicks());
+        assertEquals(3, book.getBidLevel(0).getTotalQuantity());
+        assertEquals(2, book.getBidLevel(0).getOrderCount());
+        assertEquals(98, book.getBidLevel(1).getPriceTicks());
+        assertEquals(100, book.getAskLevel(0).getPriceTicks());
+        assertEquals(101, book.getAskLevel(1).getPriceTicks());
+        assertNull(book.getAskLevel(2));
+    }
+
+    @Test
+    public void matchOrdersUncrossesRestingOrdersAtTheEarlierPrice() {
+        long buyId = book.addOrder(new Order("IBM", 10, 102, Order.OrderType.BUY));
+        long sellA = book.addOrder(new Order("IBM", 4, 100, Order.OrderType.SELL));
+        long sellB = book.addOrder(new Order("IBM", 4, 101, Order.OrderType.SELL));
+        long sellC = book.addOrder(new Order("IBM", 4, 103, Order.OrderType.SELL));
+
+        assertEquals(2, book.matchOrders(sink));
+        assertEquals(List.of(sellA + " " + buyId + " SELL 102 4", sellB + " " + buyId + " SELL 102 4"), fills);
+        assertEquals(2, book.getOrder(buyId).getQuantity());
+        assertEquals(4, book.getOrder(sellC).getQuantity());
+        assertEquals(0, book.matchOrders(sink));
+    }
+
+    @Test
+    public void cancelTakesTheOrderOutOfItsQueue() {
+        long a = sell(100, 10);
+        long b = sell(100, 10);
+        long c = sell(100, 10);
+        long d = sell(101, 10);
+
+        assertTrue(book.cancelOrder(b));
+        assertFalse(book.cancelOrder(b));
+        assertFalse(book.cancelOrder(999));
+        assertNull(book.getOrder(b));
+        assertEquals(List.of(a, c), queue(book.getBestAsk()));
+        assertEquals(20, book.getBestAsk().getTotalQuantity());
+
+        long taker = buy(100, 15);
+        assertEquals(List.of(taker + " " + a + " BUY 100 10", taker + " " + c + " BUY 100 5"), fills);
+
+        // Cancelling the last order at a price removes the level
+        assertTrue(book.cancelOrder(c));
+        assertEquals(1, book.getAskLevelCount());
+        assertTrue(book.cancelOrder(d));
+        assertNull(book.getBestAsk());
+        assertEquals(0, book.getRestingOrderCount());
+    }
+
+    @Test
+    public void amendDownKeepsQueuePriority() {
+        long a = sell(100, 10);
+        long b = sell(100, 10);
+
+        assertTrue(book.amendOrder(a, 4));
+        assertEquals(List.of(a, b), queue(book.getBestAsk()));
+        assertEquals(14, book.getBestAsk().getTotalQuantity());
+
+        long taker = buy(100, 5);
+        assertEquals(List.of(taker + " " + a + " BUY 100 4", taker + " " + b + " BUY 100 1"), fills);
+    }
+
+    @Test
+    public void amendUpGoesToTheBackOfItsLevel() {
+        long a = sell(100, 10);
+        long b = sell(100, 10);
+
+        assertTrue(book.amendOrder(a, 12));
+        assertEquals(List.of(b, a), queue(book.getBestAsk()));
+        assertEquals(22, book.getBestAsk().getTotalQuantity());
+        assertTrue(book.getOrder(a).getSequence() > book.getOrder(b).getSequence());
+
+        long taker = buy(100, 5);
+        assertEquals(List.of(taker + " " + b + " BUY 100 5"), fills);
+        assertEquals(12, book.getOrder(a).getQuantity());
+    }
+
+    @Test
+    public void amendToTheSameOrNoQuantity() {
+        long a = sell(100, 10);
+        long b = sell(100, 10);
+
+        assertTrue(book.amendOrder(a, 10));
+        assertEquals(List.of(a, b), queue(book.getBestAsk()));
+
+        assertTrue(book.amendOrder(a, 0));
+        assertNull(book.getOrder(a));
+        assertEquals(List.of(b), queue(book.getBestAsk()));
+        assertFalse(book.amendOrder(a, 5));
+    }
+
+    @Test
+    public void replaceMovesTheOrderToTheBackOfItsNewPriceUnderTheSameId() {
+        long a = sell(101, 10);
+        long b = sell(100, 10);
+        long c = sell(100, 10);
+
+        assertTrue(book.replaceOrder(b, 101, 8, null, sink));
+        assertEquals(0, fills.size());
+        assertEquals(List.of(c), queue(book.getBestAsk()));
+        assertEquals(List.of(a, b), queue(book.getAskLevel(1)));
+        assertEquals(8, book.getOrder(b).getQuantity());
+
+        // Same price is an amend and keeps priority
+        assertTrue(book.replaceOrder(a, 101, 5, null, sink));
+        assertEquals(List.of(a, b), queue(book.getAskLevel(1)));
+        assertFalse(book.replaceOrder(999, 101, 5, null, sink));
+    }
+
+    @Test
+    public void replaceAcrossTheSpreadTradesFirstThenRestsTheRemainder() {
+        long bid = buy(99, 5);
+        long ask = sell(101, 10);
+
+        assertTrue(book.replaceOrder(ask, 98, 8, null, sink));
+        assertEquals(List.of(ask + " " + bid + " SELL 99 5"), fills);
+        assertNull(book.getBestBid());
+        assertEquals(98, book.getBestAsk().getPriceTicks());
+        assertEquals(3, book.getOrder(ask).getQuantity());
+
+        // Filled away entirely
+        long bigBid = buy(97, 10);
+        assertTrue(book.replaceOrder(ask, 97, 3, null, sink));
+        assertNull(book.getOrder(ask));
+        assertEquals(7, book.getOrder(bigBid).getQuantity());
+    }
+
+    @Test
+    public void quotesNeverTradeWithEachOther() {
+        Random random = new Random(17);
+        long mid = 10_000;
+        for (int i = 0; i < 10_000; i++) {
+            // Jumps far enough that the new bid is often above the old ask and the reverse
+            mid = Math.max(mid + random.nextInt(401) - 200, 200);
+            long half = 1 + random.nextInt(50);
+            int bidQuantity = 1 + random.nextInt(50);
+            int askQuantity = 1 + random.nextInt(50);
+            book.quote(mid - half, bidQuantity, mid + half, askQuantity, i, null, sink);
+
+            assertEquals(0, fills.size());
+            assertEquals(2, book.getRestingOrderCount());
+            assertEquals(mid - half, book.getOrder(book.getBidQuoteId()).getPriceTicks());
+            assertEquals(bidQuantity, book.getOrder(book.getBidQuoteId()).getQuantity());
+            assertEquals(mid + half, book.getOrder(book.getAskQuoteId()).getPriceTicks());
+            assertEquals(askQuantity, book.getOrder(book.getAskQuoteId()).getQuantity());
+        }
+    }
+
+    @Test
+    public void quoteReplacesInPlaceUntilFilledAwayThenEntersANewOrder() {
+        book.quote(99, 10, 101, 10, 0, null, sink);
+        long bidId = book.getBidQuoteId();
+        long askId = book.getAskQuoteId();
+
+        book.quote(98, 10, 102, 10, 1, null, sink);
+        assertEquals(bidId, book.getBidQuoteId());
+        assertEquals(askId, book.getAskQuoteId());
+
+        long taker = buy(102, 10);
+        assertEquals(List.of(taker + " " + askId + " BUY 102 10"), fills);
+        book.quote(98, 10, 103, 10, 2, null, sink);
+        assertEquals(bidId, book.getBidQuoteId());
+        assertTrue(book.getAskQuoteId() > taker);
+        assertEquals(103, book.getBestAsk().getPriceTicks());
+
+        // A quantity of 0 pulls that side
+        book.quote(98, 0, 103, 10, 3, null, sink);
+        assertEquals(-1, book.getBidQuoteId());
+        assertNull(book.getBestBid());
+    }
+
+    // Order ids at the level from the front of the queue
+    private static List<Long> queue(PriceLevel level) {
+        List<Long> ids = new ArrayList<>();
+        for (RestingOrder order = level.getHead(); order != null; order = order.next) {
+            ids.add(order.getId());
+        }
+        return ids;
+    }
+
+    private long buy(long priceTicks, int quantity) {
+        return book.addOrder(Order.OrderType.BUY, priceTicks, quantity, 0, sink);
+    }
+
+    private long sell(long priceTicks, int quantity) {
+        return book.addOrder(Order.OrderType.SELL, priceTicks, quantity, 0, sink);
+    }
+}
@@ -0,0 +1,73 @@
+package com.stockexchange.model;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class OrderIndexTest {
+    @Test
+    public void findsEveryEntryAfterRemovingFromTheMiddleOfAProbeChain() {
+        OrderIndex index = new OrderIndex(4);
+        // Seven live keys in sixteen slots keep the chains long without triggering a resize
+        Map<Long, RestingOrder> expected = new HashMap<>();
+        Random random = new Random(42);
+        for (int step = 0; step < 100_000; step++) {
+            long id = 1 + random.nextInt(64);
+            if (expected.containsKey(id) || expected.size() == 7) {
+                expected.remove(id);
+                index.remove(id);
+            } else {
+                RestingOrder order = new RestingOrder();
+                expected.put(id, order);
+                index.put(id, order);
+            }
+            assertEquals(expected.size(), index.size());
+            for (long key = 1; key <= 64; key++) {
+                assertSame(expected.get(key), index.get(key));
+            }
+        }
+    }
+
+    @Test
+    public void growsPastItsExpectedSize() {
+        OrderIndex index = new OrderIndex(1);
+        RestingOrder[] orders = new RestingOrder[10_000];
+        for (int i = 0; i < orders.length; i++) {
+            orders[i] = new RestingOrder();
+            index.put(i + 1, orders[i]);
+        }
+        assertEquals(orders.length, index.size());
+        for (int i = 0; i < orders.length; i++) {
+            assertSame(orders[i], index.get(i + 1));
+        }
+        for (int i = 0; i < orders.length; i += 2) {
+            index.remove(i + 1);
+        }
+        assertEquals(orders.length / 2, index.size());
+        for (int i = 0; i < orders.length; i++) {
+            assertSame(i % 2 == 0 ? null : orders[i], index.get(i + 1));
+        }
+    }
+
+    @Test
+    public void putReplacesAndRemoveOfAMissingIdIsANoOp() {
+        OrderIndex index = new OrderIndex(16);
+        RestingOrder first = new RestingOrder();
+        RestingOrder second = new RestingOrder();
+        index.put(7, first);
+        index.put(7, second);
+        assertEquals(1, index.size());
+        assertSame(second, index.get(7));
+        index.remove(8);
+        assertEquals(1, index.size());
+        index.remove(7);
+        assertNull(index.get(7));
+        assertEquals(0, index.size());
+    }
+}
@@ -0,0 +1,98 @@
+package com.stockexchange.model;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class TradeTapeTest {
+    @Test
+    public void dropsTheOldestChunkOnceFullAndKeepsNumbering() {
+        TradeTape tape = new TradeTape(4, 8);
+        for (int i = 0; i < 8; i++) {
+            tape.append(10 * i, 100 + i, i + 1, Order.OrderType.BUY);
+        }
+        assertEquals(0, tape.getFirst());
+        assertEquals(8, tape.getNext());
+
+        tape.append(80, 108, 9, Order.OrderType.SELL);
+        assertEquals(4, tape.getFirst());
+        assertEquals(9, tape.getNext());
+        assertEquals(40, tape.getTimestamp(4));
+        assertEquals(108, tape.getPriceTicks(8));
+        assertEquals(9, tape.getQuantity(8));
+        assertEquals(Order.OrderType.SELL, tape.getAggressor(8));
+
+        // The dropped chunk is reused, so nothing of the old trades may show through
+        for (int i = 9; i < 12; i++) {
+            tape.append(10 * i, 100 + i, i + 1, Order.OrderType.BUY);
+        }
+        tape.append(120, 112, 13, Order.OrderType.BUY);
+        assertEquals(8, tape.getFirst());
+        for (long trade = tape.getFirst(); trade < tape.getNext(); trade++) {
+            assertEquals(10 * trade, tape.getTimestamp(trade));
+            assertEquals(100 + trade, tape.getPriceTicks(trade));
+        }
+    }
+
+    @Test
+    public void indexOfFindsTheFirstKeptTradeAtOrAfter() {
+        TradeTape tape = new TradeTape(4, 8);
+        long[] timestamps = {10, 20, 20, 20, 30, 50, 50, 60, 70, 80};
+        for (long timestamp : timestamps) {
+            tape.append(timestamp, 100, 1, Order.OrderType.BUY);
+        }
+        // Trades 0 to 3 were dropped
+        assertEquals(4, tape.getFirst());
+        assertEquals(4, tape.indexOf(0));
+        assertEquals(4, tape.indexOf(20));
+        assertEquals(4, tape.indexOf(30));
+        assertEquals(5, tape.indexOf(31));
+        assertEquals(5, tape.indexOf(50));
+        assertEquals(7, tape.indexOf(51));
+        assertEquals(9, tape.indexOf(80));
+        assertEquals(tape.getNext(), tape.indexOf(81));
+
+        assertEquals(0, new TradeTape(4, 8).indexOf(0));
+    }
+
+    @Test
+    public void copyRunsAcrossChunks() {
+        TradeTape tape = new TradeTape(3, 9);
+        for (int i = 0; i < 8; i++) {
+            tape.append(i, 100 + i, i + 1, i % 2 == 0 ? Order.OrderType.BUY : Order.OrderType.SELL);
+        }
+        long[] timestamps = new long[5];
+        long[] prices = new long[5];
+        int[] quantities = new int[5];
+        Order.OrderType[] aggressors = new Order.OrderType[5];
+        tape.copy(2, 7, timestamps, prices, quantities, aggressors);
+
+        assertArrayEquals(new long[] {2, 3, 4, 5, 6}, timestamps);
+        assertArrayEquals(new long[] {102, 103, 104, 105, 106}, prices);
+        assertEquals(3, quantities[0]);
+        assertEquals(7, quantities[4]);
+        assertEquals(Order.OrderType.BUY, aggressors[0]);
+        assertEquals(Order.OrderType.SELL, aggressors[1]);
+    }
+
+    @Test
+    public void everyTradeUpdatesTheConfiguredBars() {
+        BarSeries seconds = new BarSeries(1_000, 16);
+        TradeTape tape = new TradeTape(4, 8, seconds);
+        tape.append(100, 50, 2, Order.OrderType.BUY);
+        tape.append(1_100, 60, 3, Order.OrderType.SELL);
+
+        assertSame(seconds, tape.bars(1_000));
+        assertNull(tape.bars(60_000));
+        assertEquals(2, seconds.size());
+        assertEquals(3, seconds.getVolume(1));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void maxTradesMustHoldAChunk() {
+        new TradeTape(8, 4);
+    }
+}
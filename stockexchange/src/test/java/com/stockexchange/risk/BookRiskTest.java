@@ -0,0 +1,148 @@
+package com.stockexchange.risk;
+
+import com.stockexchange.model.FillSink;
+import com.stockexchange.model.Order;
+import com.stockexchange.model.OrderBook;
+import com.stockexchange.model.TickSize;
+import com.typesafe.config.ConfigFactory;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class BookRiskTest {
+    private static final FillSink NO_FILLS = (takerId, makerId, takerSide, priceTicks, quantity) -> {};
+    private static final long SECOND = 1_000_000_000L;
+
+    private PreTradeRisk limits;
+    private BookRisk risk;
+    private long now;
+
+    @Before
+    public void createRisk() {
+        limits = new PreTradeRisk(ConfigFactory.parseString("""
+                enabled = on
+                max-accounts = 4
+                max-position = 100
+                max-open-notional = 150
+                max-orders-per-second = 3
+                price-band-bps = 1000
+                """));
+        risk = limits.forBook(TickSize.CENT);
+    }
+
+    @Test
+    public void notionalIsReservedUntilFilledAmendedAwayOrCancelled() {
+        // 10 shares at 10.00 is 100 of the 150 allowed
+        assertEquals(BookRisk.Result.PASSED, risk.check(1, Order.OrderType.BUY, 1000, 10, 0, 0));
+        assertEquals(100.0, limits.getOpenNotional(1), 0);
+
+        // Partial fill of 4
+        risk.release(1, 1000, 4);
+        assertEquals(60.0, limits.getOpenNotional(1), 0);
+
+        // Amend up by 5, then down by 3
+        assertTrue(risk.reserve(1, 1000, 5));
+        assertEquals(110.0, limits.getOpenNotional(1), 0);
+        risk.release(1, 1000, 3);
+        assertEquals(80.0, limits.getOpenNotional(1), 0);
+
+        // An amend past the limit reserves nothing
+        assertFalse(risk.reserve(1, 1000, 8));
+        assertEquals(80.0, limits.getOpenNotional(1), 0);
+
+        // Cancel of the remaining 8
+        risk.release(1, 1000, 8);
+        assertEquals(0.0, limits.getOpenNotional(1), 0);
+    }
+
+    @Test
+    public void notionalLimitSpansOrdersAndLeavesOtherAccountsAlone() {
+        assertEquals(BookRisk.Result.PASSED, risk.check(1, Order.OrderType.BUY, 1000, 10, 0, 0));
+        assertEquals(BookRisk.Result.OPEN_NOTIONAL, risk.check(1, Order.OrderType.SELL, 1000, 6, 0, 0));
+        assertEquals(100.0, limits.getOpenNotional(1), 0);
+        assertEquals(BookRisk.Result.PASSED, risk.check(1, Order.OrderType.SELL, 1000, 5, 0, 0));
+        assertEquals(BookRisk.Result.PASSED, risk.check(2, Order.OrderType.SELL, 1000, 15, 0, 0));
+    }
+
+    @Test
+    public void orderRateWindowRollsOverEachSecond() {
+        long start = 5 * SECOND;
+        for (int i = 0; i < 3; i++) {
+            assertEquals(BookRisk.Result.PASSED, risk.check(1, Order.OrderType.BUY, 10, 1, 0, start + i));
+        }
+        assertEquals(BookRisk.Result.ORDER_RATE, risk.check(1, Order.OrderType.BUY, 10, 1, 0, start + SECOND - 1));
+        assertEquals(BookRisk.Result.PASSED, risk.check(2, Order.OrderType.BUY, 10, 1, 0, start + SECOND - 1));
+
+        assertEquals(BookRisk.Result.PASSED, risk.check(1, Order.OrderType.BUY, 10, 1, 0, start + SECOND));
+        assertEquals(BookRisk.Result.PASSED, risk.check(1, Order.OrderType.BUY, 10, 1, 0, start + SECOND + 1));
+        assertEquals(BookRisk.Result.PASSED, risk.check(1, Order.OrderType.BUY, 10, 1, 0, start + SECOND + 2));
+        assertEquals(BookRisk.Result.ORDER_RATE, risk.check(1, Order.OrderType.BUY, 10, 1, 0, start + SECOND + 3));
+    }
+
+    @Test
+    public void priceBandFollowsTheMidUntilTheFirstTradeThenTheLastTrade() {
+        OrderBook book = new OrderBook("IBM", TickSize.CENT);
+        assertEquals(0, BookRisk.referencePriceTicks(book));
+        assertEquals(BookRisk.Result.PASSED, check(book, Order.OrderType.BUY, 10));
+
+        book.addOrder(Order.OrderType.BUY, 900, 1, 0, NO_FILLS);
+        assertEquals(0, BookRisk.referencePriceTicks(book));
+        book.addOrder(Order.OrderType.SELL, 1100, 1, 0, NO_FILLS);
+        assertEquals(1000, BookRisk.referencePriceTicks(book));
+        assertEquals(BookRisk.Result.PASSED, check(book, Order.OrderType.BUY, 1100));
+        assertEquals(BookRisk.Result.PRICE_BAND, check(book, Order.OrderType.BUY, 1101));
+        assertEquals(BookRisk.Result.PASSED, check(book, Order.OrderType.SELL, 900));
+        assertEquals(BookRisk.Result.PRICE_BAND, check(book, Order.OrderType.SELL, 899));
+
+        // Lifts the ask, so the last trade at 1100 becomes the reference even with one side empty
+        book.addOrder(Order.OrderType.BUY, 1100, 1, 0, NO_FILLS);
+        assertEquals(1100, BookRisk.referencePriceTicks(book));
+        assertEquals(BookRisk.Result.PASSED, check(book, Order.OrderType.BUY, 1210));
+        assertEquals(BookRisk.Result.PRICE_BAND, check(book, Order.OrderType.BUY, 1211));
+        assertEquals(BookRisk.Result.PASSED, check(book, Order.OrderType.SELL, 990));
+        assertEquals(BookRisk.Result.PRICE_BAND, check(book, Order.OrderType.SELL, 989));
+    }
+
+    @Test
+    public void positionPastTheLimitCanOnlyShrink() {
+        assertEquals(BookRisk.Result.PASSED, risk.check(1, Order.OrderType.BUY, 1, 100, 0, 0));
+        assertEquals(BookRisk.Result.POSITION, risk.check(1, Order.OrderType.SELL, 1, 201, 0, 0));
+        risk.onFill(1, Order.OrderType.BUY, 100);
+        assertEquals(BookRisk.Result.POSITION, risk.check(1, Order.OrderType.BUY, 1, 1, 0, 0));
+
+        // Fills of orders accepted earlier can take the position past the limit
+        risk.onFill(1, Order.OrderType.BUY, 50);
+        assertEquals(150, risk.getPosition(1));
+        assertEquals(BookRisk.Result.POSITION, risk.check(1, Order.OrderType.BUY, 1, 1, 0, 0));
+        assertEquals(BookRisk.Result.PASSED, risk.check(1, Order.OrderType.SELL, 1, 10, 0, 0));
+        // Through zero to a short bigger than the long it started from
+        assertEquals(BookRisk.Result.POSITION, risk.check(1, Order.OrderType.SELL, 1, 301, 0, 0));
+        assertEquals(BookRisk.Result.PASSED, risk.check(1, Order.OrderType.SELL, 1, 250, 0, 0));
+
+        risk.onFill(1, Order.OrderType.SELL, 250);
+        assertEquals(-100, risk.getPosition(1));
+        assertEquals(BookRisk.Result.POSITION, risk.check(1, Order.OrderType.SELL, 1, 1, 0, 0));
+        assertEquals(BookRisk.Result.PASSED, risk.check(1, Order.OrderType.BUY, 1, 1, 0, SECOND));
+    }
+
+    @Test
+    public void accountsOutsideTheLimitsAreRejectedOrIgnored() {
+        assertEquals(BookRisk.Result.UNKNOWN_ACCOUNT, risk.check(4, Order.OrderType.BUY, 1000, 1, 0, 0));
+        assertEquals(BookRisk.Result.UNKNOWN_ACCOUNT, risk.check(-1, Order.OrderType.BUY, 1000, 1, 0, 0));
+
+        // A recovered order whose account is past a lowered max-accounts
+        risk.restore(7, 1000, 10);
+        assertTrue(risk.reserve(7, 1000, 10));
+        risk.onFill(7, Order.OrderType.BUY, 10);
+        risk.release(7, 1000, 10);
+    }
+
+    // One order a second, so the rate limit stays out of the way
+    private BookRisk.Result check(OrderBook book, Order.OrderType side, long priceTicks) {
+        now += SECOND;
+        return risk.check(0, side, priceTicks, 1, BookRisk.referencePriceTicks(book), now);
+    }
+}